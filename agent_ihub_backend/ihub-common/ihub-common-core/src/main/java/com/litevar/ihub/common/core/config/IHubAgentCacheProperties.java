@@ -0,0 +1,34 @@
+package com.litevar.ihub.common.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * agent 二级缓存配置
+ *
+ * @author Teoan
+ * @since 2025/11/25 09:48
+ */
+@Configuration
+@ConfigurationProperties(prefix = "agent-ihub.agent-cache")
+@Data
+public class IHubAgentCacheProperties {
+
+    /**
+     * 本地缓存最大数量
+     */
+    private Integer localMaxSize = 1000;
+
+    /**
+     * 本地缓存过期时间
+     */
+    private Duration localTtl = Duration.ofSeconds(60);
+
+    /**
+     * redis缓存过期时间
+     */
+    private Duration redisTtl = Duration.ofMinutes(10);
+}
@@ -0,0 +1,94 @@
+package com.litevar.ihub.common.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 知识库文件转换配置
+ *
+ * @author Teoan
+ * @since 2025/11/29 10:05
+ */
+@Configuration
+@ConfigurationProperties(prefix = "agent-ihub.conversion")
+@Data
+public class IHubConversionProperties {
+
+    /**
+     * 同时执行转换的线程数
+     */
+    private Integer workers = 2;
+
+    /**
+     * 等待转换的最大任务数，超出时拒绝上传并返回429
+     */
+    private Integer queueCapacity = 100;
+
+    /**
+     * 单个用户等待转换的最大任务数，避免单个用户占满队列
+     */
+    private Integer userQueueCapacity = 10;
+
+    /**
+     * 停机时等待正在执行的转换完成的最长时间，超时未完成的任务重新排队
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+    /**
+     * 空闲时查询待转换任务的间隔
+     */
+    private Duration pollInterval = Duration.ofSeconds(1);
+
+    /**
+     * 任务租约时长，节点宕机后租约过期的任务重新排队
+     */
+    private Duration leaseTtl = Duration.ofSeconds(60);
+
+    /**
+     * 执行中任务的租约续期间隔，需小于租约时长
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(20);
+
+    /**
+     * 任务最大执行次数，租约过期次数达到上限时不再重试
+     */
+    private Integer maxAttempts = 3;
+
+    /**
+     * 已结束任务的保留时间，用于查询转换结果
+     */
+    private Duration jobRetention = Duration.ofDays(7);
+
+    /**
+     * 转换进度写入redis的最小间隔，阶段变化时立即写入
+     */
+    private Duration progressInterval = Duration.ofMillis(500);
+
+    /**
+     * 转换进度推送连接的超时时间
+     */
+    private Duration sseTimeout = Duration.ofMinutes(30);
+
+    /**
+     * 转换进度推送连接的心跳间隔，同时刷新排队位置
+     */
+    private Duration sseHeartbeatInterval = Duration.ofSeconds(15);
+
+    /**
+     * 是否复用相同内容文件的转换结果
+     */
+    private Boolean cacheEnabled = true;
+
+    /**
+     * 转换结果缓存的保留时间，超过该时间未命中的缓存被淘汰
+     */
+    private Duration cacheRetention = Duration.ofDays(30);
+
+    /**
+     * 淘汰转换结果缓存的间隔
+     */
+    private Duration cacheCleanInterval = Duration.ofHours(1);
+}
@@ -0,0 +1,43 @@
+package com.litevar.ihub.common.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * agent导出配置
+ *
+ * @author Teoan
+ * @since 2025/11/26 14:05
+ */
+@Configuration
+@ConfigurationProperties(prefix = "agent-ihub.export")
+@Data
+public class IHubExportProperties {
+
+    /**
+     * 导出线程池线程数，用于并行读取工具、知识库文件及子agent序列化
+     */
+    private Integer parallelism = 4;
+
+    /**
+     * 导出线程池队列长度，队列满时由导出请求线程执行
+     */
+    private Integer queueCapacity = 256;
+
+    /**
+     * 是否缓存导出的agent文件
+     */
+    private Boolean cacheEnabled = true;
+
+    /**
+     * 导出缓存路径 默认为当前项目路径下的export-cache文件夹
+     */
+    private String cachePath = "export-cache";
+
+    /**
+     * 导出缓存占用的最大磁盘空间，超出时按最近访问时间淘汰
+     */
+    private DataSize cacheMaxSize = DataSize.ofGigabytes(2);
+}
@@ -0,0 +1,49 @@
+package com.litevar.ihub.common.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 无引用文件清理配置
+ *
+ * @author Teoan
+ * @since 2025/11/30 15:10
+ */
+@Configuration
+@ConfigurationProperties(prefix = "agent-ihub.file-gc")
+@Data
+public class IHubFileGcProperties {
+
+    /**
+     * 是否定时清理无引用的文件
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 清理间隔
+     */
+    private Duration interval = Duration.ofHours(6);
+
+    /**
+     * 上传后的保留时间，上传后还未被agent引用的文件(如创建agent前上传的工具、转换完成的文档)在此期间不清理
+     */
+    private Duration gracePeriod = Duration.ofDays(7);
+
+    /**
+     * 单批删除的文件数
+     */
+    private Integer batchSize = 100;
+
+    /**
+     * 两批删除之间的间隔，避免集中删除影响数据库和磁盘
+     */
+    private Duration batchInterval = Duration.ofMillis(500);
+
+    /**
+     * 临时文件的保留时间，超过该时间的写入临时文件和无任务的待转换文件视为残留
+     */
+    private Duration tempRetention = Duration.ofDays(1);
+}
@@ -0,0 +1,56 @@
+package com.litevar.ihub.common.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 图片缩略图配置
+ *
+ * @author Teoan
+ * @since 2025/11/28 16:10
+ */
+@Configuration
+@ConfigurationProperties(prefix = "agent-ihub.image")
+@Data
+public class IHubImageProperties {
+
+    /**
+     * 允许生成的缩略图尺寸(最长边像素)，只生成固定尺寸以限制缓存文件数量
+     */
+    private List<Integer> sizes = List.of(64, 128, 256, 512);
+
+    /**
+     * 缩略图缓存路径 默认为当前项目路径下的image-cache文件夹
+     */
+    private String cachePath = "image-cache";
+
+    /**
+     * 缩略图缓存占用的最大磁盘空间，超出时按最近访问时间淘汰
+     */
+    private DataSize cacheMaxSize = DataSize.ofMegabytes(512);
+
+    /**
+     * 允许解码的原图最大像素数，防止超大图片解码占满内存
+     */
+    private Long maxSourcePixels = 40_000_000L;
+
+    /**
+     * jpeg和webp缩略图的压缩质量
+     */
+    private Float quality = 0.85f;
+
+    /**
+     * 同时生成缩略图的最大数量，限制解码和缩放占用的内存和CPU
+     */
+    private Integer maxConcurrency = 4;
+
+    /**
+     * 生成缩略图时等待名额的最长时间，超时返回服务繁忙
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(10);
+}
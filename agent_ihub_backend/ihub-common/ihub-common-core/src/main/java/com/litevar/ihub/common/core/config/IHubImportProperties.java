@@ -0,0 +1,34 @@
+package com.litevar.ihub.common.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * agent导入配置
+ *
+ * @author Teoan
+ * @since 2025/11/27 10:12
+ */
+@Configuration
+@ConfigurationProperties(prefix = "agent-ihub.import")
+@Data
+public class IHubImportProperties {
+
+    /**
+     * 导入线程池线程数，用于并行写入知识库文档及图片
+     */
+    private Integer parallelism = 4;
+
+    /**
+     * 导入线程池队列长度，队列满时由导入请求线程写入
+     */
+    private Integer queueCapacity = 16;
+
+    /**
+     * 不超过该大小的文件读入内存后交由导入线程池写入，更大的文件由导入请求线程直接写入
+     * 导入时缓存在内存中的文件内容最多为(线程数 + 队列长度) * 该大小
+     */
+    private DataSize bufferSize = DataSize.ofMegabytes(1);
+}
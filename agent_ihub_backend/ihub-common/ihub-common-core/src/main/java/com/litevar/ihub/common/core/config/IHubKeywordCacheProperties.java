@@ -0,0 +1,34 @@
+package com.litevar.ihub.common.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 搜索关键词提取结果缓存配置
+ *
+ * @author Teoan
+ * @since 2025/11/25 15:20
+ */
+@Configuration
+@ConfigurationProperties(prefix = "agent-ihub.keyword-cache")
+@Data
+public class IHubKeywordCacheProperties {
+
+    /**
+     * 本地缓存最大数量
+     */
+    private Integer localMaxSize = 1000;
+
+    /**
+     * 本地缓存过期时间
+     */
+    private Duration localTtl = Duration.ofMinutes(10);
+
+    /**
+     * redis缓存过期时间
+     */
+    private Duration redisTtl = Duration.ofDays(7);
+}
@@ -0,0 +1,44 @@
+package com.litevar.ihub.common.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 热门agent排行配置
+ *
+ * @author Teoan
+ * @since 2025/11/21 09:40
+ */
+@Configuration
+@ConfigurationProperties(prefix = "agent-ihub.trending")
+@Data
+public class IHubTrendingProperties {
+
+    /**
+     * 热度半衰期，经过一个半衰期后行为产生的热度减半
+     */
+    private Duration halfLife = Duration.ofDays(3);
+
+    /**
+     * 收藏的热度权重
+     */
+    private Double starWeight = 5.0;
+
+    /**
+     * fork的热度权重
+     */
+    private Double forkWeight = 8.0;
+
+    /**
+     * 浏览的热度权重
+     */
+    private Double viewWeight = 1.0;
+
+    /**
+     * 每个排行榜保留的最大agent数
+     */
+    private Integer maxSize = 10000;
+}
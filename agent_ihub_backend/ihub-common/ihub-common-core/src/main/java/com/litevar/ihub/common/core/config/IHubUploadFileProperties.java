@@ -3,6 +3,9 @@ package com.litevar.ihub.common.core.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
 
 /**
  *
@@ -18,4 +21,24 @@ public class IHubUploadFileProperties {
      * 文件上传路径 默认为当前项目路径下的upload-file文件夹
      */
     private String path = "upload-file";
+
+    /**
+     * 启动时是否将未迁移的旧文件迁移到按内容寻址的存储目录，只需在一个节点上开启
+     */
+    private Boolean migrateBlobs = false;
+
+    /**
+     * 知识库文件分片上传的最大文件大小
+     */
+    private DataSize knowledgeMaxSize = DataSize.ofMegabytes(100);
+
+    /**
+     * 分片上传会话有效期，超时未完成的上传需重新开始
+     */
+    private Duration chunkSessionTtl = Duration.ofHours(24);
+
+    /**
+     * 带版本号的文件地址内容不会变化，响应的缓存有效期
+     */
+    private Duration immutableMaxAge = Duration.ofDays(365);
 }
@@ -0,0 +1,29 @@
+package com.litevar.ihub.common.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * agent 浏览数计数配置
+ *
+ * @author Teoan
+ * @since 2025/11/20 10:26
+ */
+@Configuration
+@ConfigurationProperties(prefix = "agent-ihub.view-counter")
+@Data
+public class IHubViewCounterProperties {
+
+    /**
+     * 浏览数增量刷入数据库的间隔
+     */
+    private Duration flushInterval = Duration.ofSeconds(5);
+
+    /**
+     * 单次批量写入的最大条数
+     */
+    private Integer maxBatchSize = 500;
+}
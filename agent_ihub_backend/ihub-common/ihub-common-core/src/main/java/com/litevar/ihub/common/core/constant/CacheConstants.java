@@ -34,6 +34,11 @@ public interface CacheConstants {
      */
     String IHUB_CONVERSION_PROGRESS_KEY = "ihub:conversion:progress:{}";
 
+    /**
+     * 知识库文件转换进度通知主题
+     */
+    String IHUB_CONVERSION_PROGRESS_TOPIC = "ihub:conversion:progress";
+
     /**
      * ihub 验证码过期时间，单位：分钟
      */
@@ -45,4 +50,86 @@ public interface CacheConstants {
      * 对象字段翻译缓存key
      */
     String IHUB_TRANSLATION_CACHE_KEY = "ihub:translation:{}";
+
+
+    /**
+     * 用户收藏的agent id集合缓存key
+     */
+    String IHUB_STAR_USER_AGENTS_KEY = "ihub:star:user:{}";
+
+    /**
+     * 用户收藏集合重建锁key
+     */
+    String IHUB_STAR_USER_LOCK_KEY = "ihub:star:user:lock:{}";
+
+    /**
+     * 用户收藏集合缓存过期时间，单位：小时
+     */
+    long IHUB_STAR_USER_AGENTS_EXPIRE_HOURS = 24;
+
+
+    /**
+     * 热门agent排行榜key 按平台分区，all为全部平台
+     */
+    String IHUB_TRENDING_AGENTS_KEY = "ihub:trending:agents:{}";
+
+    /**
+     * 热门agent排行榜当前衰减基准周期key
+     */
+    String IHUB_TRENDING_EPOCH_KEY = "ihub:trending:epoch";
+
+    /**
+     * 热门agent排行榜衰减基准重置锁key
+     */
+    String IHUB_TRENDING_REBASE_LOCK_KEY = "ihub:trending:rebase:lock";
+
+
+    /**
+     * agent详情缓存key
+     */
+    String IHUB_AGENT_CACHE_KEY = "ihub:agent:cache:{}";
+
+    /**
+     * (用户名, agent名称) -> agent id 缓存key
+     */
+    String IHUB_AGENT_NAME_CACHE_KEY = "ihub:agent:cache:name:{}:{}";
+
+    /**
+     * agent缓存失效通知主题
+     */
+    String IHUB_AGENT_CACHE_INVALIDATE_TOPIC = "ihub:agent:cache:invalidate";
+
+    /**
+     * agent浏览数刷入通知主题
+     */
+    String IHUB_AGENT_VIEWS_TOPIC = "ihub:agent:views";
+
+
+    /**
+     * 搜索关键词提取结果缓存key
+     */
+    String IHUB_SEARCH_KEYWORDS_KEY = "ihub:search:keywords:{}";
+
+
+    /**
+     * 文件内容引用计数锁key
+     */
+    String IHUB_FILE_BLOB_LOCK_KEY = "ihub:file:blob:lock:{}";
+
+
+    /**
+     * 分片上传会话key
+     */
+    String IHUB_CHUNK_UPLOAD_KEY = "ihub:upload:chunk:{}";
+
+    /**
+     * 分片上传写入锁key
+     */
+    String IHUB_CHUNK_UPLOAD_LOCK_KEY = "ihub:upload:chunk:lock:{}";
+
+
+    /**
+     * 无引用文件清理锁key
+     */
+    String IHUB_FILE_GC_LOCK_KEY = "ihub:file:gc:lock";
 }
@@ -0,0 +1,252 @@
+package com.litevar.ihub.common.core.utils;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * 按磁盘空间上限淘汰的文件缓存
+ * <p>
+ * 缓存文件按key保存在同一目录下，文件的最后修改时间作为最近访问时间，超出空间上限时按最近访问时间从旧到新删除。
+ * 相同key并发未命中时只生成一次；生成时先写入临时文件，完成后再原子替换，避免读取到未写完的文件。
+ * 缓存内容由key决定，内容变更后key随之变化，旧缓存不会再被命中，由空间上限淘汰。
+ *
+ * @author Teoan
+ * @since 2025/12/01 10:20
+ */
+@Slf4j
+public class DiskLruCache {
+
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    /**
+     * 缓存名称 用于日志
+     */
+    private final String name;
+
+    private final Path cacheDir;
+
+    /**
+     * 缓存文件后缀
+     */
+    private final String suffix;
+
+    /**
+     * 最大磁盘空间(字节)
+     */
+    private final LongSupplier maxSize;
+
+    /**
+     * 正在生成的缓存 相同key并发未命中时只生成一次
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> building = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存目录当前占用的磁盘空间，超出上限时重新统计并淘汰
+     */
+    private final AtomicLong cacheSize = new AtomicLong();
+
+
+    /**
+     * @param name     缓存名称 用于日志
+     * @param cacheDir 缓存目录
+     * @param suffix   缓存文件后缀
+     * @param maxSize  最大磁盘空间(字节)
+     */
+    public DiskLruCache(String name, Path cacheDir, String suffix, LongSupplier maxSize) {
+        this.name = name;
+        this.cacheDir = cacheDir.toAbsolutePath().normalize();
+        this.suffix = suffix;
+        this.maxSize = maxSize;
+        this.cacheSize.set(listCacheFiles().stream().mapToLong(CacheFile::size).sum());
+    }
+
+
+    /**
+     * 缓存目录当前占用的磁盘空间
+     */
+    public long size() {
+        return cacheSize.get();
+    }
+
+
+    /**
+     * 获取已缓存的文件，并更新最近访问时间
+     *
+     * @param key 缓存key
+     * @return 缓存文件 未命中时返回null
+     */
+    public Path get(String key) {
+        Path path = cacheFile(key);
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return path;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("更新{}访问时间失败: {}", name, path, e);
+            return Files.exists(path) ? path : null;
+        }
+    }
+
+
+    /**
+     * 获取缓存的文件，未命中时通过writer生成
+     *
+     * @param key    缓存key
+     * @param writer 将缓存内容写入指定的临时文件
+     * @return 缓存文件
+     */
+    public Path getOrCreate(String key, FileWriter writer) throws IOException {
+        Path cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> existing = building.putIfAbsent(key, future);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            Path path = create(key, writer);
+            future.complete(path);
+            return path;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            building.remove(key, future);
+        }
+    }
+
+
+    private Path create(String key, FileWriter writer) throws IOException {
+        Path path = cacheFile(key);
+        if (Files.exists(path)) {
+            return path;
+        }
+        Files.createDirectories(cacheDir);
+        Path temp = cacheDir.resolve(key + "." + IdUtil.fastSimpleUUID() + TEMP_FILE_SUFFIX);
+        try {
+            writer.write(temp);
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (cacheSize.addAndGet(Files.size(path)) > maxSize.getAsLong()) {
+            evict(path);
+        }
+        return path;
+    }
+
+
+    /**
+     * 缓存超过磁盘空间上限时，按最近访问时间从旧到新删除，刚生成的文件不删除
+     */
+    private synchronized void evict(Path keep) {
+        List<CacheFile> cacheFiles = listCacheFiles();
+        long limit = maxSize.getAsLong();
+        long totalSize = cacheFiles.stream().mapToLong(CacheFile::size).sum();
+        cacheFiles.sort(Comparator.comparingLong(CacheFile::lastAccess));
+        for (CacheFile cacheFile : cacheFiles) {
+            if (totalSize <= limit) {
+                break;
+            }
+            if (cacheFile.path().equals(keep)) {
+                continue;
+            }
+            // 正在传输中的文件删除后仍可读取到传输结束
+            if (FileUtil.del(cacheFile.path())) {
+                totalSize -= cacheFile.size();
+                log.debug("淘汰{}: {}", name, cacheFile.path());
+            }
+        }
+        cacheSize.set(totalSize);
+    }
+
+
+    private List<CacheFile> listCacheFiles() {
+        List<CacheFile> cacheFiles = new ArrayList<>();
+        if (!Files.isDirectory(cacheDir)) {
+            return cacheFiles;
+        }
+        try (Stream<Path> paths = Files.list(cacheDir)) {
+            paths.filter(path -> {
+                String fileName = path.getFileName().toString();
+                return !fileName.endsWith(TEMP_FILE_SUFFIX) && fileName.endsWith(suffix);
+            }).forEach(path -> {
+                try {
+                    cacheFiles.add(new CacheFile(path, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+                } catch (IOException e) {
+                    // 文件已被删除
+                }
+            });
+        } catch (IOException e) {
+            log.warn("读取{}目录失败", name, e);
+        }
+        return cacheFiles;
+    }
+
+
+    private Path cacheFile(String key) {
+        return cacheDir.resolve(key + suffix);
+    }
+
+
+    private Path await(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+
+    /**
+     * 写入缓存内容
+     */
+    @FunctionalInterface
+    public interface FileWriter {
+
+        /**
+         * 将缓存内容写入临时文件
+         *
+         * @param target 临时文件
+         */
+        void write(Path target) throws IOException;
+    }
+
+
+    /**
+     * 缓存文件信息
+     *
+     * @param path       文件路径
+     * @param size       文件大小
+     * @param lastAccess 最近访问时间
+     */
+    private record CacheFile(Path path, long size, long lastAccess) {
+    }
+}
@@ -3,6 +3,8 @@ package com.litevar.ihub.common.core.utils;
 import cn.hutool.extra.spring.SpringUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.*;
+import org.redisson.api.listener.MessageListener;
+import org.redisson.client.protocol.ScoredEntry;
 
 import java.time.Duration;
 import java.util.Collection;
@@ -413,6 +415,30 @@ public class RedisUtils {
         return count;
     }
 
+    /**
+     * 向Set批量添加元素
+     *
+     * @param key    键
+     * @param values 值
+     * @return 是否有元素被添加
+     */
+    public static boolean sAddAll(String key, Collection<?> values) {
+        RSet<Object> set = redissonClient.getSet(key);
+        return set.addAll(values);
+    }
+
+    /**
+     * 批量判断元素是否在Set中 (SMISMEMBER)
+     *
+     * @param key    键
+     * @param values 值
+     * @return 存在于Set中的元素
+     */
+    public static Set<Object> sContainsEach(String key, Collection<?> values) {
+        RSet<Object> set = redissonClient.getSet(key);
+        return set.containsEach(List.copyOf(values));
+    }
+
     /* -------------------------------------------- ZSet类型操作 -------------------------------------------- */
 
     /**
@@ -494,6 +520,71 @@ public class RedisUtils {
         return count;
     }
 
+    /**
+     * ZSet元素分数增加 (ZINCRBY)
+     *
+     * @param key   键
+     * @param value 值
+     * @param delta 增量
+     * @return 增加后的分数
+     */
+    public static Double zIncrement(String key, Object value, double delta) {
+        RScoredSortedSet<Object> sortedSet = redissonClient.getScoredSortedSet(key);
+        return sortedSet.addScore(value, delta);
+    }
+
+    /**
+     * 获取ZSet指定范围的元素（按分数从大到小）
+     *
+     * @param key   键
+     * @param start 开始位置
+     * @param end   结束位置
+     * @return 元素集合
+     */
+    public static Collection<Object> zReverseRange(String key, int start, int end) {
+        RScoredSortedSet<Object> sortedSet = redissonClient.getScoredSortedSet(key);
+        return sortedSet.valueRangeReversed(start, end);
+    }
+
+    /**
+     * 获取ZSet中分数不大于指定分数的元素及分数（按分数从大到小）
+     *
+     * @param key      键
+     * @param maxScore 最大分数（包含）
+     * @param offset   跳过的元素数
+     * @param count    数量
+     * @return 元素及分数
+     */
+    public static Collection<ScoredEntry<Object>> zReverseRangeByScore(String key, double maxScore, int offset, int count) {
+        RScoredSortedSet<Object> sortedSet = redissonClient.getScoredSortedSet(key);
+        return sortedSet.entryRangeReversed(Double.NEGATIVE_INFINITY, true, maxScore, true, offset, count);
+    }
+
+    /**
+     * ZSet所有元素分数乘以指定系数 (ZUNIONSTORE key 1 key WEIGHTS weight)
+     *
+     * @param key    键
+     * @param weight 系数
+     * @return ZSet大小
+     */
+    public static int zMultiply(String key, double weight) {
+        RScoredSortedSet<Object> sortedSet = redissonClient.getScoredSortedSet(key);
+        return sortedSet.union(Map.of(key, weight));
+    }
+
+    /**
+     * 按排名删除ZSet中的元素（按分数从小到大）
+     *
+     * @param key   键
+     * @param start 开始位置
+     * @param end   结束位置
+     * @return 删除的元素数量
+     */
+    public static int zRemoveRangeByRank(String key, int start, int end) {
+        RScoredSortedSet<Object> sortedSet = redissonClient.getScoredSortedSet(key);
+        return sortedSet.removeRangeByRank(start, end);
+    }
+
     /* -------------------------------------------- 分布式锁操作 -------------------------------------------- */
 
     /**
@@ -677,4 +768,42 @@ public class RedisUtils {
         RMapCache<Object, Object> mapCache = redissonClient.getMapCache(key);
         mapCache.clear();
     }
-}
\ No newline at end of file
+
+    /* -------------------------------------------- 发布订阅操作 -------------------------------------------- */
+
+    /**
+     * 发布消息
+     *
+     * @param topic   主题
+     * @param message 消息
+     * @return 接收到消息的订阅者数量
+     */
+    public static long publish(String topic, Object message) {
+        RTopic rTopic = redissonClient.getTopic(topic);
+        return rTopic.publish(message);
+    }
+
+    /**
+     * 订阅消息
+     *
+     * @param topic    主题
+     * @param type     消息类型
+     * @param listener 消息监听器
+     * @return 监听器id
+     */
+    public static <M> int subscribe(String topic, Class<M> type, MessageListener<? extends M> listener) {
+        RTopic rTopic = redissonClient.getTopic(topic);
+        return rTopic.addListener(type, listener);
+    }
+
+    /**
+     * 取消订阅
+     *
+     * @param topic      主题
+     * @param listenerId 监听器id
+     */
+    public static void unsubscribe(String topic, int listenerId) {
+        RTopic rTopic = redissonClient.getTopic(topic);
+        rTopic.removeListener(listenerId);
+    }
+}
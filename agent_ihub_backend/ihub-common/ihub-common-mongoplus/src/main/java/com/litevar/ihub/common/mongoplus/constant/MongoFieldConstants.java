@@ -0,0 +1,30 @@
+package com.litevar.ihub.common.mongoplus.constant;
+
+/**
+ * mongo 原生字段名常量 (camel-to-underline 转换后的字段名)
+ * 用于直接通过 MongoCollection 操作数据时使用
+ *
+ * @author Teoan
+ */
+public interface MongoFieldConstants {
+
+    /**
+     * 主键
+     */
+    String ID = "_id";
+
+    /**
+     * 逻辑删除字段
+     */
+    String LOGIC_DEL = "logic_del";
+
+    /**
+     * 创建时间
+     */
+    String CREATE_TIME = "create_time";
+
+    /**
+     * 更新时间
+     */
+    String UPDATE_TIME = "update_time";
+}
@@ -9,6 +9,8 @@ import com.litevar.ihub.common.satoken.entity.LoginUser;
 import com.litevar.ihub.common.satoken.enums.UserRole;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.function.Supplier;
+
 /**
  * 登录工具类
  *
@@ -22,6 +24,11 @@ public class LoginHelper {
     public static final String ROLE_KEY = "role";
     public static final String USER_KEY = "userId";
 
+    /**
+     * 后台线程代为执行的用户ID，后台线程没有登录上下文
+     */
+    private static final ThreadLocal<String> RUN_AS_USER_ID = new ThreadLocal<>();
+
 
     /**
      * 用户登录
@@ -41,6 +48,10 @@ public class LoginHelper {
      * @return 用户ID
      */
     public static String getCurrentUserId() {
+        String runAsUserId = RUN_AS_USER_ID.get();
+        if (runAsUserId != null) {
+            return runAsUserId;
+        }
         try {
             return Convert.toStr(StpUtil.getExtra(USER_KEY));
         } catch (Exception e) {
@@ -50,6 +61,29 @@ public class LoginHelper {
     }
 
 
+    /**
+     * 在当前线程以指定用户的身份执行任务
+     * 用于后台线程代替用户保存数据，任务中获取的当前用户ID及自动填充的创建者、更新者为该用户
+     *
+     * @param userId 用户ID
+     * @param task   任务
+     * @return 任务结果
+     */
+    public static <T> T runAs(String userId, Supplier<T> task) {
+        String previous = RUN_AS_USER_ID.get();
+        RUN_AS_USER_ID.set(userId);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                RUN_AS_USER_ID.remove();
+            } else {
+                RUN_AS_USER_ID.set(previous);
+            }
+        }
+    }
+
+
     /**
      * 获取当前登录用户信息
      *
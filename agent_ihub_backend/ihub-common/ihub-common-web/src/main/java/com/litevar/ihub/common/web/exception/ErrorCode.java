@@ -26,6 +26,7 @@ public enum ErrorCode {
     NOT_FOUND(404, "资源不存在"),
     METHOD_NOT_ALLOWED(405, "请求方法不被允许"),
     REQUEST_TIMEOUT(408, "请求超时"),
+    TOO_MANY_REQUESTS(429, "服务繁忙，请稍后重试"),
 
     /**
      * 业务相关错误码
@@ -50,7 +51,9 @@ public enum ErrorCode {
     FILE_DOWNLOAD_ERROR(1018, "文件下载失败"),
     EMAIL_ALREADY_EXISTS(1019, "邮箱已存在"),
     AGENT_ALREADY_EXISTS(1020, "Agent已存在"),
-    DATA_VERIFICATION_FAILED(1021, "数据校验失败");
+    DATA_VERIFICATION_FAILED(1021, "数据校验失败"),
+    INVALID_CURSOR(1022, "分页游标无效"),
+    UPLOAD_OFFSET_MISMATCH(1023, "分片偏移量与已上传大小不一致");
 
     /**
      * 错误码
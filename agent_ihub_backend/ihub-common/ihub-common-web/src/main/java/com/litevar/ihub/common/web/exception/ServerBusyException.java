@@ -0,0 +1,28 @@
+package com.litevar.ihub.common.web.exception;
+
+import java.io.Serial;
+
+/**
+ * 服务繁忙异常，返回429状态码，客户端需稍后重试
+ *
+ * @author Teoan
+ */
+public class ServerBusyException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 建议的重试间隔(秒)
+     */
+    private final long retryAfter;
+
+    public ServerBusyException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -9,11 +9,14 @@ import com.litevar.ihub.common.web.R;
 import com.litevar.ihub.common.web.exception.BusinessException;
 import com.litevar.ihub.common.web.exception.DemoModeException;
 import com.litevar.ihub.common.web.exception.ErrorCode;
+import com.litevar.ihub.common.web.exception.ServerBusyException;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.BindException;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
@@ -150,4 +153,15 @@ public class GlobalExceptionHandler {
     public R<Void> handleDemoModeException(DemoModeException e) {
         return R.fail(ErrorCode.DEMO_MODE_OPERATION_DENIED.getCode(), ErrorCode.DEMO_MODE_OPERATION_DENIED.getMessage());
     }
+
+    /**
+     * 服务繁忙异常
+     */
+    @ExceptionHandler(ServerBusyException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public R<Void> handleServerBusyException(ServerBusyException e, HttpServletResponse response) {
+        log.warn(e.getMessage());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()));
+        return R.fail(ErrorCode.TOO_MANY_REQUESTS.getCode(), e.getMessage());
+    }
 }
\ No newline at end of file
@@ -20,12 +20,13 @@ import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
@@ -139,6 +140,41 @@ public class AgentController {
         return R.ok(agentsService.getPublicAgents(pageNum, pageSize, search, PlatformType.of(platform), category, sort, tags));
     }
 
+    /**
+     * 游标分页获取公共Agent列表
+     *
+     * @param cursor    上一页返回的游标，第一页为空
+     * @param limit     每页数量
+     * @param withTotal 是否返回总数
+     * @param search    搜索内容
+     * @param platform  平台类型
+     * @param category  分类
+     * @param sort      排序方式
+     * @param tags      标签列表
+     * @return 公共Agent游标分页列表
+     */
+    @GetMapping("/public/cursor")
+    @Operation(summary = "游标分页获取公共Agent列表", description = "按游标获取公共Agent列表，适用于无限滚动")
+    @Parameter(name = "cursor", description = "上一页返回的游标，第一页为空")
+    @Parameter(name = "limit", description = "每页数量，最大100", example = "10")
+    @Parameter(name = "withTotal", description = "是否返回总数", example = "false")
+    @Parameter(name = "search", description = "查找内容")
+    @Parameter(name = "platform", description = "平台", example = "LiteAgent")
+    @Parameter(name = "category", description = "分类")
+    @Parameter(name = "sort", description = "排序")
+    @Parameter(name = "tags", description = "标签")
+    @SaCheckLogin
+    public R<CursorPageDTO<AgentDTO>> getPublicAgentsByCursor(@RequestParam(value = "cursor", required = false) String cursor,
+                                                            @RequestParam(value = "limit", defaultValue = "10") Integer limit,
+                                                            @RequestParam(value = "withTotal", defaultValue = "false") Boolean withTotal,
+                                                            @RequestParam(value = "search", required = false) String search,
+                                                            @RequestParam(value = "platform", required = false) String platform,
+                                                            @RequestParam(value = "category", required = false) String category,
+                                                            @RequestParam(value = "sort", required = false) String sort,
+                                                            @RequestParam(value = "tags", required = false) List<String> tags) {
+        return R.ok(agentsService.getPublicAgentsByCursor(cursor, limit, withTotal, search, PlatformType.of(platform), category, sort, tags));
+    }
+
     /**
      * 获取热门Agent列表
      *
@@ -161,6 +197,29 @@ public class AgentController {
         return R.ok(agentsService.getTrendingAgents(pageNum, pageSize, PlatformType.of(platform)));
     }
 
+    /**
+     * 游标分页获取热门Agent列表
+     *
+     * @param cursor    上一页返回的游标，第一页为空
+     * @param limit     每页数量
+     * @param withTotal 是否返回总数
+     * @param platform  平台类型
+     * @return 热门Agent游标分页列表
+     */
+    @GetMapping("/trending/cursor")
+    @Operation(summary = "游标分页获取热门Agent列表", description = "按游标获取热门Agent列表，适用于无限滚动")
+    @Parameter(name = "cursor", description = "上一页返回的游标，第一页为空")
+    @Parameter(name = "limit", description = "每页数量，最大100", example = "10")
+    @Parameter(name = "withTotal", description = "是否返回总数", example = "false")
+    @Parameter(name = "platform", description = "平台", example = "LiteAgent")
+    @SaCheckLogin
+    public R<CursorPageDTO<AgentDTO>> getTrendingAgentsByCursor(@RequestParam(value = "cursor", required = false) String cursor,
+                                                              @RequestParam(value = "limit", defaultValue = "10") Integer limit,
+                                                              @RequestParam(value = "withTotal", defaultValue = "false") Boolean withTotal,
+                                                              @RequestParam(value = "platform", required = false) String platform) {
+        return R.ok(agentsService.getTrendingAgentsByCursor(cursor, limit, withTotal, PlatformType.of(platform)));
+    }
+
 
     /**
      * 更新Agent信息
@@ -214,6 +273,32 @@ public class AgentController {
     }
 
 
+    /**
+     * 游标分页获取用户的Agent列表
+     *
+     * @param userId    用户ID
+     * @param userName  用户名
+     * @param sort      排序方式
+     * @param search    搜索内容
+     * @param cursor    上一页返回的游标，第一页为空
+     * @param limit     每页数量
+     * @param withTotal 是否返回总数
+     * @return 用户的Agent游标分页列表
+     */
+    @GetMapping("/user/cursor")
+    @Operation(summary = "游标分页获取用户Agent列表")
+    @SaCheckLogin
+    public R<CursorPageDTO<AgentDTO>> getUserAgentsByCursor(@RequestParam(value = "userId", required = false) String userId,
+                                                          @RequestParam(value = "userName", required = false) String userName,
+                                                          @RequestParam(value = "sort", required = false) String sort,
+                                                          @RequestParam(value = "search", required = false) String search,
+                                                          @RequestParam(value = "cursor", required = false) String cursor,
+                                                          @RequestParam(value = "limit", defaultValue = "10") Integer limit,
+                                                          @RequestParam(value = "withTotal", defaultValue = "false") Boolean withTotal) {
+        return R.ok(agentsService.listAgentsByAuthorByCursor(userId, userName, sort, search, cursor, limit, withTotal));
+    }
+
+
 
 
     /**
@@ -282,6 +367,41 @@ public class AgentController {
     }
 
 
+    /**
+     * 游标分页获取用户收藏的Agent列表
+     *
+     * @param userId    用户ID
+     * @param cursor    上一页返回的游标，第一页为空
+     * @param limit     每页数量
+     * @param withTotal 是否返回总数
+     * @param search    搜索内容
+     * @param platform  平台类型
+     * @param category  分类
+     * @param sort      排序方式
+     * @return 用户收藏的Agent游标分页列表
+     */
+    @GetMapping("/star/cursor")
+    @Operation(summary = "游标分页获取用户收藏的Agent列表")
+    @SaCheckLogin
+    @Parameter(name = "cursor", description = "上一页返回的游标，第一页为空")
+    @Parameter(name = "limit", description = "每页数量，最大100", example = "10")
+    @Parameter(name = "withTotal", description = "是否返回总数", example = "false")
+    @Parameter(name = "search", description = "查找内容")
+    @Parameter(name = "platform", description = "平台", example = "LiteAgent")
+    @Parameter(name = "category", description = "分类")
+    @Parameter(name = "sort", description = "排序")
+    public R<CursorPageDTO<AgentDTO>> listStarredAgentsByCursor(@RequestParam(value = "userId") String userId,
+                                                              @RequestParam(value = "cursor", required = false) String cursor,
+                                                              @RequestParam(value = "limit", defaultValue = "10") Integer limit,
+                                                              @RequestParam(value = "withTotal", defaultValue = "false") Boolean withTotal,
+                                                              @RequestParam(value = "search", required = false) String search,
+                                                              @RequestParam(value = "platform", required = false) String platform,
+                                                              @RequestParam(value = "category", required = false) String category,
+                                                              @RequestParam(value = "sort", required = false) String sort) {
+        return R.ok(agentsService.listStarredAgentsByCursor(userId, search, PlatformType.of(platform), category, sort, cursor, limit, withTotal));
+    }
+
+
     /**
      * 导入Agent
      *
@@ -300,15 +420,16 @@ public class AgentController {
      * 导出Agent
      *
      * @param id Agent ID
+     * @param ifNoneMatch 客户端缓存的ETag
      * @return 导出的Agent文件
-     * @throws IOException IO异常
      */
     @GetMapping("/export")
     @Operation(summary = "导出Agent", description = "导出指定ID的Agent为agent文件")
     @Parameter(name = "id", description = "Agent ID", required = true)
     @SaCheckLogin
-    public ResponseEntity<Resource> exportAgent(@NotBlank(message = "Agent ID不能为空") @RequestParam("id") String id) throws IOException {
-        return agentsService.exportAgent(id);
+    public ResponseEntity<StreamingResponseBody> exportAgent(@NotBlank(message = "Agent ID不能为空") @RequestParam("id") String id,
+                                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return agentsService.exportAgent(id, ifNoneMatch);
     }
 
 
@@ -452,6 +573,27 @@ public class AgentController {
     }
 
 
+    /**
+     * 游标分页获取fork了某个agent的agent列表
+     *
+     * @param originalAgentId 原始Agent ID
+     * @param cursor          上一页返回的游标，第一页为空
+     * @param limit           每页数量
+     * @param withTotal       是否返回总数
+     * @return fork了某个agent的agent游标分页列表
+     */
+    @GetMapping("/fork/list/cursor")
+    @Operation(summary = "游标分页获取fork了某个agent的agent列表", description = "游标分页获取fork了某个agent的agent列表")
+    @SaCheckLogin
+    public R<CursorPageDTO<AgentDTO>> listForkedAgentsByCursor(
+            @NotBlank(message = "原始Agent ID不能为空") @RequestParam("originalAgentId") String originalAgentId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "10") Integer limit,
+            @RequestParam(value = "withTotal", defaultValue = "false") Boolean withTotal) {
+        return R.ok(agentsService.listForkedAgentsByCursor(originalAgentId, cursor, limit, withTotal));
+    }
+
+
 
     /**
      * 删除Agent知识库、工具文件
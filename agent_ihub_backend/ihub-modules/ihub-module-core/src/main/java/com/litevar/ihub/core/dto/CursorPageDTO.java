@@ -0,0 +1,41 @@
+package com.litevar.ihub.core.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 游标分页结果DTO
+ *
+ * @author Teoan
+ * @since 2025/11/24 10:15
+ */
+@Data
+@Schema(description = "游标分页结果DTO")
+public class CursorPageDTO<T> {
+
+    /**
+     * 当前页数据
+     */
+    @Schema(description = "当前页数据")
+    private List<T> contentData;
+
+    /**
+     * 下一页游标 没有更多数据时为空
+     */
+    @Schema(description = "下一页游标，没有更多数据时为空")
+    private String nextCursor;
+
+    /**
+     * 是否还有更多数据
+     */
+    @Schema(description = "是否还有更多数据")
+    private Boolean hasMore;
+
+    /**
+     * 总数 仅在请求时需要总数时返回
+     */
+    @Schema(description = "总数，仅在withTotal为true时返回")
+    private Long totalSize;
+}
@@ -66,6 +66,17 @@ public class Agent extends BaseEntity implements Serializable {
     @MongoIndex
     private String authorId;
 
+    /**
+     * 作者名称 (用户名、昵称)，冗余存储用于全文检索
+     */
+    private List<String> authorNames;
+
+    /**
+     * 名称、描述、作者名称中的中文等字符拆分的单字和双字片段，用于按片段检索
+     */
+    @MongoIndex
+    private List<String> searchGrams;
+
 
     /**
      * 分类
@@ -42,5 +42,10 @@ public class Star extends BaseEntity {
     @MongoIndex
     private String agentId;
 
+    /**
+     * 收藏时间(毫秒时间戳)，取消收藏时按收藏时间衰减后扣减热度
+     */
+    private Long starredAt;
+
 
 }
\ No newline at end of file
@@ -0,0 +1,260 @@
+package com.litevar.ihub.core.handler;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.CacheObj;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.litevar.ihub.common.core.config.IHubAgentCacheProperties;
+import com.litevar.ihub.common.core.utils.RedisUtils;
+import com.litevar.ihub.core.entity.Agent;
+import com.mongoplus.mapper.BaseMapper;
+import com.mongoplus.toolkit.ChainWrappers;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static com.litevar.ihub.common.core.constant.CacheConstants.*;
+
+/**
+ * Agent二级缓存处理
+ * <p>
+ * 一级缓存为本地LRU缓存，二级缓存为redis。读取时依次查询本地缓存、redis、数据库，并逐级回填。
+ * agent变更后删除redis缓存，并通过redis发布订阅通知所有节点删除本地缓存。
+ * 浏览数刷入数据库后各节点直接更新本地缓存中的浏览数，不删除本地缓存，避免频繁访问的agent反复回源。
+ * 缓存中的agent对象为共享实例，调用方只能读取不能修改。
+ *
+ * @author Teoan
+ * @since 2025/11/25 10:06
+ */
+@Slf4j
+@Component
+public class AgentCacheHandler {
+
+    private final BaseMapper baseMapper;
+    private final IHubAgentCacheProperties agentCacheProperties;
+
+    /**
+     * agent id -> agent
+     */
+    private final LRUCache<String, Agent> agentCache;
+
+    /**
+     * 用户名:agent名称 -> agent id
+     */
+    private final LRUCache<String, String> agentIdCache;
+
+    private Integer listenerId;
+
+    private Integer viewsListenerId;
+
+
+    public AgentCacheHandler(BaseMapper baseMapper, IHubAgentCacheProperties agentCacheProperties) {
+        this.baseMapper = baseMapper;
+        this.agentCacheProperties = agentCacheProperties;
+        long localTtl = agentCacheProperties.getLocalTtl().toMillis();
+        this.agentCache = CacheUtil.newLRUCache(agentCacheProperties.getLocalMaxSize(), localTtl);
+        this.agentIdCache = CacheUtil.newLRUCache(agentCacheProperties.getLocalMaxSize(), localTtl);
+    }
+
+
+    /**
+     * 订阅缓存失效通知
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        listenerId = RedisUtils.subscribe(IHUB_AGENT_CACHE_INVALIDATE_TOPIC, String[].class,
+                (channel, agentIds) -> evictLocal(agentIds));
+        viewsListenerId = RedisUtils.subscribe(IHUB_AGENT_VIEWS_TOPIC, Map.class,
+                (channel, views) -> updateLocalViews(Convert.toMap(String.class, Integer.class, views)));
+    }
+
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (ObjUtil.isNotNull(listenerId)) {
+            RedisUtils.unsubscribe(IHUB_AGENT_CACHE_INVALIDATE_TOPIC, listenerId);
+        }
+        if (ObjUtil.isNotNull(viewsListenerId)) {
+            RedisUtils.unsubscribe(IHUB_AGENT_VIEWS_TOPIC, viewsListenerId);
+        }
+    }
+
+
+    /**
+     * 根据id获取agent
+     *
+     * @param agentId agent id
+     * @return agent 不存在时返回null
+     */
+    public Agent getAgent(String agentId) {
+        if (StrUtil.isBlank(agentId)) {
+            return null;
+        }
+        Agent agent = agentCache.get(agentId, false);
+        if (ObjUtil.isNotNull(agent)) {
+            return agent;
+        }
+        String key = StrUtil.format(IHUB_AGENT_CACHE_KEY, agentId);
+        agent = getFromRedis(key);
+        if (ObjUtil.isNull(agent)) {
+            agent = ChainWrappers.lambdaQueryChain(baseMapper, Agent.class).eq(Agent::getId, agentId).one();
+            if (ObjUtil.isNull(agent)) {
+                return null;
+            }
+            RedisUtils.set(key, agent, agentCacheProperties.getRedisTtl());
+        }
+        agentCache.put(agentId, agent);
+        return agent;
+    }
+
+
+    /**
+     * 根据用户名和agent名称获取缓存的agent id
+     *
+     * @param userName  用户名
+     * @param agentName agent名称
+     * @return agent id 未缓存时返回null
+     */
+    public String getAgentId(String userName, String agentName) {
+        String nameKey = nameKey(userName, agentName);
+        String agentId = agentIdCache.get(nameKey, false);
+        if (StrUtil.isNotBlank(agentId)) {
+            return agentId;
+        }
+        agentId = (String) RedisUtils.get(StrUtil.format(IHUB_AGENT_NAME_CACHE_KEY, userName, agentName));
+        if (StrUtil.isNotBlank(agentId)) {
+            agentIdCache.put(nameKey, agentId);
+        }
+        return agentId;
+    }
+
+
+    /**
+     * 缓存用户名和agent名称对应的agent id
+     *
+     * @param userName  用户名
+     * @param agentName agent名称
+     * @param agentId   agent id
+     */
+    public void putAgentId(String userName, String agentName, String agentId) {
+        RedisUtils.set(StrUtil.format(IHUB_AGENT_NAME_CACHE_KEY, userName, agentName), agentId, agentCacheProperties.getRedisTtl());
+        agentIdCache.put(nameKey(userName, agentName), agentId);
+    }
+
+
+    /**
+     * 删除用户名和agent名称对应的agent id缓存，agent重命名后旧名称的映射会在读取校验时删除
+     *
+     * @param userName  用户名
+     * @param agentName agent名称
+     */
+    public void evictAgentId(String userName, String agentName) {
+        RedisUtils.delete(StrUtil.format(IHUB_AGENT_NAME_CACHE_KEY, userName, agentName));
+        agentIdCache.remove(nameKey(userName, agentName));
+    }
+
+
+    /**
+     * 删除agent缓存并通知所有节点删除本地缓存
+     *
+     * @param agentIds agent id
+     */
+    public void evict(String... agentIds) {
+        String[] ids = Arrays.stream(agentIds).filter(StrUtil::isNotBlank).distinct().toArray(String[]::new);
+        if (ArrayUtil.isEmpty(ids)) {
+            return;
+        }
+        try {
+            RedisUtils.delete(Arrays.stream(ids).map(id -> StrUtil.format(IHUB_AGENT_CACHE_KEY, id)).toList());
+            evictLocal(ids);
+            RedisUtils.publish(IHUB_AGENT_CACHE_INVALIDATE_TOPIC, ids);
+        } catch (Exception e) {
+            // 通知失败时其他节点的本地缓存在过期后自动失效
+            log.error("删除agent缓存失败: agentIds={}", Arrays.toString(ids), e);
+        }
+    }
+
+
+    /**
+     * 更新缓存中agent的浏览数，在浏览数刷入数据库后调用
+     * 本地缓存直接更新并通知其他节点更新，redis缓存删除后由下次读取回源数据库
+     *
+     * @param views agent id -> 刷入后数据库中的浏览数
+     */
+    public void updateViews(Map<String, Integer> views) {
+        if (CollUtil.isEmpty(views)) {
+            return;
+        }
+        try {
+            RedisUtils.delete(views.keySet().stream().map(id -> StrUtil.format(IHUB_AGENT_CACHE_KEY, id)).toList());
+            updateLocalViews(views);
+            RedisUtils.publish(IHUB_AGENT_VIEWS_TOPIC, new HashMap<>(views));
+        } catch (Exception e) {
+            // 通知失败时其他节点的本地缓存在过期后自动失效
+            log.error("更新agent缓存浏览数失败: agentIds={}", views.keySet(), e);
+        }
+    }
+
+
+    /**
+     * 更新本地缓存中的浏览数，通知中为数据库中的浏览数而非增量，只增不减，重复或乱序的通知不会重复计入
+     */
+    private void updateLocalViews(Map<String, Integer> views) {
+        views.forEach((agentId, viewCount) -> {
+            Agent agent = agentCache.get(agentId, false);
+            if (ObjUtil.isNotNull(agent) && ObjUtil.isNotNull(viewCount)
+                    && viewCount > ObjUtil.defaultIfNull(agent.getViews(), 0)) {
+                agent.setViews(viewCount);
+            }
+        });
+    }
+
+
+    /**
+     * 删除本地缓存，同时删除指向这些agent的名称映射
+     */
+    private void evictLocal(String[] agentIds) {
+        List<String> ids = Arrays.asList(agentIds);
+        ids.forEach(agentCache::remove);
+        // 先收集待删除的key，遍历时不修改缓存
+        List<String> nameKeys = new ArrayList<>();
+        Iterator<CacheObj<String, String>> iterator = agentIdCache.cacheObjIterator();
+        while (iterator.hasNext()) {
+            CacheObj<String, String> cacheObj = iterator.next();
+            if (ids.contains(cacheObj.getValue())) {
+                nameKeys.add(cacheObj.getKey());
+            }
+        }
+        nameKeys.forEach(agentIdCache::remove);
+    }
+
+
+    private Agent getFromRedis(String key) {
+        try {
+            return RedisUtils.get(key, Agent.class);
+        } catch (Exception e) {
+            // 缓存数据无法反序列化时(如实体字段变更)删除后回源数据库
+            log.warn("读取agent缓存失败: key={}", key, e);
+            RedisUtils.delete(key);
+            return null;
+        }
+    }
+
+
+    private String nameKey(String userName, String agentName) {
+        return userName + StrUtil.COLON + agentName;
+    }
+}
@@ -0,0 +1,316 @@
+package com.litevar.ihub.core.handler;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants;
+import com.litevar.ihub.common.web.exception.BusinessException;
+import com.litevar.ihub.common.web.exception.ErrorCode;
+import com.litevar.ihub.core.dto.CursorPageDTO;
+import com.litevar.ihub.core.entity.Agent;
+import com.litevar.ihub.core.enums.PlatformType;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongoplus.mapper.BaseMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Agent游标分页处理
+ * <p>
+ * 游标中记录上一页最后一条记录的排序字段值和_id，下一页通过 (排序字段, _id) 比较直接定位，
+ * 不需要skip，翻页深度不影响查询耗时。游标对前端是不透明的base64字符串。
+ * 游标中同时记录排序方式和查询条件的指纹，换了排序或条件后继续使用旧游标时返回游标无效，避免按错误的位置定位。
+ * 公开agent的常用排序按 (is_public, logic_del, 排序字段, _id) 建立复合索引，按游标定位时只扫描一页数据。
+ *
+ * @author Teoan
+ * @since 2025/11/24 10:32
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AgentCursorHandler {
+
+    /**
+     * 每页最大数量
+     */
+    private static final int MAX_LIMIT = 100;
+
+    private static final String CURSOR_VALUE = "v";
+    private static final String CURSOR_TYPE = "t";
+    private static final String CURSOR_ID = "i";
+    private static final String CURSOR_FINGERPRINT = "f";
+    private static final String CURSOR_MODE = "m";
+    private static final String CURSOR_EPOCH = "e";
+
+    private static final String TYPE_DATE = "d";
+    private static final String TYPE_NUMBER = "n";
+
+    private static final String MODE_TRENDING = "t";
+
+    private static final String IS_PUBLIC_FIELD = "is_public";
+    private static final String STARS_FIELD = "stars";
+
+    private final BaseMapper baseMapper;
+    private final AgentTrendingHandler agentTrendingHandler;
+
+
+    /**
+     * 创建公开agent游标分页使用的复合索引
+     * <ul>
+     *     <li>create_time: 公开列表的默认排序(最新/最早)，热门排行无数据时也按最新排序，每次打开列表都会查询</li>
+     *     <li>stars: 公开列表按收藏数排序，收藏数只在收藏/取消收藏时更新</li>
+     * </ul>
+     * 浏览数每次刷入都会更新，fork数及更新时间排序使用较少，不建立索引，按is_public索引筛选后只取一页排序。
+     * 作者、收藏、fork列表的范围由author_id索引或_id确定，每个用户的agent数量有限，不需要额外的索引。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initCursorIndexes() {
+        MongoCollection<Document> collection = baseMapper.getMongoPlusClient().getCollection(Agent.class);
+        for (String sortField : List.of(MongoFieldConstants.CREATE_TIME, STARS_FIELD)) {
+            try {
+                collection.createIndex(Indexes.compoundIndex(Indexes.ascending(IS_PUBLIC_FIELD, MongoFieldConstants.LOGIC_DEL),
+                        Indexes.descending(sortField, MongoFieldConstants.ID)));
+            } catch (Exception e) {
+                log.error("创建agent游标分页索引失败: {}", sortField, e);
+            }
+        }
+    }
+
+
+    /**
+     * 按游标查询一页agent id
+     *
+     * @param filter    查询条件
+     * @param sort      排序方式
+     * @param cursor    上一页返回的游标 为空时查询第一页
+     * @param limit     每页数量
+     * @param withTotal 是否查询总数
+     * @param queryKeys 构成查询条件的参数 如作者id、搜索内容，用于校验游标与查询条件一致
+     * @return 当前页的agent id，按排序顺序排列
+     */
+    public CursorPageDTO<String> queryIds(Bson filter, String sort, String cursor, Integer limit, Boolean withTotal,
+                                          Object... queryKeys) {
+        SortSpec sortSpec = SortSpec.of(sort);
+        int pageSize = normalizeLimit(limit);
+        String fingerprint = fingerprint(sortSpec.field(), sortSpec.ascending(), queryKeys);
+        MongoCollection<Document> collection = baseMapper.getMongoPlusClient().getCollection(Agent.class);
+
+        Bson query = StrUtil.isBlank(cursor) ? filter
+                : Filters.and(filter, keysetFilter(sortSpec, decode(cursor, fingerprint)));
+        Bson order = sortSpec.ascending()
+                ? Sorts.ascending(sortSpec.field(), MongoFieldConstants.ID)
+                : Sorts.descending(sortSpec.field(), MongoFieldConstants.ID);
+        // 多查一条用于判断是否还有下一页
+        List<Document> documents = collection.find(query)
+                .projection(Projections.include(MongoFieldConstants.ID, sortSpec.field()))
+                .sort(order)
+                .limit(pageSize + 1)
+                .into(new ArrayList<>());
+
+        boolean hasMore = documents.size() > pageSize;
+        List<Document> pageDocuments = hasMore ? documents.subList(0, pageSize) : documents;
+
+        CursorPageDTO<String> page = new CursorPageDTO<>();
+        page.setContentData(pageDocuments.stream().map(document -> document.getString(MongoFieldConstants.ID)).toList());
+        page.setHasMore(hasMore);
+        if (hasMore) {
+            Document last = pageDocuments.get(pageDocuments.size() - 1);
+            page.setNextCursor(encode(last.get(sortSpec.field()), last.getString(MongoFieldConstants.ID), fingerprint));
+        }
+        if (BooleanUtil.isTrue(withTotal)) {
+            page.setTotalSize(collection.countDocuments(filter));
+        }
+        return page;
+    }
+
+
+    /**
+     * 按游标查询一页热门agent id
+     * 游标中记录上一页最后一个agent的热度分数和id，热度持续变化时翻页也不会重复或遗漏
+     *
+     * @param platform  平台 为空时查询全部平台
+     * @param cursor    上一页返回的游标 为空时查询第一页
+     * @param limit     每页数量
+     * @param withTotal 是否查询总数
+     * @return 当前页的agent id，按热度从高到低排列
+     */
+    public CursorPageDTO<String> queryTrendingIds(PlatformType platform, String cursor, Integer limit, Boolean withTotal) {
+        int pageSize = normalizeLimit(limit);
+        String fingerprint = fingerprint(MODE_TRENDING, platform);
+        AgentTrendingHandler.TrendingPosition after = StrUtil.isBlank(cursor) ? null : decodeTrending(cursor, fingerprint);
+        // 多查一条用于判断是否还有下一页
+        List<AgentTrendingHandler.TrendingPosition> positions = agentTrendingHandler.getTrendingAgentsAfter(platform, after, pageSize + 1);
+
+        boolean hasMore = positions.size() > pageSize;
+        List<AgentTrendingHandler.TrendingPosition> pagePositions = hasMore ? positions.subList(0, pageSize) : positions;
+
+        CursorPageDTO<String> page = new CursorPageDTO<>();
+        page.setContentData(pagePositions.stream().map(AgentTrendingHandler.TrendingPosition::agentId).toList());
+        page.setHasMore(hasMore);
+        if (hasMore) {
+            page.setNextCursor(encodeTrending(pagePositions.get(pagePositions.size() - 1), fingerprint));
+        }
+        if (BooleanUtil.isTrue(withTotal)) {
+            page.setTotalSize(agentTrendingHandler.getTrendingSize(platform));
+        }
+        return page;
+    }
+
+
+    /**
+     * 是否为热门排行的游标，热门列表翻页期间保持使用第一页时的游标类型
+     */
+    public boolean isTrendingCursor(String cursor) {
+        return StrUtil.isNotBlank(cursor) && MODE_TRENDING.equals(parse(cursor).getStr(CURSOR_MODE));
+    }
+
+
+    /**
+     * 规范每页数量 1 ~ 100
+     */
+    public int normalizeLimit(Integer limit) {
+        return ObjUtil.isNull(limit) ? 10 : Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+
+    /**
+     * 构建位于游标之后的记录的查询条件
+     * 排序字段为空的记录在倒序时排在最后，在正序时排在最前
+     */
+    private Bson keysetFilter(SortSpec sortSpec, Cursor cursor) {
+        String field = sortSpec.field();
+        Bson idAfter = sortSpec.ascending() ? Filters.gt(MongoFieldConstants.ID, cursor.id())
+                : Filters.lt(MongoFieldConstants.ID, cursor.id());
+        if (ObjUtil.isNull(cursor.value())) {
+            Bson sameNullValue = Filters.and(Filters.eq(field, null), idAfter);
+            return sortSpec.ascending() ? Filters.or(sameNullValue, Filters.ne(field, null)) : sameNullValue;
+        }
+        Bson valueAfter = sortSpec.ascending() ? Filters.gt(field, cursor.value()) : Filters.lt(field, cursor.value());
+        Bson sameValue = Filters.and(Filters.eq(field, cursor.value()), idAfter);
+        return sortSpec.ascending() ? Filters.or(valueAfter, sameValue)
+                : Filters.or(valueAfter, sameValue, Filters.eq(field, null));
+    }
+
+
+    private String encode(Object value, String id, String fingerprint) {
+        JSONObject json = JSONUtil.createObj().set(CURSOR_ID, id).set(CURSOR_FINGERPRINT, fingerprint);
+        if (value instanceof Date date) {
+            json.set(CURSOR_TYPE, TYPE_DATE).set(CURSOR_VALUE, date.getTime());
+        } else if (value instanceof Number number) {
+            json.set(CURSOR_TYPE, TYPE_NUMBER).set(CURSOR_VALUE, number);
+        }
+        return Base64.encodeUrlSafe(json.toString());
+    }
+
+
+    private Cursor decode(String cursor, String fingerprint) {
+        JSONObject json = parse(cursor);
+        String id = json.getStr(CURSOR_ID);
+        if (StrUtil.isBlank(id) || !fingerprint.equals(json.getStr(CURSOR_FINGERPRINT))) {
+            throw new BusinessException(ErrorCode.INVALID_CURSOR);
+        }
+        String type = json.getStr(CURSOR_TYPE);
+        Object value = null;
+        if (TYPE_DATE.equals(type)) {
+            value = new Date(json.getLong(CURSOR_VALUE));
+        } else if (TYPE_NUMBER.equals(type)) {
+            value = json.getBigDecimal(CURSOR_VALUE).doubleValue();
+        }
+        return new Cursor(value, id);
+    }
+
+
+    private String encodeTrending(AgentTrendingHandler.TrendingPosition position, String fingerprint) {
+        return Base64.encodeUrlSafe(JSONUtil.createObj()
+                .set(CURSOR_MODE, MODE_TRENDING)
+                .set(CURSOR_ID, position.agentId())
+                .set(CURSOR_VALUE, position.score())
+                .set(CURSOR_EPOCH, position.epoch())
+                .set(CURSOR_FINGERPRINT, fingerprint)
+                .toString());
+    }
+
+
+    private AgentTrendingHandler.TrendingPosition decodeTrending(String cursor, String fingerprint) {
+        JSONObject json = parse(cursor);
+        String id = json.getStr(CURSOR_ID);
+        Double score = json.getDouble(CURSOR_VALUE);
+        Long epoch = json.getLong(CURSOR_EPOCH);
+        if (!MODE_TRENDING.equals(json.getStr(CURSOR_MODE)) || StrUtil.isBlank(id) || ObjUtil.isNull(score)
+                || ObjUtil.isNull(epoch) || !fingerprint.equals(json.getStr(CURSOR_FINGERPRINT))) {
+            throw new BusinessException(ErrorCode.INVALID_CURSOR);
+        }
+        return new AgentTrendingHandler.TrendingPosition(id, score, epoch);
+    }
+
+
+    /**
+     * 排序方式与查询条件的指纹
+     */
+    private String fingerprint(Object... keys) {
+        return DigestUtil.md5Hex16(JSONUtil.toJsonStr(Arrays.asList(keys)));
+    }
+
+
+    private JSONObject parse(String cursor) {
+        try {
+            return JSONUtil.parseObj(Base64.decodeStr(cursor));
+        } catch (Exception e) {
+            throw new BusinessException(ErrorCode.INVALID_CURSOR);
+        }
+    }
+
+
+    /**
+     * 游标位置
+     *
+     * @param value 排序字段值
+     * @param id    _id
+     */
+    private record Cursor(Object value, String id) {
+    }
+
+
+    /**
+     * 排序方式，与分页接口的sort参数保持一致，不区分大小写
+     * 同时支持公开列表的newest/oldest和个人列表的createTime/updateTime
+     *
+     * @param field     排序字段
+     * @param ascending 是否正序
+     */
+    private record SortSpec(String field, boolean ascending) {
+
+        static SortSpec of(String sort) {
+            if (StrUtil.isBlank(sort)) {
+                return new SortSpec(MongoFieldConstants.CREATE_TIME, false);
+            }
+            return switch (sort.toLowerCase()) {
+                case "stars" -> new SortSpec(STARS_FIELD, false);
+                case "forks" -> new SortSpec("forks", false);
+                case "views" -> new SortSpec("views", false);
+                case "newest", "createtime" -> new SortSpec(MongoFieldConstants.CREATE_TIME, false);
+                case "updatetime" -> new SortSpec(MongoFieldConstants.UPDATE_TIME, false);
+                case "oldest" -> new SortSpec(MongoFieldConstants.CREATE_TIME, true);
+                default -> new SortSpec(MongoFieldConstants.CREATE_TIME, false);
+            };
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.litevar.ihub.core.handler;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.litevar.ihub.common.core.config.IHubExportProperties;
+import com.litevar.ihub.common.core.utils.DiskLruCache;
+import com.litevar.ihub.core.entity.Agent;
+import com.litevar.ihub.core.entity.User;
+import com.litevar.ihub.file.entity.FileInfo;
+import com.litevar.ihub.file.service.IFileInfoService;
+import com.mongoplus.mapper.BaseMapper;
+import com.mongoplus.toolkit.ChainWrappers;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 导出agent文件的磁盘缓存
+ * <p>
+ * 缓存key由agent id、更新时间、版本号、作者用户名及引用文件的md5计算得到，agent、作者或其文件变更后key随之变化，旧缓存不会再被命中，
+ * 由磁盘空间上限按最近访问时间淘汰。
+ *
+ * @author Teoan
+ * @since 2025/11/26 16:20
+ */
+@Component
+@RequiredArgsConstructor
+public class AgentExportCacheHandler {
+
+    private static final String CACHE_FILE_SUFFIX = ".agent";
+
+    private final IFileInfoService fileInfoService;
+    private final IHubExportProperties exportProperties;
+    private final BaseMapper baseMapper;
+
+    private DiskLruCache cache;
+
+
+    @PostConstruct
+    public void init() {
+        cache = new DiskLruCache("导出缓存", Path.of(exportProperties.getCachePath()), CACHE_FILE_SUFFIX,
+                () -> exportProperties.getCacheMaxSize().toBytes());
+    }
+
+
+    /**
+     * 是否启用导出缓存
+     */
+    public boolean isEnabled() {
+        return BooleanUtil.isTrue(exportProperties.getCacheEnabled());
+    }
+
+
+    /**
+     * 计算导出缓存key
+     *
+     * @param agent agent
+     * @return 缓存key，同时作为导出文件的ETag
+     */
+    public String cacheKey(Agent agent) {
+        List<String> fileIds = new ArrayList<>();
+        CollUtil.addAll(fileIds, agent.getToolFileIdList());
+        CollUtil.addAll(fileIds, agent.getDocsFileIdList());
+        StringBuilder source = new StringBuilder()
+                .append(agent.getId()).append('|')
+                .append(agent.getUpdateTime()).append('|')
+                .append(agent.getVersion());
+        // 导出的元数据包含作者用户名，修改用户名后需重新生成
+        User author = ChainWrappers.lambdaQueryChain(baseMapper, User.class).eq(User::getId, agent.getAuthorId()).one();
+        source.append('|').append(ObjUtil.isNotNull(author) ? author.getUserName() : null);
+        // 文档元数据及图片变更不影响md5，需同时计入文件的更新时间和图片id
+        fileInfoService.getByIds(fileIds).stream()
+                .sorted(Comparator.comparing(FileInfo::getId))
+                .forEach(fileInfo -> source.append('|').append(fileInfo.getId())
+                        .append(':').append(fileInfo.getMd5())
+                        .append(':').append(fileInfo.getUpdateTime())
+                        .append(':').append(fileInfo.getImagesFileIds()));
+        return SecureUtil.sha256(source.toString());
+    }
+
+
+    /**
+     * 打开已缓存的导出文件
+     * 响应的Content-Length和写出的内容取自同一个文件句柄，打开后文件被淘汰删除仍可读取到传输结束
+     *
+     * @param cacheKey 缓存key
+     * @return 已打开的缓存文件 未命中时返回null
+     */
+    public CachedExport openCached(String cacheKey) {
+        Path path = cache.get(cacheKey);
+        if (path == null) {
+            return null;
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            return new CachedExport(channel, channel.size());
+        } catch (IOException e) {
+            // 获取后已被淘汰，按未命中处理
+            IoUtil.close(channel);
+            return null;
+        }
+    }
+
+
+    /**
+     * 获取缓存的导出文件，未命中时通过writer生成
+     *
+     * @param cacheKey 缓存key
+     * @param writer   写入压缩包内容
+     * @return 缓存文件
+     */
+    public Path getOrBuild(String cacheKey, Consumer<ZipOutputStream> writer) throws IOException {
+        return cache.getOrCreate(cacheKey, target -> {
+            try (ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+                writer.accept(zipOut);
+            }
+        });
+    }
+
+
+    /**
+     * 将缓存文件写入输出流
+     *
+     * @param path 缓存文件
+     * @param out  输出流
+     */
+    public void transferTo(Path path, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            transferTo(new CachedExport(channel, channel.size()), out);
+        }
+    }
+
+
+    /**
+     * 将已打开的缓存文件写入输出流，写入后关闭文件
+     * 通过FileChannel.transferTo传输，由操作系统完成文件读取，不经过堆内存缓冲
+     *
+     * @param cached 已打开的缓存文件
+     * @param out    输出流
+     */
+    public void transferTo(CachedExport cached, OutputStream out) throws IOException {
+        try (FileChannel channel = cached.channel()) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = 0;
+            while (position < cached.size()) {
+                position += channel.transferTo(position, cached.size() - position, target);
+            }
+        }
+        out.flush();
+    }
+
+
+    /**
+     * 已打开的缓存文件
+     *
+     * @param channel 文件句柄
+     * @param size    文件大小
+     */
+    public record CachedExport(FileChannel channel, long size) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.litevar.ihub.core.handler;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.litevar.ihub.agent.LiteAgentServiceClient;
+import com.litevar.ihub.agent.enums.AgentClientType;
+import com.litevar.ihub.common.core.config.IHubKeywordCacheProperties;
+import com.litevar.ihub.common.core.utils.RedisUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.litevar.ihub.common.core.constant.CacheConstants.IHUB_SEARCH_KEYWORDS_KEY;
+
+/**
+ * 搜索关键词提取处理
+ * <p>
+ * 关键词提取需要调用大模型，耗时较长。查询语句规范化(全角转半角、合并空白、转小写)后作为缓存key，
+ * 依次查询本地缓存和redis，都未命中时才调用关键词agent。相同查询并发到达时只有一个请求调用agent，
+ * 其余请求等待该调用的结果。
+ *
+ * @author Teoan
+ * @since 2025/11/25 15:32
+ */
+@Slf4j
+@Component
+public class AgentKeywordHandler {
+
+    private final LiteAgentServiceClient agentServiceClient;
+    private final IHubKeywordCacheProperties keywordCacheProperties;
+
+    /**
+     * 规范化查询 -> 关键词
+     */
+    private final LRUCache<String, String> keywordCache;
+
+    /**
+     * 正在调用agent提取关键词的查询
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+
+    public AgentKeywordHandler(LiteAgentServiceClient agentServiceClient, IHubKeywordCacheProperties keywordCacheProperties) {
+        this.agentServiceClient = agentServiceClient;
+        this.keywordCacheProperties = keywordCacheProperties;
+        this.keywordCache = CacheUtil.newLRUCache(keywordCacheProperties.getLocalMaxSize(),
+                keywordCacheProperties.getLocalTtl().toMillis());
+    }
+
+
+    /**
+     * 提取搜索关键词
+     *
+     * @param query 用户输入的查询语句
+     * @return 关键词
+     */
+    public String extractKeywords(String query) {
+        String normalized = normalize(query);
+        String cacheKey = SecureUtil.sha256(normalized);
+        String keywords = getCached(cacheKey);
+        if (StrUtil.isNotBlank(keywords)) {
+            return keywords;
+        }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(cacheKey, future);
+        if (existing != null) {
+            log.debug("等待相同查询的关键词提取结果:{}", normalized);
+            return await(existing);
+        }
+        try {
+            // 抢到调用权前其他请求可能刚好完成并写入缓存
+            keywords = getCached(cacheKey);
+            if (StrUtil.isBlank(keywords)) {
+                log.debug("发送关键词agent信息:{}", normalized);
+                keywords = agentServiceClient.chatAgent(AgentClientType.KEYWORDS, normalized);
+                log.debug("接收关键词agent信息:{}", keywords);
+                putCache(cacheKey, keywords);
+            }
+            future.complete(keywords);
+            return keywords;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, future);
+        }
+    }
+
+
+    /**
+     * 规范化查询语句，使仅大小写、全半角或空白不同的查询命中同一缓存
+     */
+    private String normalize(String query) {
+        String normalized = Normalizer.normalize(StrUtil.nullToEmpty(query), Normalizer.Form.NFKC);
+        return StrUtil.trim(normalized).replaceAll("\\s+", StrUtil.SPACE).toLowerCase();
+    }
+
+
+    private String getCached(String cacheKey) {
+        String keywords = keywordCache.get(cacheKey, false);
+        if (StrUtil.isNotBlank(keywords)) {
+            return keywords;
+        }
+        keywords = (String) RedisUtils.get(StrUtil.format(IHUB_SEARCH_KEYWORDS_KEY, cacheKey));
+        if (StrUtil.isNotBlank(keywords)) {
+            keywordCache.put(cacheKey, keywords);
+        }
+        return keywords;
+    }
+
+
+    /**
+     * 缓存提取结果，agent返回空结果时不缓存
+     */
+    private void putCache(String cacheKey, String keywords) {
+        if (StrUtil.isBlank(keywords)) {
+            return;
+        }
+        keywordCache.put(cacheKey, keywords);
+        RedisUtils.set(StrUtil.format(IHUB_SEARCH_KEYWORDS_KEY, cacheKey), keywords, keywordCacheProperties.getRedisTtl());
+    }
+
+
+    private String await(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.litevar.ihub.core.handler;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants;
+import com.litevar.ihub.core.entity.Agent;
+import com.litevar.ihub.core.entity.User;
+import com.litevar.ihub.core.enums.PlatformType;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import com.mongoplus.mapper.BaseMapper;
+import com.mongoplus.model.PageResult;
+import com.mongoplus.toolkit.ChainWrappers;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Agent全文检索处理
+ * 基于agents集合上的mongo text索引，覆盖名称、描述、标签以及冗余的作者名称
+ * <p>
+ * text索引按空格和标点分词，中文等字符连续的内容是一个词，无法按片段匹配。名称、描述、作者名称中这类字符
+ * 另外拆分为单字和双字片段冗余存储在search_grams上，搜索内容包含这类字符时按片段在索引中筛选候选，
+ * 再对候选做模糊匹配确认，不扫描整个集合。
+ *
+ * @author Teoan
+ * @since 2025/11/21 15:20
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AgentSearchHandler {
+
+    private static final String TEXT_INDEX_NAME = "agent_text_search";
+
+    private static final String TEXT_SCORE = "score";
+
+    private static final String NAME_FIELD = "name";
+    private static final String DESCRIPTION_FIELD = "description";
+    private static final String TAGS_FIELD = "tags";
+    private static final String AUTHOR_NAMES_FIELD = "author_names";
+    private static final String SEARCH_GRAMS_FIELD = "search_grams";
+    private static final String AUTHOR_ID_FIELD = "author_id";
+    private static final String IS_PUBLIC_FIELD = "is_public";
+    private static final String PLATFORM_FIELD = "platform";
+    private static final String CATEGORY_FIELD = "category";
+
+    private final BaseMapper baseMapper;
+
+
+    /**
+     * 创建全文索引，并为历史数据补齐作者名称和检索片段
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initSearchIndex() {
+        try {
+            getAgentCollection().createIndex(Indexes.compoundIndex(
+                            Indexes.text(NAME_FIELD),
+                            Indexes.text(DESCRIPTION_FIELD),
+                            Indexes.text(TAGS_FIELD),
+                            Indexes.text(AUTHOR_NAMES_FIELD)),
+                    new IndexOptions().name(TEXT_INDEX_NAME)
+                            // 不做词干处理，中英文混合内容按分词直接匹配
+                            .defaultLanguage("none")
+                            .weights(new Document(NAME_FIELD, 10).append(TAGS_FIELD, 5)
+                                    .append(AUTHOR_NAMES_FIELD, 5).append(DESCRIPTION_FIELD, 1)));
+        } catch (Exception e) {
+            log.error("创建agent全文索引失败", e);
+        }
+        try {
+            List<String> authorIds = getAgentCollection()
+                    .distinct(AUTHOR_ID_FIELD, Filters.or(Filters.exists(AUTHOR_NAMES_FIELD, false),
+                            Filters.exists(SEARCH_GRAMS_FIELD, false)), String.class)
+                    .into(new ArrayList<>());
+            authorIds.forEach(this::syncAuthorNames);
+            if (CollUtil.isNotEmpty(authorIds)) {
+                log.info("补齐agent作者名称及检索片段完成,作者数量:{}", authorIds.size());
+            }
+        } catch (Exception e) {
+            log.error("补齐agent作者名称及检索片段失败", e);
+        }
+    }
+
+
+    /**
+     * 检索公开的agent
+     * 平台、分类、标签条件与检索条件在同一查询中执行，全文检索未指定排序时按相关度排序，按片段检索时默认按创建时间倒序
+     *
+     * @return 当前页的agent id，按结果顺序排列
+     */
+    public PageResult<String> searchPublicAgentIds(Integer pageNum, Integer pageSize, String search,
+                                                   PlatformType platform, String category, String sort, List<String> tags) {
+        boolean textSearch = CollUtil.isEmpty(getQueryGrams(search));
+        Bson filter = buildPublicFilter(search, platform, category, tags);
+
+        MongoCollection<Document> collection = getAgentCollection();
+        long total = collection.countDocuments(filter);
+        List<String> agentIds = new ArrayList<>();
+        if (total > 0) {
+            collection.find(filter)
+                    .projection(textSearch
+                            ? Projections.fields(Projections.include(MongoFieldConstants.ID), Projections.metaTextScore(TEXT_SCORE))
+                            : Projections.include(MongoFieldConstants.ID))
+                    .sort(buildSort(sort, textSearch))
+                    .skip((pageNum - 1) * pageSize)
+                    .limit(pageSize)
+                    .forEach(document -> agentIds.add(document.getString(MongoFieldConstants.ID)));
+        }
+        PageResult<String> page = new PageResult<>();
+        page.setPageNum(pageNum);
+        page.setPageSize(pageSize);
+        page.setTotalSize(total);
+        page.setTotalPages((total + pageSize - 1) / pageSize);
+        page.setContentData(agentIds);
+        return page;
+    }
+
+
+    /**
+     * 构建公开agent的查询条件
+     * 搜索内容不含中文等字符时走全文索引；包含时全文索引无法按片段匹配，先按检索片段筛选候选，再模糊匹配名称、描述和作者名称
+     */
+    public Bson buildPublicFilter(String search, PlatformType platform, String category, List<String> tags) {
+        List<Bson> filters = new ArrayList<>();
+        filters.add(Filters.eq(IS_PUBLIC_FIELD, true));
+        filters.add(Filters.eq(MongoFieldConstants.LOGIC_DEL, false));
+        if (StrUtil.isNotBlank(search)) {
+            List<String> queryGrams = getQueryGrams(search);
+            if (CollUtil.isEmpty(queryGrams)) {
+                filters.add(Filters.text(search));
+            } else {
+                filters.add(Filters.all(SEARCH_GRAMS_FIELD, queryGrams));
+                filters.add(Filters.or(likeFilter(NAME_FIELD, search), likeFilter(DESCRIPTION_FIELD, search),
+                        likeFilter(AUTHOR_NAMES_FIELD, search)));
+            }
+        }
+        addPropertyFilters(filters, platform, category, tags);
+        return Filters.and(filters);
+    }
+
+
+    /**
+     * 构建指定范围内agent的查询条件，搜索内容模糊匹配名称和描述
+     *
+     * @param scope 查询范围 如作者、agent id列表
+     */
+    public Bson buildScopedFilter(Bson scope, String search, PlatformType platform, String category) {
+        List<Bson> filters = new ArrayList<>();
+        filters.add(scope);
+        filters.add(Filters.eq(MongoFieldConstants.LOGIC_DEL, false));
+        if (StrUtil.isNotBlank(search)) {
+            filters.add(Filters.or(likeFilter(NAME_FIELD, search), likeFilter(DESCRIPTION_FIELD, search)));
+        }
+        addPropertyFilters(filters, platform, category, null);
+        return Filters.and(filters);
+    }
+
+
+    /**
+     * 作者范围
+     */
+    public Bson authorScope(String authorId) {
+        return Filters.eq(AUTHOR_ID_FIELD, authorId);
+    }
+
+
+    /**
+     * agent id范围
+     */
+    public Bson idScope(Collection<String> agentIds) {
+        return Filters.in(MongoFieldConstants.ID, agentIds);
+    }
+
+
+    /**
+     * 获取用户的作者名称 (用户名、昵称)
+     *
+     * @param userId 用户id
+     */
+    public List<String> getAuthorNames(String userId) {
+        User user = ChainWrappers.lambdaQueryChain(baseMapper, User.class).eq(User::getId, userId).one();
+        if (ObjUtil.isNull(user)) {
+            return List.of();
+        }
+        return Stream.of(user.getUserName(), user.getNickName()).filter(StrUtil::isNotBlank).distinct().toList();
+    }
+
+
+    /**
+     * 获取agent的检索片段，在保存agent或修改名称、描述、作者名称后调用
+     */
+    public List<String> getSearchGrams(Agent agent) {
+        return getSearchGrams(agent.getName(), agent.getDescription(), agent.getAuthorNames());
+    }
+
+
+    /**
+     * 同步作者的所有agent上冗余的作者名称及检索片段，在用户修改名称后调用
+     *
+     * @param userId 用户id
+     */
+    public void syncAuthorNames(String userId) {
+        List<String> authorNames = getAuthorNames(userId);
+        MongoCollection<Document> collection = getAgentCollection();
+        List<UpdateOneModel<Document>> updates = new ArrayList<>();
+        collection.find(Filters.eq(AUTHOR_ID_FIELD, userId))
+                .projection(Projections.include(NAME_FIELD, DESCRIPTION_FIELD))
+                .forEach(document -> updates.add(new UpdateOneModel<>(
+                        Filters.eq(MongoFieldConstants.ID, document.get(MongoFieldConstants.ID)),
+                        Updates.combine(Updates.set(AUTHOR_NAMES_FIELD, authorNames),
+                                Updates.set(SEARCH_GRAMS_FIELD, getSearchGrams(document.getString(NAME_FIELD),
+                                        document.getString(DESCRIPTION_FIELD), authorNames))))));
+        if (CollUtil.isNotEmpty(updates)) {
+            collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+        }
+    }
+
+
+    /**
+     * 拆分名称、描述、作者名称中连续的中文等字符，保存每个字符的单字片段及相邻字符的双字片段
+     */
+    private List<String> getSearchGrams(String name, String description, List<String> authorNames) {
+        Set<String> grams = new LinkedHashSet<>();
+        collectGrams(name, false, grams);
+        collectGrams(description, false, grams);
+        if (CollUtil.isNotEmpty(authorNames)) {
+            authorNames.forEach(authorName -> collectGrams(authorName, false, grams));
+        }
+        return new ArrayList<>(grams);
+    }
+
+
+    /**
+     * 拆分搜索内容中连续的中文等字符，连续多个字符时只取双字片段，单个字符取单字片段，不含这类字符时返回空列表
+     */
+    private List<String> getQueryGrams(String search) {
+        Set<String> grams = new LinkedHashSet<>();
+        collectGrams(search, true, grams);
+        return new ArrayList<>(grams);
+    }
+
+
+    private void collectGrams(String text, boolean query, Set<String> grams) {
+        if (StrUtil.isBlank(text)) {
+            return;
+        }
+        int[] codePoints = text.toLowerCase().codePoints().toArray();
+        int start = 0;
+        while (start < codePoints.length) {
+            if (!isGramChar(codePoints[start])) {
+                start++;
+                continue;
+            }
+            int end = start;
+            while (end < codePoints.length && isGramChar(codePoints[end])) {
+                end++;
+            }
+            for (int i = start; i < end; i++) {
+                boolean hasNext = i + 1 < end;
+                if (!query || (i == start && !hasNext)) {
+                    grams.add(new String(codePoints, i, 1));
+                }
+                if (hasNext) {
+                    grams.add(new String(codePoints, i, 2));
+                }
+            }
+            start = end;
+        }
+    }
+
+
+    /**
+     * 全文索引无法按片段匹配的字符，即英文、数字以外的文字
+     */
+    private boolean isGramChar(int codePoint) {
+        return codePoint >= 0x80 && Character.isLetterOrDigit(codePoint);
+    }
+
+
+    private void addPropertyFilters(List<Bson> filters, PlatformType platform, String category, List<String> tags) {
+        if (ObjUtil.isNotNull(platform)) {
+            filters.add(Filters.eq(PLATFORM_FIELD, platform.getDescription()));
+        }
+        if (StrUtil.isNotBlank(category)) {
+            filters.add(Filters.eq(CATEGORY_FIELD, category));
+        }
+        if (CollUtil.isNotEmpty(tags)) {
+            tags.forEach(tag -> filters.add(Filters.regex(TAGS_FIELD, tag)));
+        }
+    }
+
+
+    private Bson likeFilter(String fieldName, String search) {
+        return Filters.regex(fieldName, Pattern.quote(search), "i");
+    }
+
+
+    private Bson buildSort(String sort, boolean textSearch) {
+        // 按片段检索时没有相关度，默认按创建时间倒序
+        Bson relevance = textSearch ? Sorts.metaTextScore(TEXT_SCORE) : Sorts.descending(MongoFieldConstants.CREATE_TIME);
+        if (StrUtil.isBlank(sort)) {
+            return relevance;
+        }
+        return switch (sort.toLowerCase()) {
+            case "stars" -> Sorts.orderBy(Sorts.descending("stars"), relevance);
+            case "forks" -> Sorts.orderBy(Sorts.descending("forks"), relevance);
+            case "views" -> Sorts.orderBy(Sorts.descending("views"), relevance);
+            case "newest" -> Sorts.descending(MongoFieldConstants.CREATE_TIME);
+            case "oldest" -> Sorts.ascending(MongoFieldConstants.CREATE_TIME);
+            default -> relevance;
+        };
+    }
+
+
+    private MongoCollection<Document> getAgentCollection() {
+        return baseMapper.getMongoPlusClient().getCollection(Agent.class);
+    }
+}
@@ -0,0 +1,293 @@
+package com.litevar.ihub.core.handler;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.litevar.ihub.common.core.config.IHubTrendingProperties;
+import com.litevar.ihub.common.core.utils.RedisUtils;
+import com.litevar.ihub.core.entity.Agent;
+import com.litevar.ihub.core.enums.PlatformType;
+import com.mongoplus.mapper.BaseMapper;
+import com.mongoplus.toolkit.ChainWrappers;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.client.protocol.ScoredEntry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.litevar.ihub.common.core.constant.CacheConstants.*;
+
+/**
+ * 热门Agent排行处理
+ * <p>
+ * 收藏/fork/浏览行为按权重累加到redis ZSet中，使用前向衰减(forward decay)计算热度：
+ * 行为热度 = 权重 * 2^((行为时间 - 基准时间) / 半衰期)，越新的行为热度越高，排行只需按分数倒序即可。
+ * 为避免分数无限增长，每经过一个半衰期将基准时间后移，并将已有分数整体乘以对应的衰减系数。
+ *
+ * @author Teoan
+ * @since 2025/11/21 10:02
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AgentTrendingHandler {
+
+    /**
+     * 全部平台的排行榜分区
+     */
+    private static final String ALL_PLATFORM = "all";
+
+    private final BaseMapper baseMapper;
+    private final IHubTrendingProperties trendingProperties;
+
+
+    /**
+     * 记录收藏，只在收藏记录实际新增后调用，重复点击不计入热度
+     * 热度更新失败不影响收藏结果
+     *
+     * @param agentId agent id
+     */
+    public void recordStar(String agentId) {
+        try {
+            record(Map.of(agentId, trendingProperties.getStarWeight()), System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("更新热门agent收藏热度失败: agentId={}", agentId, e);
+        }
+    }
+
+
+    /**
+     * 记录取消收藏，只在收藏记录实际删除后调用
+     * 按收藏时的热度扣减，已衰减的旧收藏只扣减衰减后的部分，不会使分数低于未收藏时
+     *
+     * @param agentId   agent id
+     * @param starredAt 收藏时间 为空时为未记录收藏时间的旧收藏，收藏时未计入热度，不扣减
+     */
+    public void recordUnstar(String agentId, Long starredAt) {
+        if (ObjUtil.isNull(starredAt)) {
+            return;
+        }
+        try {
+            record(Map.of(agentId, -trendingProperties.getStarWeight()), starredAt);
+        } catch (Exception e) {
+            log.error("更新热门agent收藏热度失败: agentId={}", agentId, e);
+        }
+    }
+
+
+    /**
+     * 记录fork，在fork记录保存后调用，热度更新失败不影响fork结果
+     *
+     * @param agentId 被fork的agent id
+     */
+    public void recordFork(String agentId) {
+        try {
+            record(Map.of(agentId, trendingProperties.getForkWeight()), System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("更新热门agent fork热度失败: agentId={}", agentId, e);
+        }
+    }
+
+
+    /**
+     * 记录已刷入数据库的浏览数增量
+     *
+     * @param viewDeltas agentId -> 浏览数增量
+     */
+    public void recordViews(Map<String, Integer> viewDeltas) {
+        try {
+            Map<String, Double> weights = new HashMap<>();
+            viewDeltas.forEach((agentId, delta) -> weights.put(agentId, delta * trendingProperties.getViewWeight()));
+            record(weights, System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("更新热门agent浏览热度失败", e);
+        }
+    }
+
+
+    /**
+     * 分页获取热门agent id，按热度从高到低排列
+     *
+     * @param platform 平台 为空时查询全部平台
+     * @param start    开始位置
+     * @param end      结束位置
+     * @return agent id 列表
+     */
+    public List<String> getTrendingAgentIds(PlatformType platform, int start, int end) {
+        return RedisUtils.zReverseRange(trendingKey(platform), start, end).stream().map(String::valueOf).toList();
+    }
+
+
+    /**
+     * 按热度从高到低获取位于指定位置之后的agent
+     * 位置记录的是分数而非排名，翻页期间其他agent热度变化不会导致重复或遗漏；
+     * 衰减基准后移后按衰减系数换算位置中的分数
+     *
+     * @param platform 平台 为空时查询全部平台
+     * @param after    上一页最后一个agent的位置 为空时从第一名开始
+     * @param count    数量
+     * @return agent及其位置
+     */
+    public List<TrendingPosition> getTrendingAgentsAfter(PlatformType platform, TrendingPosition after, int count) {
+        String key = trendingKey(platform);
+        long epoch = storedEpoch();
+        double maxScore = ObjUtil.isNull(after) ? Double.POSITIVE_INFINITY
+                : after.score() * Math.pow(2, after.epoch() - epoch);
+        List<TrendingPosition> positions = new ArrayList<>();
+        int offset = 0;
+        while (positions.size() < count) {
+            Collection<ScoredEntry<Object>> entries = RedisUtils.zReverseRangeByScore(key, maxScore, offset, count);
+            for (ScoredEntry<Object> entry : entries) {
+                String agentId = String.valueOf(entry.getValue());
+                // 同分数的agent按id倒序排列，跳过上一页已返回的部分
+                if (ObjUtil.isNotNull(after) && entry.getScore() == maxScore && agentId.compareTo(after.agentId()) >= 0) {
+                    continue;
+                }
+                positions.add(new TrendingPosition(agentId, entry.getScore(), epoch));
+                if (positions.size() == count) {
+                    break;
+                }
+            }
+            if (entries.size() < count) {
+                break;
+            }
+            offset += count;
+        }
+        return positions;
+    }
+
+
+    /**
+     * 获取热门排行中的agent数量
+     *
+     * @param platform 平台 为空时查询全部平台
+     */
+    public long getTrendingSize(PlatformType platform) {
+        return RedisUtils.zSize(trendingKey(platform));
+    }
+
+
+    /**
+     * 从所有排行榜中移除agent，在agent删除或设为私有时调用
+     *
+     * @param agentIds agent id
+     */
+    public void removeAgent(String... agentIds) {
+        allTrendingKeys().forEach(key -> RedisUtils.zRemove(key, (Object[]) agentIds));
+    }
+
+
+    /**
+     * 每经过一个半衰期，后移衰减基准并按比例缩小已有分数，同时裁剪排行榜大小
+     */
+    @Scheduled(cron = "0 * * * * ?")
+    public void rebase() {
+        long currentEpoch = currentEpoch();
+        Long storedEpoch = Convert.toLong(RedisUtils.get(IHUB_TRENDING_EPOCH_KEY));
+        if (ObjUtil.equals(storedEpoch, currentEpoch)) {
+            return;
+        }
+        if (!RedisUtils.tryLock(IHUB_TRENDING_REBASE_LOCK_KEY, 0, TimeUnit.SECONDS)) {
+            return;
+        }
+        try {
+            storedEpoch = Convert.toLong(RedisUtils.get(IHUB_TRENDING_EPOCH_KEY));
+            if (ObjUtil.isNotNull(storedEpoch) && storedEpoch < currentEpoch) {
+                double factor = Math.pow(2, storedEpoch - currentEpoch);
+                for (String key : allTrendingKeys()) {
+                    RedisUtils.zMultiply(key, factor);
+                    // 只保留分数最高的maxSize个agent
+                    RedisUtils.zRemoveRangeByRank(key, 0, -trendingProperties.getMaxSize() - 1);
+                }
+                log.info("热门agent排行衰减基准后移: {} -> {}, 衰减系数: {}", storedEpoch, currentEpoch, factor);
+            }
+            RedisUtils.set(IHUB_TRENDING_EPOCH_KEY, currentEpoch);
+        } finally {
+            RedisUtils.unlock(IHUB_TRENDING_REBASE_LOCK_KEY);
+        }
+    }
+
+
+    /**
+     * 按agent所在平台累加热度，只统计公开的agent
+     * 热度按排行榜中分数当前所在的衰减基准换算，基准后移前记录的热度与已有分数一起缩小，不会被重复衰减
+     *
+     * @param weights agentId -> 权重
+     * @param time    行为发生的时间
+     */
+    private void record(Map<String, Double> weights, long time) {
+        if (CollUtil.isEmpty(weights)) {
+            return;
+        }
+        List<Agent> agents = ChainWrappers.lambdaQueryChain(baseMapper, Agent.class)
+                .projectionDisplay(Agent::getId, Agent::getPlatform, Agent::getIsPublic)
+                .in(Agent::getId, weights.keySet())
+                .list();
+        double multiplier = Math.pow(2, (double) (time - storedEpoch() * halfLifeMillis()) / halfLifeMillis());
+        for (Agent agent : agents) {
+            if (BooleanUtil.isFalse(agent.getIsPublic())) {
+                continue;
+            }
+            double score = weights.get(agent.getId()) * multiplier;
+            RedisUtils.zIncrement(trendingKey(null), agent.getId(), score);
+            if (ObjUtil.isNotNull(agent.getPlatform())) {
+                RedisUtils.zIncrement(trendingKey(agent.getPlatform()), agent.getId(), score);
+            }
+        }
+    }
+
+
+    /**
+     * 排行榜中分数所在的衰减基准周期，未初始化时为当前周期
+     */
+    private long storedEpoch() {
+        return ObjUtil.defaultIfNull(Convert.toLong(RedisUtils.get(IHUB_TRENDING_EPOCH_KEY)), currentEpoch());
+    }
+
+
+    /**
+     * 当前衰减基准周期 以半衰期为周期
+     */
+    private long currentEpoch() {
+        return System.currentTimeMillis() / halfLifeMillis();
+    }
+
+
+    private long halfLifeMillis() {
+        return trendingProperties.getHalfLife().toMillis();
+    }
+
+
+    private String trendingKey(PlatformType platform) {
+        return StrUtil.format(IHUB_TRENDING_AGENTS_KEY, ObjUtil.isNull(platform) ? ALL_PLATFORM : platform.getDescription());
+    }
+
+
+    private Collection<String> allTrendingKeys() {
+        List<String> keys = new ArrayList<>();
+        keys.add(trendingKey(null));
+        Arrays.stream(PlatformType.values()).map(this::trendingKey).forEach(keys::add);
+        return keys;
+    }
+
+
+    /**
+     * 热门排行中的位置
+     *
+     * @param agentId agent id
+     * @param score   热度分数
+     * @param epoch   分数对应的衰减基准周期
+     */
+    public record TrendingPosition(String agentId, double score, long epoch) {
+    }
+}
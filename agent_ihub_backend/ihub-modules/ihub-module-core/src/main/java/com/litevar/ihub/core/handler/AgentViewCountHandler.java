@@ -0,0 +1,154 @@
+package com.litevar.ihub.core.handler;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.ObjUtil;
+import com.litevar.ihub.common.core.config.IHubViewCounterProperties;
+import com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants;
+import com.litevar.ihub.core.entity.Agent;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongoplus.mapper.BaseMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Agent浏览数计数处理
+ * 浏览数先在内存中累加，由定时任务按批次以 $inc 的方式刷入数据库，避免每次访问都写库。
+ * 每批刷入后将数据库中的最新浏览数更新到agent缓存，同时不再计入刷入中的增量，缓存中的浏览数与增量不会重复计算。
+ *
+ * @author Teoan
+ * @since 2025/11/20 10:31
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AgentViewCountHandler {
+
+    private static final String VIEWS_FIELD = "views";
+
+    private final BaseMapper baseMapper;
+    private final IHubViewCounterProperties viewCounterProperties;
+    private final AgentTrendingHandler agentTrendingHandler;
+    private final AgentCacheHandler agentCacheHandler;
+
+    /**
+     * 待刷入的浏览数增量 agentId -> delta
+     */
+    private final ConcurrentHashMap<String, Integer> pendingViews = new ConcurrentHashMap<>();
+
+    /**
+     * 正在刷入中的浏览数增量，刷入完成前仍需计入实时浏览数
+     */
+    private final ConcurrentHashMap<String, Integer> flushingViews = new ConcurrentHashMap<>();
+
+
+    /**
+     * 浏览数加1
+     *
+     * @param agentId agent id
+     */
+    public void increment(String agentId) {
+        pendingViews.merge(agentId, 1, Integer::sum);
+    }
+
+
+    /**
+     * 获取尚未刷入数据库的浏览数增量
+     *
+     * @param agentId agent id
+     * @return 增量
+     */
+    public int getPendingViews(String agentId) {
+        return pendingViews.getOrDefault(agentId, 0) + flushingViews.getOrDefault(agentId, 0);
+    }
+
+
+    /**
+     * 获取实时浏览数 = 数据库中的浏览数 + 未刷入的增量
+     *
+     * @param agentId        agent id
+     * @param persistedViews 数据库中的浏览数
+     * @return 实时浏览数
+     */
+    public Integer getLiveViews(String agentId, Integer persistedViews) {
+        return ObjUtil.defaultIfNull(persistedViews, 0) + getPendingViews(agentId);
+    }
+
+
+    /**
+     * 定时将浏览数增量批量刷入数据库
+     */
+    @Scheduled(fixedDelayString = "${agent-ihub.view-counter.flush-interval:5s}")
+    public synchronized void flush() {
+        if (pendingViews.isEmpty()) {
+            return;
+        }
+        // 逐个取出增量，取出后的新访问会重新累加到pendingViews中，不会丢失
+        Map<String, Integer> drained = new HashMap<>();
+        for (String agentId : pendingViews.keySet()) {
+            Integer delta = pendingViews.remove(agentId);
+            if (ObjUtil.isNotNull(delta) && delta > 0) {
+                flushingViews.put(agentId, delta);
+                drained.put(agentId, delta);
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+        List<List<String>> batches = CollUtil.split(drained.keySet(), viewCounterProperties.getMaxBatchSize());
+        int flushedBatch = 0;
+        try {
+            MongoCollection<Document> collection = baseMapper.getMongoPlusClient().getCollection(Agent.class);
+            for (List<String> batch : batches) {
+                List<UpdateOneModel<Document>> updates = batch.stream()
+                        .map(agentId -> new UpdateOneModel<Document>(Filters.eq(MongoFieldConstants.ID, agentId),
+                                Updates.inc(VIEWS_FIELD, drained.get(agentId))))
+                        .toList();
+                collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+                flushedBatch++;
+                Map<String, Integer> views = new HashMap<>();
+                collection.find(Filters.in(MongoFieldConstants.ID, batch))
+                        .projection(Projections.include(VIEWS_FIELD))
+                        .forEach(document -> views.put(document.getString(MongoFieldConstants.ID),
+                                document.getInteger(VIEWS_FIELD)));
+                // 已刷入的增量不再计入实时浏览数，改为更新缓存中的浏览数
+                batch.forEach(flushingViews::remove);
+                agentCacheHandler.updateViews(views);
+            }
+            log.debug("刷入agent浏览数完成,agent数量:{}", drained.size());
+            agentTrendingHandler.recordViews(drained);
+        } catch (Exception e) {
+            log.error("刷入agent浏览数失败,未刷入的增量将在下次重试", e);
+            // 将未成功刷入的增量放回，等待下次刷入
+            batches.subList(flushedBatch, batches.size()).forEach(batch ->
+                    batch.forEach(agentId -> {
+                        flushingViews.remove(agentId);
+                        pendingViews.merge(agentId, drained.get(agentId), Integer::sum);
+                    }));
+        } finally {
+            flushingViews.clear();
+        }
+    }
+
+
+    /**
+     * 应用关闭前刷入剩余的增量
+     */
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+}
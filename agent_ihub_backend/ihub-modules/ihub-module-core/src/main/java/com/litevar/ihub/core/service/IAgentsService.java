@@ -8,8 +8,8 @@ import com.mongoplus.service.IService;
 import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.IOException;
 import java.util.List;
 
 /**
@@ -40,6 +40,20 @@ public interface IAgentsService extends IService<Agent> {
      */
     PageResult<AgentDTO> getTrendingAgents(Integer pageNum, Integer pageSize, PlatformType platform);
 
+    /**
+     * 游标分页获取公共Agent列表
+     */
+    CursorPageDTO<AgentDTO> getPublicAgentsByCursor(String cursor, Integer limit, Boolean withTotal, String search,
+                                                  PlatformType platform,
+                                                  String category,
+                                                  String sort,
+                                                  List<String> tags);
+
+    /**
+     * 游标分页获取热门Agent列表
+     */
+    CursorPageDTO<AgentDTO> getTrendingAgentsByCursor(String cursor, Integer limit, Boolean withTotal, PlatformType platform);
+
 
     /**
      * 更新Agent信息
@@ -53,6 +67,12 @@ public interface IAgentsService extends IService<Agent> {
                                             Integer pageNum,
                                             Integer pageSize);
 
+    /**
+     * 游标分页获取用户 agent 列表
+     */
+    CursorPageDTO<AgentDTO> listAgentsByAuthorByCursor(String userId, String userName, String sort, String search,
+                                                     String cursor, Integer limit, Boolean withTotal);
+
 
     /**
      * 收藏Agent
@@ -78,6 +98,13 @@ public interface IAgentsService extends IService<Agent> {
                                            String sort);
 
 
+    /**
+     * 游标分页获取用户收藏的Agent列表
+     */
+    CursorPageDTO<AgentDTO> listStarredAgentsByCursor(String userId, String search, PlatformType platform, String category,
+                                                    String sort, String cursor, Integer limit, Boolean withTotal);
+
+
     /**
      * 检查Agent是否已被收藏
      */
@@ -102,6 +129,12 @@ public interface IAgentsService extends IService<Agent> {
     PageResult<AgentDTO> listForkedAgents(String originalAgentId, Integer pageNum, Integer pageSize);
 
 
+    /**
+     * 游标分页获取fork了某个agent的agent列表
+     */
+    CursorPageDTO<AgentDTO> listForkedAgentsByCursor(String originalAgentId, String cursor, Integer limit, Boolean withTotal);
+
+
     /**
      * 根据ID获取Agent
      */
@@ -137,8 +170,10 @@ public interface IAgentsService extends IService<Agent> {
 
     /**
      * 导出Agent
+     * @param agentId agent id
+     * @param ifNoneMatch 客户端缓存的ETag 与当前导出文件一致时返回304
      */
-    ResponseEntity<Resource> exportAgent(String agentId) throws IOException;
+    ResponseEntity<StreamingResponseBody> exportAgent(String agentId, String ifNoneMatch);
 
 
     /**
@@ -31,4 +31,11 @@ public interface IForkService extends IService<Fork> {
      */
     Map<String,ForkDTO> getForkInfoByAgentIdList(List<String> agentIdList);
 
+
+    /**
+     * 删除Fork出来的Agent对应的Fork记录
+     * @return 原始AgentId 不存在Fork记录时返回null
+     */
+    String removeForkByForkedAgentId(String forkedAgentId);
+
 }
@@ -3,7 +3,9 @@ package com.litevar.ihub.core.service;
 import com.litevar.ihub.core.entity.Star;
 import com.mongoplus.service.IService;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author Teoan
@@ -23,4 +25,37 @@ public interface IStarService extends IService<Star> {
      */
     List<String> getStarAgentListByUserId(String userId);
 
+
+    /**
+     * 添加收藏记录
+     * @return 是否新增了收藏记录 已收藏时返回false
+     */
+    boolean addStar(String userId, String agentId);
+
+
+    /**
+     * 删除收藏记录
+     * @return 被删除的收藏记录 未收藏时返回null
+     */
+    Star removeStar(String userId, String agentId);
+
+
+    /**
+     * 删除agent的所有收藏记录，用于删除agent
+     */
+    void removeStarsByAgentId(String agentId);
+
+
+    /**
+     * 判断用户是否收藏了指定Agent
+     */
+    boolean isStarred(String userId, String agentId);
+
+
+    /**
+     * 批量判断用户收藏了哪些Agent
+     * @return 已收藏的agent id
+     */
+    Set<String> getStarredAgentIds(String userId, Collection<String> agentIds);
+
 }
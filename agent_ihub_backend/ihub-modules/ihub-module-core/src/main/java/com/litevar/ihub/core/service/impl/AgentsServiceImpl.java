@@ -10,10 +10,9 @@ import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.ReflectUtil;
 import cn.hutool.core.util.StrUtil;
-import com.litevar.ihub.agent.LiteAgentServiceClient;
-import com.litevar.ihub.agent.enums.AgentClientType;
 import com.litevar.ihub.common.core.utils.RedisUtils;
 import com.litevar.ihub.common.milvus.service.VectorStoreService;
+import com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants;
 import com.litevar.ihub.common.mongoplus.entity.BaseEntity;
 import com.litevar.ihub.common.satoken.entity.LoginUser;
 import com.litevar.ihub.common.satoken.utils.LoginHelper;
@@ -23,10 +22,21 @@ import com.litevar.ihub.common.web.exception.ErrorCode;
 import com.litevar.ihub.core.dto.*;
 import com.litevar.ihub.core.entity.*;
 import com.litevar.ihub.core.enums.PlatformType;
+import com.litevar.ihub.core.handler.AgentCacheHandler;
+import com.litevar.ihub.core.handler.AgentCursorHandler;
+import com.litevar.ihub.core.handler.AgentExportCacheHandler;
+import com.litevar.ihub.core.handler.AgentKeywordHandler;
+import com.litevar.ihub.core.handler.AgentSearchHandler;
+import com.litevar.ihub.core.handler.AgentTrendingHandler;
+import com.litevar.ihub.core.handler.AgentViewCountHandler;
 import com.litevar.ihub.core.service.*;
 import com.litevar.ihub.core.utils.AgentFileUtils;
+import com.litevar.ihub.file.dto.MdAgentInfoDTO;
+import com.litevar.ihub.file.service.IFileReferenceService;
 import com.litevar.ihub.log.annotation.LogRecord;
 import com.litevar.ihub.log.enums.UserActionType;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
 import com.mongoplus.conditions.query.LambdaQueryChainWrapper;
 import com.mongoplus.manager.LogicManager;
 import com.mongoplus.model.PageResult;
@@ -35,25 +45,31 @@ import com.mongoplus.toolkit.ChainWrappers;
 import io.github.linpeilie.Converter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.conversions.Bson;
 import org.springframework.ai.document.Document;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.Serializable;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import java.util.zip.ZipOutputStream;
 
 import static com.litevar.ihub.common.core.constant.CacheConstants.IHUB_TRANSLATION_CACHE_KEY;
@@ -72,11 +88,25 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
     private final IFollowService followService;
     private final IAgentReleaseService agentReleaseService;
     private final Converter converter;
-    private final LiteAgentServiceClient agentServiceClient;
     private final VectorStoreService vectorStoreService;
     private final IAgentLicenseService licenseService;
     private final AgentFileUtils agentFileUtils;
+    private final AgentViewCountHandler agentViewCountHandler;
+    private final AgentTrendingHandler agentTrendingHandler;
+    private final AgentSearchHandler agentSearchHandler;
+    private final AgentCursorHandler agentCursorHandler;
+    private final AgentCacheHandler agentCacheHandler;
+    private final AgentExportCacheHandler agentExportCacheHandler;
+    private final AgentKeywordHandler agentKeywordHandler;
+    private final IFileReferenceService fileReferenceService;
     private final String AGENT_ID = "agentId";
+    private static final String STARS_FIELD = "stars";
+    private static final String FORKS_FIELD = "forks";
+
+    /**
+     * 热门列表在排行榜无数据时按最新排序翻页，与公开列表的游标区分
+     */
+    private static final String TRENDING_CURSOR_KEY = "trending";
 
     /**
      * 创建Agent
@@ -100,6 +130,8 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
         }
         LoginUser currentUser = LoginHelper.getCurrentUser();
         agent.setAuthorId(currentUser.getId());
+        agent.setAuthorNames(agentSearchHandler.getAuthorNames(currentUser.getId()));
+        agent.setSearchGrams(agentSearchHandler.getSearchGrams(agent));
         // 目前默认为LITE_AGENT
         agent.setPlatform(PlatformType.LITE_AGENT);
         save(agent);
@@ -124,16 +156,17 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
      */
     @Override
     public List<AgentDTO> searchAgentByKeyWord(String keyWord) {
-        // 调用agent提取关键字
-        log.debug("发送关键词agent信息:{}", keyWord);
-        String agentKeyWord = agentServiceClient.chatAgent(AgentClientType.KEYWORDS, keyWord);
-        log.debug("接收关键词agent信息:{}", agentKeyWord);
+        // 调用agent提取关键字 相同查询优先使用缓存结果
+        String agentKeyWord = agentKeywordHandler.extractKeywords(keyWord);
         // 默认返回 top 10 个结果
         List<Document> documents = vectorStoreService.findDocuments(agentKeyWord, 10,0.5);
-        // 按照相似度得分从高到低排序
-        List<Agent> agentList = documents.stream().map(document ->
-                getById(MapUtil.getStr(document.getMetadata(), AGENT_ID))).filter(ObjUtil::isNotNull).toList();
-        return agentList.stream().map(this::buildAgentDTO).toList();
+        // 按照相似度得分从高到低排序，同一agent只保留得分最高的一条
+        List<String> agentIdList = documents.stream()
+                .sorted(Comparator.comparing(Document::getScore, Comparator.nullsLast(Comparator.reverseOrder())))
+                .map(document -> MapUtil.getStr(document.getMetadata(), AGENT_ID))
+                .filter(StrUtil::isNotBlank).distinct().toList();
+        // 一次查询批量加载公开的agent，再批量填充收藏、fork及license信息
+        return setAgentInfo(getAgentDTOListByIds(agentIdList, true));
     }
 
     /**
@@ -149,23 +182,15 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
      */
     @Override
     public PageResult<AgentDTO> getPublicAgents(Integer pageNum, Integer pageSize, String search, PlatformType platform, String category, String sort, List<String> tags) {
+        if (StrUtil.isNotBlank(search)) {
+            // 全文索引检索，包含中文等字符时按检索片段筛选，均走索引
+            PageResult<String> idPage = agentSearchHandler.searchPublicAgentIds(pageNum, pageSize, search, platform, category, sort, tags);
+            return setAgentInfo(buildPublicPageByIds(idPage));
+        }
 
         // 构建查询条件
-        var wrapper = this.lambdaQuery()
+        var wrapper = summaryQuery()
                 .eq(Agent::getIsPublic, true);
-        List<String> userIds = new ArrayList<>();
-        if(StrUtil.isNotBlank(search)){
-            userIds = ChainWrappers.lambdaQueryChain(baseMapper,User.class)
-                    .or(wrapper1 -> wrapper1.like(User::getUserName, search))
-                    .or(wrapper2 -> wrapper2.like(User::getNickName, search))
-                    .list().stream().map(User::getId).toList();
-        }
-
-        // 添加搜索条件
-        List<String> finalUserIds = userIds;
-        wrapper.or(StrUtil.isNotBlank(search), wrapper1 -> wrapper1.like(Agent::getName, search)
-                .or(StrUtil.isNotBlank(search), wrapper2 -> wrapper2.like(Agent::getDescription, search))
-                .or(CollUtil.isNotEmpty(finalUserIds), wrapper3 -> wrapper3.in(Agent::getAuthorId, finalUserIds)));
         // 添加平台类型条件
         wrapper.eq(ObjUtil.isNotNull(platform), Agent::getPlatform, platform);
 
@@ -218,8 +243,22 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
      */
     @Override
     public PageResult<AgentDTO> getTrendingAgents(Integer pageNum, Integer pageSize, PlatformType platform) {
+        long total = agentTrendingHandler.getTrendingSize(platform);
+        if (total > 0) {
+            // 从热度排行榜中分页
+            int start = (pageNum - 1) * pageSize;
+            List<String> agentIdList = agentTrendingHandler.getTrendingAgentIds(platform, start, start + pageSize - 1);
+            PageResult<String> idPage = new PageResult<>();
+            idPage.setPageNum(pageNum);
+            idPage.setPageSize(pageSize);
+            idPage.setTotalSize(total);
+            idPage.setTotalPages((total + pageSize - 1) / pageSize);
+            idPage.setContentData(agentIdList);
+            return setAgentInfo(buildPublicPageByIds(idPage));
+        }
+        // 排行榜尚无数据时按累计数据排序
         // 构建查询条件
-        var wrapper = this.lambdaQuery()
+        var wrapper = summaryQuery()
                 .eq(Agent::getIsPublic, true);
 
         if (ObjUtil.isNotNull(platform)) {
@@ -235,6 +274,50 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
     }
 
 
+    /**
+     * 游标分页获取公共Agent列表
+     *
+     * @param cursor    上一页返回的游标
+     * @param limit     每页数量
+     * @param withTotal 是否返回总数
+     * @param search    搜索内容
+     * @param platform  平台
+     * @param category  分类
+     * @param sort      排序
+     * @param tags      标签
+     */
+    @Override
+    public CursorPageDTO<AgentDTO> getPublicAgentsByCursor(String cursor, Integer limit, Boolean withTotal, String search,
+                                                         PlatformType platform, String category, String sort, List<String> tags) {
+        Bson filter = agentSearchHandler.buildPublicFilter(search, platform, category, tags);
+        return buildCursorPage(agentCursorHandler.queryIds(filter, sort, cursor, limit, withTotal,
+                search, platform, category, tags), true);
+    }
+
+
+    /**
+     * 游标分页获取热门Agent列表
+     * 游标中记录上一页最后一个agent的热度分数，同一次翻页始终使用第一页时的游标类型
+     *
+     * @param cursor    上一页返回的游标
+     * @param limit     每页数量
+     * @param withTotal 是否返回总数
+     * @param platform  平台
+     */
+    @Override
+    public CursorPageDTO<AgentDTO> getTrendingAgentsByCursor(String cursor, Integer limit, Boolean withTotal, PlatformType platform) {
+        boolean trending = StrUtil.isBlank(cursor) ? agentTrendingHandler.getTrendingSize(platform) > 0
+                : agentCursorHandler.isTrendingCursor(cursor);
+        if (trending) {
+            return buildCursorPage(agentCursorHandler.queryTrendingIds(platform, cursor, limit, withTotal), true);
+        }
+        // 排行榜尚无数据时按最新排序
+        Bson filter = agentSearchHandler.buildPublicFilter(null, platform, null, null);
+        return buildCursorPage(agentCursorHandler.queryIds(filter, null, cursor, limit, withTotal,
+                TRENDING_CURSOR_KEY, platform), true);
+    }
+
+
     /**
      * 更新Agent信息
      *
@@ -271,7 +354,12 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
             agent.setDocumentId(documentId);
         }
         Agent updateAgent = converter.convert(agentDTO, agent);
+        updateAgent.setSearchGrams(agentSearchHandler.getSearchGrams(updateAgent));
         updateById(updateAgent);
+        agentCacheHandler.evict(agent.getId());
+        if (BooleanUtil.isFalse(updateAgent.getIsPublic())) {
+            agentTrendingHandler.removeAgent(agent.getId());
+        }
         // 更新license
         if(ObjUtil.isNotNull(agentDTO.getLicense())){
             AgentLicense license = converter.convert(agentDTO.getLicense(), AgentLicense.class);
@@ -300,7 +388,7 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
         }
 
         // 构建查询条件
-        var wrapper = this.lambdaQuery()
+        var wrapper = summaryQuery()
                 .eq(Agent::getAuthorId, userId);
 
         wrapper.or(StrUtil.isNotBlank(search), wrapper1 -> wrapper1.like(Agent::getName, search)
@@ -312,6 +400,32 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
         return setAgentInfo(page);
     }
 
+    /**
+     * 游标分页获取用户 agent 列表
+     *
+     * @param userId    用户ID
+     * @param userName  用户名
+     * @param sort      排序
+     * @param search    搜索内容
+     * @param cursor    上一页返回的游标
+     * @param limit     每页数量
+     * @param withTotal 是否返回总数
+     */
+    @Override
+    public CursorPageDTO<AgentDTO> listAgentsByAuthorByCursor(String userId, String userName, String sort, String search,
+                                                            String cursor, Integer limit, Boolean withTotal) {
+        if (StrUtil.isNotBlank(userName)) {
+            User user = ChainWrappers.lambdaQueryChain(baseMapper, User.class).eq(User::getUserName, userName).one();
+            if (ObjUtil.isEmpty(user)) {
+                throw new BusinessException(ErrorCode.USER_NOT_FOUND);
+            }
+            userId = user.getId();
+        }
+        Bson filter = agentSearchHandler.buildScopedFilter(agentSearchHandler.authorScope(userId), search, null, null);
+        return buildCursorPage(agentCursorHandler.queryIds(filter, sort, cursor, limit, withTotal, userId, search), false);
+    }
+
+
     private PageResult<AgentDTO> sortPage(String sort, Integer pageNum, Integer pageSize, LambdaQueryChainWrapper<Agent> wrapper) {
         if (StrUtil.isNotBlank(sort)) {
             switch (sort) {
@@ -350,8 +464,7 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
      */
     @Override
     public boolean isStarredAgent(String agentId) {
-        String userId = LoginHelper.getCurrentUserId();
-        return starService.exist(starService.lambdaQuery().eq(Star::getUserId, userId).eq(Star::getAgentId, agentId));
+        return starService.isStarred(LoginHelper.getCurrentUserId(), agentId);
     }
 
     /**
@@ -373,7 +486,7 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
         List<String> starAgentId = starService.list(starService.lambdaQuery().eq(Star::getUserId, userId)).stream().map(Star::getAgentId).toList();
 
         // 构建查询条件
-        var wrapper = this.lambdaQuery().in(Agent::getId, starAgentId);
+        var wrapper = summaryQuery().in(Agent::getId, starAgentId);
 
         // 添加搜索条件
         wrapper.or(StrUtil.isNotBlank(search), wrapper1 -> wrapper1.like(Agent::getName, search)
@@ -389,6 +502,30 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
         return setAgentInfo(page);
     }
 
+    /**
+     * 游标分页获取用户收藏的Agent列表
+     *
+     * @param userId    用户ID
+     * @param search    搜索内容
+     * @param platform  平台
+     * @param category  分类
+     * @param sort      排序
+     * @param cursor    上一页返回的游标
+     * @param limit     每页数量
+     * @param withTotal 是否返回总数
+     */
+    @Override
+    public CursorPageDTO<AgentDTO> listStarredAgentsByCursor(String userId, String search, PlatformType platform, String category,
+                                                           String sort, String cursor, Integer limit, Boolean withTotal) {
+        if (StrUtil.isBlank(userId)) {
+            userId = LoginHelper.getCurrentUserId();
+        }
+        List<String> starAgentId = starService.getStarAgentListByUserId(userId);
+        Bson filter = agentSearchHandler.buildScopedFilter(agentSearchHandler.idScope(starAgentId), search, platform, category);
+        return buildCursorPage(agentCursorHandler.queryIds(filter, sort, cursor, limit, withTotal,
+                userId, search, platform, category), false);
+    }
+
     /**
      * 取消收藏Agent
      * @param agentDTO agent DTO
@@ -397,12 +534,11 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
     @Override
     @LogRecord(actionType = UserActionType.UNSTAR_AGENT, targetAgentId = "#agentDTO.id")
     public boolean unStarAgent(AgentDTO agentDTO) {
-        Boolean exist = isStarredAgent(agentDTO.getId());
-        if (BooleanUtil.isTrue(exist)) {
-            String userId = LoginHelper.getCurrentUserId();
-            starService.remove(starService.lambdaUpdate().eq(Star::getUserId, userId).eq(Star::getAgentId, agentDTO.getId()));
-            Agent agent = getById(agentDTO.getId());
-            lambdaUpdate().eq(Agent::getId, agent.getId()).set(Agent::getStars, agent.getStars() - 1).update();
+        // 只有真正删除了收藏记录才扣减收藏数，保证重复点击和并发请求下计数准确
+        Star removed = starService.removeStar(LoginHelper.getCurrentUserId(), agentDTO.getId());
+        if (ObjUtil.isNotNull(removed)) {
+            incrementAgentCount(agentDTO.getId(), STARS_FIELD, -1);
+            agentTrendingHandler.recordUnstar(agentDTO.getId(), removed.getStarredAt());
         }
         return true;
     }
@@ -415,17 +551,10 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
     @Override
     @LogRecord(actionType = UserActionType.STAR_AGENT, targetAgentId = "#agentDTO.id")
     public boolean starAgent(AgentDTO agentDTO) {
-        Boolean exist = isStarredAgent(agentDTO.getId());
-
-        if (BooleanUtil.isFalse(exist)) {
-            String userId = LoginHelper.getCurrentUserId();
-            Star star = Star.builder()
-                    .userId(userId)
-                    .agentId(agentDTO.getId())
-                    .build();
-            starService.save(star);
-            Agent agent = getById(agentDTO.getId());
-            lambdaUpdate().eq(Agent::getId, agent.getId()).set(Agent::getStars, agent.getStars() + 1).update();
+        // 只有真正新增了收藏记录才增加收藏数，保证重复点击和并发请求下计数准确
+        if (starService.addStar(LoginHelper.getCurrentUserId(), agentDTO.getId())) {
+            incrementAgentCount(agentDTO.getId(), STARS_FIELD, 1);
+            agentTrendingHandler.recordStar(agentDTO.getId());
         }
         return true;
     }
@@ -459,17 +588,14 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
         if (ObjUtil.isNotNull(one)) {
             throw new BusinessException(ErrorCode.AGENT_ALREADY_EXISTS);
         }
-        if(CollUtil.isNotEmpty(agent.getDocsFileIdList())){
-            cloneAgent.setDocsFileIdList(agent.getDocsFileIdList().stream().map(agentFileUtils::copyFile).toList());
-        }
-        if(CollUtil.isNotEmpty(agent.getToolFileIdList())){
-            cloneAgent.setToolFileIdList(agent.getToolFileIdList().stream().map(agentFileUtils::copyFile).toList());
-        }
+        // fork的agent与原agent共享工具和知识库文件，修改文件内容时才生成独立的文件
         String newDescription = StrUtil.isBlank(forkRequestDTO.getDescription()) ? agent.getDescription() : forkRequestDTO.getDescription();
         cloneAgent.setName(newAgentName);
         cloneAgent.setDescription(newDescription);
         cloneAgent.setUpdateTime(null);
         cloneAgent.setAuthorId(userId);
+        cloneAgent.setAuthorNames(agentSearchHandler.getAuthorNames(userId));
+        cloneAgent.setSearchGrams(agentSearchHandler.getSearchGrams(cloneAgent));
         cloneAgent.setForks(0);
         cloneAgent.setStars(0);
         cloneAgent.setViews(0);
@@ -487,7 +613,8 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
                 .build();
         forkService.save(fork);
         // 更新原始Agent的Fork计数
-        lambdaUpdate().eq(Agent::getId, agent.getId()).set(Agent::getForks, agent.getForks() + 1).update();
+        incrementAgentCount(agent.getId(), FORKS_FIELD, 1);
+        agentTrendingHandler.recordFork(agent.getId());
 
         AgentDTO agentDTO = converter.convert(cloneAgent, AgentDTO.class);
         agentDTO.setForkInfo(converter.convert(fork, ForkDTO.class));
@@ -501,7 +628,7 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
      */
     @Override
     public Integer countForks(String agentId) {
-        Agent agent = getById(agentId);
+        Agent agent = agentCacheHandler.getAgent(agentId);
         Optional.ofNullable(agent).orElseThrow(() -> new BusinessException(ErrorCode.AGENT_NOT_FOUND));
         return agent.getForks();
     }
@@ -514,7 +641,7 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
      */
     @Override
     public AgentDTO getAgentById(String agentId) {
-        Agent agent = getById(agentId);
+        Agent agent = agentCacheHandler.getAgent(agentId);
         if (ObjUtil.isEmpty(agent)) {
             throw new BusinessException(ErrorCode.AGENT_NOT_FOUND);
         }
@@ -525,8 +652,8 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
             }
         }
 
-        // 浏览数加1
-        lambdaUpdate().eq(Agent::getId, agent.getId()).set(Agent::getViews, agent.getViews() + 1).update();
+        // 浏览数加1 由计数器异步批量刷入数据库
+        agentViewCountHandler.increment(agent.getId());
         return buildAgentDTO(agent);
     }
 
@@ -539,14 +666,7 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
      */
     @Override
     public AgentDTO getAgentByUserNameAndAgentName(String agentName, String userName) {
-        User user = ChainWrappers.lambdaQueryChain(baseMapper, User.class).eq(User::getUserName, userName).one();
-        if (ObjUtil.isEmpty(user)) {
-            throw new BusinessException(ErrorCode.USER_NOT_FOUND);
-        }
-        Agent agent = this.lambdaQuery().eq(Agent::getName, agentName).eq(Agent::getAuthorId, user.getId()).one();
-        if (ObjUtil.isEmpty(agent)) {
-            throw new BusinessException(ErrorCode.AGENT_NOT_FOUND);
-        }
+        Agent agent = getAgentByName(userName, agentName);
 
         // 访问权限控制
         if(BooleanUtil.isFalse(agent.getIsPublic())){
@@ -555,11 +675,43 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
             }
         }
 
-        // 浏览数加1
-        lambdaUpdate().eq(Agent::getId, agent.getId()).set(Agent::getViews, agent.getViews() + 1).update();
+        // 浏览数加1 由计数器异步批量刷入数据库
+        agentViewCountHandler.increment(agent.getId());
         return buildAgentDTO(agent);
     }
 
+    /**
+     * 根据用户名和agent名称获取Agent，优先使用缓存的agent id
+     * 缓存的agent已重命名或删除时删除名称映射，重新查询数据库
+     *
+     * @param userName  用户名
+     * @param agentName agent名称
+     * @return Agent
+     */
+    private Agent getAgentByName(String userName, String agentName) {
+        String cachedAgentId = agentCacheHandler.getAgentId(userName, agentName);
+        if (StrUtil.isNotBlank(cachedAgentId)) {
+            Agent agent = agentCacheHandler.getAgent(cachedAgentId);
+            if (ObjUtil.isNotNull(agent) && agentName.equals(agent.getName())) {
+                return agent;
+            }
+            agentCacheHandler.evictAgentId(userName, agentName);
+        }
+        User user = ChainWrappers.lambdaQueryChain(baseMapper, User.class).eq(User::getUserName, userName).one();
+        if (ObjUtil.isEmpty(user)) {
+            throw new BusinessException(ErrorCode.USER_NOT_FOUND);
+        }
+        String agentId = Optional.ofNullable(this.lambdaQuery().projectionDisplay(Agent::getId)
+                        .eq(Agent::getName, agentName).eq(Agent::getAuthorId, user.getId()).one())
+                .map(Agent::getId).orElseThrow(() -> new BusinessException(ErrorCode.AGENT_NOT_FOUND));
+        Agent agent = agentCacheHandler.getAgent(agentId);
+        if (ObjUtil.isNull(agent)) {
+            throw new BusinessException(ErrorCode.AGENT_NOT_FOUND);
+        }
+        agentCacheHandler.putAgentId(userName, agentName, agentId);
+        return agent;
+    }
+
     /**
      * 构建AgentDTO对象
      * 
@@ -568,12 +720,12 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
      */
     private AgentDTO buildAgentDTO(Agent agent) {
         AgentDTO agentDTO = converter.convert(agent, AgentDTO.class);
+        agentDTO.setViews(agentViewCountHandler.getLiveViews(agent.getId(), agent.getViews()));
         ForkDTO info = forkService.getForkInfoByAgentId(agent.getId());
         agentDTO.setForkInfo(info);
         AgentLicenseDTO licenseDTO = licenseService.getLicenseInfoByAgentId(agent.getId());
         agentDTO.setLicense(licenseDTO);
-        List<String> starAgentList = starService.getStarAgentListByUserId(LoginHelper.getCurrentUserId());
-        agentDTO.setIsStarred(starAgentList.contains(agent.getId()));
+        agentDTO.setIsStarred(starService.isStarred(LoginHelper.getCurrentUserId(), agent.getId()));
         return agentDTO;
     }
 
@@ -598,7 +750,8 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
      */
     @Override
     public Long getAgentViewsByUserId(String userId) {
-        return Convert.toLong(list(lambdaQuery().eq(Agent::getAuthorId, userId)).stream().map(Agent::getViews).reduce(Integer::sum).orElse(0));
+        return Convert.toLong(list(lambdaQuery().projectionDisplay(Agent::getId, Agent::getViews).eq(Agent::getAuthorId, userId)).stream()
+                .map(agent -> agentViewCountHandler.getLiveViews(agent.getId(), agent.getViews())).reduce(Integer::sum).orElse(0));
     }
 
 
@@ -627,38 +780,53 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
     /**
      * 导出Agent
      * @param agentId agent id
-     * @return ResponseEntity<Resource>
-     * @throws IOException IOException
+     * @param ifNoneMatch 客户端缓存的ETag
+     * @return ResponseEntity<StreamingResponseBody>
      */
     @Override
-    public ResponseEntity<Resource> exportAgent(String agentId) throws IOException {
+    public ResponseEntity<StreamingResponseBody> exportAgent(String agentId, String ifNoneMatch) {
         // 获取Agent信息
-        Agent agent = getById(agentId);
+        Agent agent = agentCacheHandler.getAgent(agentId);
         if (agent == null) {
             throw new BusinessException(ErrorCode.AGENT_NOT_FOUND);
         }
-        
-        // 创建字节数组输出流来存储ZIP数据
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        ZipOutputStream zipOut = new ZipOutputStream(byteArrayOutputStream);
-        
-        // 处理导出
-        agentFileUtils.handleExport(agent, zipOut);
-        zipOut.finish();
-        zipOut.close();
-        
-        // 创建资源
-        byte[] zipData = byteArrayOutputStream.toByteArray();
-        ByteArrayResource resource = new ByteArrayResource(zipData);
-        
         // 设置响应头
         String filename = URLEncodeUtil.encode(agent.getName()) + ".agent";
-        
-        return ResponseEntity.ok()
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .contentLength(zipData.length)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .body(resource);
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+
+        if (!agentExportCacheHandler.isEnabled()) {
+            // 写出响应前完成解析和校验
+            MdAgentInfoDTO mdAgentInfoDTO = agentFileUtils.prepareExport(agent);
+            // 压缩包直接写入响应流，不在内存中缓存
+            return builder.body(outputStream -> {
+                ZipOutputStream zipOut = new ZipOutputStream(outputStream);
+                agentFileUtils.handleExport(agent, mdAgentInfoDTO, zipOut);
+                zipOut.finish();
+                zipOut.flush();
+            });
+        }
+
+        String cacheKey = agentExportCacheHandler.cacheKey(agent);
+        String eTag = "\"" + cacheKey + "\"";
+        if (StrUtil.isNotBlank(ifNoneMatch) && (ifNoneMatch.contains(eTag) || "*".equals(ifNoneMatch.trim()))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        builder.eTag(eTag).cacheControl(CacheControl.noCache().cachePrivate());
+        AgentExportCacheHandler.CachedExport cached = agentExportCacheHandler.openCached(cacheKey);
+        if (ObjUtil.isNotNull(cached)) {
+            // 命中缓存时文件大小已知，客户端可显示下载进度
+            return builder.contentLength(cached.size())
+                    .body(outputStream -> agentExportCacheHandler.transferTo(cached, outputStream));
+        }
+        // 缓存未命中时需在写出响应前完成解析和校验
+        MdAgentInfoDTO mdAgentInfoDTO = agentFileUtils.prepareExport(agent);
+        return builder.body(outputStream -> {
+            Path path = agentExportCacheHandler.getOrBuild(cacheKey,
+                    zipOut -> agentFileUtils.handleExport(agent, mdAgentInfoDTO, zipOut));
+            agentExportCacheHandler.transferTo(path, outputStream);
+        });
     }
 
 
@@ -689,7 +857,9 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
         agent.setVersion(agentDTO.getVersion());
         agent.setIsPublished(true);
 
-        return updateById(agent);
+        boolean updated = updateById(agent);
+        agentCacheHandler.evict(agent.getId());
+        return updated;
     }
 
 
@@ -726,7 +896,7 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
         
         // 查询这些agents
         PageResult<AgentDTO> pageResult = page(
-                lambdaQuery().in(Agent::getId, forkedAgentIds)
+                summaryQuery().in(Agent::getId, forkedAgentIds)
                         .orderByDesc(Agent::getCreateTime),
                 pageNum, pageSize, AgentDTO.class);
         
@@ -734,6 +904,26 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
     }
 
 
+    /**
+     * 游标分页获取fork了某个agent的agent列表
+     *
+     * @param originalAgentId 原始Agent ID
+     * @param cursor          上一页返回的游标
+     * @param limit           每页数量
+     * @param withTotal       是否返回总数
+     */
+    @Override
+    public CursorPageDTO<AgentDTO> listForkedAgentsByCursor(String originalAgentId, String cursor, Integer limit, Boolean withTotal) {
+        if (ObjUtil.isNull(getById(originalAgentId))) {
+            throw new BusinessException(ErrorCode.AGENT_NOT_FOUND);
+        }
+        List<String> forkedAgentIds = forkService.lambdaQuery().eq(Fork::getOriginalAgentId, originalAgentId).list()
+                .stream().map(Fork::getForkedAgentId).toList();
+        Bson filter = agentSearchHandler.buildScopedFilter(agentSearchHandler.idScope(forkedAgentIds), null, null, null);
+        return buildCursorPage(agentCursorHandler.queryIds(filter, null, cursor, limit, withTotal, originalAgentId), false);
+    }
+
+
     /**
      * 为PageResult中的AgentDTO列表设置starred标记和fork信息
      *
@@ -741,20 +931,106 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
      * @return PageResult<AgentDTO> 处理后的结果
      */
     private PageResult<AgentDTO> setAgentInfo(PageResult<AgentDTO> page) {
-        List<String> agentIdList = page.getContentData().stream().map(AgentDTO::getId).toList();
-        List<String> starAgentList = starService.getStarAgentListByUserId(LoginHelper.getCurrentUserId());
+        setAgentInfo(page.getContentData());
+        return page;
+    }
+
+
+    /**
+     * 为AgentDTO列表设置starred标记和fork信息
+     *
+     * @param agentDTOList AgentDTO列表
+     * @return List<AgentDTO> 处理后的结果
+     */
+    private List<AgentDTO> setAgentInfo(List<AgentDTO> agentDTOList) {
+        if (CollUtil.isEmpty(agentDTOList)) {
+            return agentDTOList;
+        }
+        List<String> agentIdList = agentDTOList.stream().map(AgentDTO::getId).toList();
+        Set<String> starAgentSet = starService.getStarredAgentIds(LoginHelper.getCurrentUserId(), agentIdList);
         Map<String, ForkDTO> forkMap = forkService.getForkInfoByAgentIdList(agentIdList);
         Map<String, AgentLicenseDTO> licenseMap = licenseService.getLicenseInfoByAgentIdList(agentIdList);
-        page.getContentData().forEach(agentDTO -> {
-                    agentDTO.setIsStarred(starAgentList.contains(agentDTO.getId()));
+        agentDTOList.forEach(agentDTO -> {
+                    agentDTO.setIsStarred(starAgentSet.contains(agentDTO.getId()));
                     agentDTO.setForkInfo(forkMap.getOrDefault(agentDTO.getId(), null));
                     agentDTO.setLicense(licenseMap.getOrDefault(agentDTO.getId(), null));
+                    agentDTO.setViews(agentViewCountHandler.getLiveViews(agentDTO.getId(), agentDTO.getViews()));
                 }
         );
+        return agentDTOList;
+    }
+
+
+    /**
+     * 列表查询使用的摘要查询，不加载md内容和文件id列表等详情字段
+     * 详情及下载接口仍通过getById加载完整数据
+     *
+     * @return LambdaQueryChainWrapper<Agent>
+     */
+    private LambdaQueryChainWrapper<Agent> summaryQuery() {
+        return lambdaQuery().projectionNone(Agent::getMdContent, Agent::getToolFileIdList, Agent::getDocsFileIdList);
+    }
+
+
+    /**
+     * 按给定的agent id顺序构建分页结果，只保留公开的agent
+     *
+     * @param idPage agent id分页结果
+     * @return PageResult<AgentDTO>
+     */
+    private PageResult<AgentDTO> buildPublicPageByIds(PageResult<String> idPage) {
+        PageResult<AgentDTO> page = new PageResult<>();
+        BeanUtil.copyProperties(idPage, page, "contentData");
+        page.setContentData(getAgentDTOListByIds(idPage.getContentData(), true));
+        return page;
+    }
+
+
+    /**
+     * 按给定的agent id顺序批量获取AgentDTO
+     *
+     * @param agentIdList agent id列表
+     * @param publicOnly  是否只保留公开的agent
+     * @return List<AgentDTO>
+     */
+    private List<AgentDTO> getAgentDTOListByIds(List<String> agentIdList, boolean publicOnly) {
+        if (CollUtil.isEmpty(agentIdList)) {
+            return new ArrayList<>();
+        }
+        Map<String, Agent> agentMap = summaryQuery().in(Agent::getId, agentIdList).eq(publicOnly, Agent::getIsPublic, true).list()
+                .stream().collect(Collectors.toMap(Agent::getId, agent -> agent));
+        return agentIdList.stream().map(agentMap::get).filter(ObjUtil::isNotNull)
+                .map(agent -> converter.convert(agent, AgentDTO.class)).collect(Collectors.toList());
+    }
+
+
+    /**
+     * 根据游标分页的agent id结果构建AgentDTO结果
+     */
+    private CursorPageDTO<AgentDTO> buildCursorPage(CursorPageDTO<String> idPage, boolean publicOnly) {
+        CursorPageDTO<AgentDTO> page = new CursorPageDTO<>();
+        BeanUtil.copyProperties(idPage, page, "contentData");
+        page.setContentData(setAgentInfo(getAgentDTOListByIds(idPage.getContentData(), publicOnly)));
         return page;
     }
 
 
+    /**
+     * 通过 $inc 原子地调整Agent的计数字段，扣减时不会减到负数
+     *
+     * @param agentId   Agent ID
+     * @param fieldName 计数字段名
+     * @param delta     增量
+     */
+    private void incrementAgentCount(String agentId, String fieldName, int delta) {
+        Bson filter = delta < 0
+                ? Filters.and(Filters.eq(MongoFieldConstants.ID, agentId), Filters.gt(fieldName, 0))
+                : Filters.eq(MongoFieldConstants.ID, agentId);
+        baseMapper.getMongoPlusClient().getCollection(Agent.class).updateOne(filter, Updates.inc(fieldName, delta));
+        agentCacheHandler.evict(agentId);
+    }
+
+
     /**
      * 下载agent的md内容
      *
@@ -763,7 +1039,7 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
     @Override
     public ResponseEntity<Resource> downloadAgentMarkdown(String agentId) {
         // 获取Agent信息
-        Agent agent = getById(agentId);
+        Agent agent = agentCacheHandler.getAgent(agentId);
         if (agent == null) {
             throw new BusinessException(ErrorCode.AGENT_NOT_FOUND);
         }
@@ -848,20 +1124,20 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
         if (agent == null) {
             throw new BusinessException(ErrorCode.AGENT_NOT_FOUND);
         }
-        // 原agent fork数减一
-        ForkDTO forkInfo = forkService.getForkInfoByAgentId(agentId);
-        if(ObjUtil.isNotNull(forkInfo)){
-            // 更新原始Agent的Fork计数
-            lambdaUpdate().eq(Agent::getId, forkInfo.getOriginalAgentId()).set(Agent::getForks, agent.getForks() - 1).update();
+        // 删除fork记录，删除成功时原agent fork数减一
+        String originalAgentId = forkService.removeForkByForkedAgentId(agentId);
+        if (StrUtil.isNotBlank(originalAgentId)) {
+            incrementAgentCount(originalAgentId, FORKS_FIELD, -1);
         }
-        forkService.remove(ChainWrappers.lambdaUpdateChain(baseMapper,Fork.class).eq(Fork::getForkedAgentId,agentId));
-        starService.remove(ChainWrappers.lambdaUpdateChain(baseMapper,Star.class).eq(Star::getAgentId,agentId));
+        starService.removeStarsByAgentId(agentId);
         agentReleaseService.remove(ChainWrappers.lambdaUpdateChain(baseMapper,AgentRelease.class).eq(AgentRelease::getAgentId,agentId));
         licenseService.remove(ChainWrappers.lambdaUpdateChain(baseMapper,AgentLicense.class).eq(AgentLicense::getAgentId,agentId));
         if(StrUtil.isNotBlank(agent.getDocumentId())){
             vectorStoreService.deleteDocuments(List.of(agent.getDocumentId()));
         }
         removeById(agentId);
+        agentCacheHandler.evict(agentId);
+        agentTrendingHandler.removeAgent(agentId);
     }
 
 
@@ -900,8 +1176,12 @@ public class AgentsServiceImpl extends ServiceImpl<Agent> implements IAgentsServ
         }
         agent.getToolFileIdList().remove(fileId);
         agent.getDocsFileIdList().remove(fileId);
-        agentFileUtils.removeByIds(List.of(fileId));
         updateById(agent);
+        agentCacheHandler.evict(agentId);
+        // 文件可能与fork的agent共享，没有其他agent引用时才删除
+        if (fileReferenceService.getReferences(fileId).isEmpty()) {
+            agentFileUtils.removeByIds(List.of(fileId));
+        }
         return true;
     }
 }
\ No newline at end of file
@@ -0,0 +1,146 @@
+package com.litevar.ihub.core.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants;
+import com.litevar.ihub.core.entity.Agent;
+import com.litevar.ihub.core.entity.User;
+import com.litevar.ihub.core.handler.AgentCacheHandler;
+import com.litevar.ihub.file.service.IFileReferenceService;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import com.mongoplus.mapper.BaseMapper;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * agent及用户对文件的引用
+ *
+ * @author Teoan
+ * @since 2025/11/28 10:05
+ */
+@Service
+@RequiredArgsConstructor
+public class FileReferenceServiceImpl implements IFileReferenceService {
+
+    private static final String TOOL_FILE_ID_LIST_FIELD = "tool_file_id_list";
+
+    private static final String DOCS_FILE_ID_LIST_FIELD = "docs_file_id_list";
+
+    private static final String AUTHOR_ID_FIELD = "author_id";
+
+    private static final String AVATAR_FIELD = "avatar";
+
+    /**
+     * 头像地址中的文件ID /api/v1/file/content/{id}?v={md5}
+     */
+    private static final Pattern AVATAR_FILE_ID_PATTERN = Pattern.compile("/file/content/([^/?#]+)");
+
+    private final BaseMapper baseMapper;
+    private final AgentCacheHandler agentCacheHandler;
+
+
+    @Override
+    public Map<String, String> getReferences(String fileId) {
+        Map<String, String> references = new HashMap<>();
+        collection().find(Filters.and(
+                        Filters.or(Filters.eq(TOOL_FILE_ID_LIST_FIELD, fileId), Filters.eq(DOCS_FILE_ID_LIST_FIELD, fileId)),
+                        Filters.eq(MongoFieldConstants.LOGIC_DEL, false)))
+                .projection(Projections.include(AUTHOR_ID_FIELD))
+                .forEach(agent -> references.put(agent.getString(MongoFieldConstants.ID), agent.getString(AUTHOR_ID_FIELD)));
+        return references;
+    }
+
+
+    @Override
+    public void replaceReference(List<String> agentIds, String fileId, String newFileId) {
+        if (CollUtil.isEmpty(agentIds)) {
+            return;
+        }
+        Bson agentFilter = Filters.in(MongoFieldConstants.ID, agentIds);
+        // 文件只会出现在其中一个列表中，位置操作符$替换匹配到的元素
+        for (String field : List.of(TOOL_FILE_ID_LIST_FIELD, DOCS_FILE_ID_LIST_FIELD)) {
+            collection().updateMany(Filters.and(agentFilter, Filters.eq(field, fileId)), Updates.combine(
+                    Updates.set(field + ".$", newFileId),
+                    Updates.set(MongoFieldConstants.UPDATE_TIME, LocalDateTime.now())));
+        }
+        agentCacheHandler.evict(agentIds.toArray(String[]::new));
+    }
+
+
+    @Override
+    public Set<String> getReferencedFileIds() {
+        Set<String> fileIds = new HashSet<>();
+        collection().find(Filters.eq(MongoFieldConstants.LOGIC_DEL, false))
+                .projection(Projections.include(TOOL_FILE_ID_LIST_FIELD, DOCS_FILE_ID_LIST_FIELD))
+                .forEach(agent -> addAgentFileIds(fileIds, agent));
+        // 已删除用户的头像仍可能在作者信息中展示，一并保留
+        userCollection().find(Filters.exists(AVATAR_FIELD))
+                .projection(Projections.include(AVATAR_FIELD))
+                .forEach(user -> addAvatarFileId(fileIds, user.getString(AVATAR_FIELD)));
+        return fileIds;
+    }
+
+
+    @Override
+    public Set<String> filterReferenced(Collection<String> fileIds) {
+        Set<String> referenced = new HashSet<>();
+        if (CollUtil.isEmpty(fileIds)) {
+            return referenced;
+        }
+        collection().find(Filters.and(
+                        Filters.or(Filters.in(TOOL_FILE_ID_LIST_FIELD, fileIds), Filters.in(DOCS_FILE_ID_LIST_FIELD, fileIds)),
+                        Filters.eq(MongoFieldConstants.LOGIC_DEL, false)))
+                .projection(Projections.include(TOOL_FILE_ID_LIST_FIELD, DOCS_FILE_ID_LIST_FIELD))
+                .forEach(agent -> addAgentFileIds(referenced, agent));
+        List<Pattern> avatarPatterns = fileIds.stream()
+                .map(fileId -> Pattern.compile("/file/content/" + Pattern.quote(fileId) + "(?:[?#]|$)"))
+                .toList();
+        userCollection().find(Filters.in(AVATAR_FIELD, avatarPatterns))
+                .projection(Projections.include(AVATAR_FIELD))
+                .forEach(user -> addAvatarFileId(referenced, user.getString(AVATAR_FIELD)));
+        referenced.retainAll(new HashSet<>(fileIds));
+        return referenced;
+    }
+
+
+    private void addAgentFileIds(Set<String> fileIds, Document agent) {
+        CollUtil.addAll(fileIds, agent.getList(TOOL_FILE_ID_LIST_FIELD, String.class));
+        CollUtil.addAll(fileIds, agent.getList(DOCS_FILE_ID_LIST_FIELD, String.class));
+    }
+
+
+    private void addAvatarFileId(Set<String> fileIds, String avatar) {
+        if (StrUtil.isBlank(avatar)) {
+            return;
+        }
+        Matcher matcher = AVATAR_FILE_ID_PATTERN.matcher(avatar);
+        if (matcher.find()) {
+            fileIds.add(matcher.group(1));
+        }
+    }
+
+
+    private MongoCollection<Document> userCollection() {
+        return baseMapper.getMongoPlusClient().getCollection(User.class);
+    }
+
+
+    private MongoCollection<Document> collection() {
+        return baseMapper.getMongoPlusClient().getCollection(Agent.class);
+    }
+}
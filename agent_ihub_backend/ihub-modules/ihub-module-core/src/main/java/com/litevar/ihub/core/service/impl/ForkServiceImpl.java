@@ -1,11 +1,16 @@
 package com.litevar.ihub.core.service.impl;
 
+import cn.hutool.core.util.ObjUtil;
+import com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants;
 import com.litevar.ihub.core.dto.ForkDTO;
 import com.litevar.ihub.core.entity.Fork;
 import com.litevar.ihub.core.service.IForkService;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
 import com.mongoplus.service.impl.ServiceImpl;
 import io.github.linpeilie.Converter;
 import lombok.RequiredArgsConstructor;
+import org.bson.Document;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -22,6 +27,10 @@ public class ForkServiceImpl extends ServiceImpl<Fork> implements IForkService {
 
     private final Converter converter;
 
+    private static final String FORKED_AGENT_ID_FIELD = "forked_agent_id";
+
+    private static final String ORIGINAL_AGENT_ID_FIELD = "original_agent_id";
+
     /**
      * 获取用户创建的Fork数
      *
@@ -53,4 +62,19 @@ public class ForkServiceImpl extends ServiceImpl<Fork> implements IForkService {
         List<ForkDTO> forkDTOS = converter.convert(lambdaQuery().in(Fork::getForkedAgentId, agentIdList).list(), ForkDTO.class);
         return   forkDTOS.stream().collect(Collectors.toMap(ForkDTO::getForkedAgentId, fork -> fork));
     }
+
+
+    /**
+     * 删除Fork出来的Agent对应的Fork记录
+     * 通过findOneAndUpdate原子地完成逻辑删除，并发删除时只有一个请求能拿到原始AgentId
+     * @param forkedAgentId fork出来的agent id
+     * @return 原始AgentId 不存在Fork记录时返回null
+     */
+    @Override
+    public String removeForkByForkedAgentId(String forkedAgentId) {
+        Document before = baseMapper.getMongoPlusClient().getCollection(Fork.class).findOneAndUpdate(
+                Filters.and(Filters.eq(FORKED_AGENT_ID_FIELD, forkedAgentId), Filters.eq(MongoFieldConstants.LOGIC_DEL, false)),
+                Updates.set(MongoFieldConstants.LOGIC_DEL, true));
+        return ObjUtil.isNull(before) ? null : before.getString(ORIGINAL_AGENT_ID_FIELD);
+    }
 }
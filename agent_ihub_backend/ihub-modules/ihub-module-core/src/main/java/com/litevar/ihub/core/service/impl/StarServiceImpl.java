@@ -1,19 +1,78 @@
 package com.litevar.ihub.core.service.impl;
 
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.litevar.ihub.common.core.utils.RedisUtils;
+import com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants;
 import com.litevar.ihub.core.entity.Star;
 import com.litevar.ihub.core.service.IStarService;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
 import com.mongoplus.service.impl.ServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.redisson.api.RLock;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.litevar.ihub.common.core.constant.CacheConstants.*;
 
 /**
  * @author Teoan
  * @since 2025/7/28 14:33
  */
+@Slf4j
 @Service
 public class StarServiceImpl extends ServiceImpl<Star> implements IStarService {
 
+    private static final String USER_ID_FIELD = "user_id";
+
+    private static final String AGENT_ID_FIELD = "agent_id";
+
+    private static final String STARRED_AT_FIELD = "starred_at";
+
+    private static final String STAR_UNIQUE_INDEX = "uk_user_id_agent_id";
+
+    /**
+     * 收藏集合已从数据库加载的标记成员
+     */
+    private static final String LOADED_MARKER = "#loaded";
+
+
+    /**
+     * 创建 (userId, agentId) 唯一索引
+     * 由于收藏记录是逻辑删除，唯一约束只作用于未删除的记录
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createStarUniqueIndex() {
+        try {
+            getStarCollection().createIndex(Indexes.ascending(USER_ID_FIELD, AGENT_ID_FIELD), new IndexOptions()
+                    .name(STAR_UNIQUE_INDEX)
+                    .unique(true)
+                    .partialFilterExpression(Filters.eq(MongoFieldConstants.LOGIC_DEL, false)));
+        } catch (Exception e) {
+            log.error("创建收藏唯一索引失败,请检查stars中是否存在重复的收藏记录", e);
+        }
+    }
+
 
     /**
      * 获取用户收藏的Agent数
@@ -35,4 +94,151 @@ public class StarServiceImpl extends ServiceImpl<Star> implements IStarService {
     public List<String> getStarAgentListByUserId(String userId) {
         return list(lambdaQuery().eq(Star::getUserId, userId)).stream().map(Star::getAgentId).toList();
     }
+
+
+    /**
+     * 添加收藏记录，依赖唯一索引保证同一用户对同一Agent只有一条收藏记录
+     * @param userId user id
+     * @param agentId agent id
+     * @return 是否新增了收藏记录 已收藏时返回false
+     */
+    @Override
+    public boolean addStar(String userId, String agentId) {
+        RLock lock = RedisUtils.getLock(StrUtil.format(IHUB_STAR_USER_LOCK_KEY, userId));
+        lock.lock();
+        try {
+            boolean added = save(Star.builder().userId(userId).agentId(agentId)
+                    .starredAt(System.currentTimeMillis()).build());
+            String key = StrUtil.format(IHUB_STAR_USER_AGENTS_KEY, userId);
+            RedisUtils.sAdd(key, agentId);
+            RedisUtils.expire(key, IHUB_STAR_USER_AGENTS_EXPIRE_HOURS, TimeUnit.HOURS);
+            return added;
+        } catch (Exception e) {
+            if (isDuplicateKey(e)) {
+                return false;
+            }
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * 删除收藏记录
+     * @param userId user id
+     * @param agentId agent id
+     * @return 被删除的收藏记录 未收藏时返回null
+     */
+    @Override
+    public Star removeStar(String userId, String agentId) {
+        RLock lock = RedisUtils.getLock(StrUtil.format(IHUB_STAR_USER_LOCK_KEY, userId));
+        lock.lock();
+        try {
+            Document removed = getStarCollection().findOneAndUpdate(Filters.and(
+                            Filters.eq(USER_ID_FIELD, userId),
+                            Filters.eq(AGENT_ID_FIELD, agentId),
+                            Filters.eq(MongoFieldConstants.LOGIC_DEL, false)),
+                    Updates.set(MongoFieldConstants.LOGIC_DEL, true),
+                    new FindOneAndUpdateOptions().projection(Projections.include(STARRED_AT_FIELD)));
+            RedisUtils.sRemove(StrUtil.format(IHUB_STAR_USER_AGENTS_KEY, userId), agentId);
+            if (ObjUtil.isNull(removed)) {
+                return null;
+            }
+            return Star.builder().userId(userId).agentId(agentId)
+                    .starredAt(Convert.toLong(removed.get(STARRED_AT_FIELD))).build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * 删除agent的所有收藏记录，并从收藏用户的redis集合中移除该agent
+     * @param agentId agent id
+     */
+    @Override
+    public void removeStarsByAgentId(String agentId) {
+        List<String> userIds = list(lambdaQuery().eq(Star::getAgentId, agentId)).stream()
+                .map(Star::getUserId).distinct().toList();
+        for (String userId : userIds) {
+            removeStar(userId, agentId);
+        }
+    }
+
+
+    /**
+     * 判断用户是否收藏了指定Agent
+     * @param userId user id
+     * @param agentId agent id
+     * @return 是否已收藏
+     */
+    @Override
+    public boolean isStarred(String userId, String agentId) {
+        return getStarredAgentIds(userId, List.of(agentId)).contains(agentId);
+    }
+
+
+    /**
+     * 批量判断用户收藏了哪些Agent
+     * 用户的收藏集合缓存在redis set中，一次SMISMEMBER完成整页的判断
+     * @param userId user id
+     * @param agentIds 待判断的agent id
+     * @return 已收藏的agent id
+     */
+    @Override
+    public Set<String> getStarredAgentIds(String userId, Collection<String> agentIds) {
+        if (StrUtil.isBlank(userId) || CollUtil.isEmpty(agentIds)) {
+            return Set.of();
+        }
+        String key = StrUtil.format(IHUB_STAR_USER_AGENTS_KEY, userId);
+        List<Object> members = new ArrayList<>(agentIds.size() + 1);
+        members.add(LOADED_MARKER);
+        members.addAll(agentIds);
+        Set<Object> starred = RedisUtils.sContainsEach(key, members);
+        if (!starred.contains(LOADED_MARKER)) {
+            // 集合未加载或已过期，从数据库重建
+            loadStarredAgentIds(userId);
+            starred = RedisUtils.sContainsEach(key, members);
+        }
+        return starred.stream().filter(member -> !LOADED_MARKER.equals(member)).map(String::valueOf).collect(Collectors.toSet());
+    }
+
+
+    /**
+     * 从数据库加载用户收藏的agent id到redis set
+     * 加载期间持有与收藏写入相同的锁，避免加载到旧数据覆盖并发的收藏/取消收藏
+     */
+    private void loadStarredAgentIds(String userId) {
+        String key = StrUtil.format(IHUB_STAR_USER_AGENTS_KEY, userId);
+        RLock lock = RedisUtils.getLock(StrUtil.format(IHUB_STAR_USER_LOCK_KEY, userId));
+        lock.lock();
+        try {
+            if (RedisUtils.sIsMember(key, LOADED_MARKER)) {
+                return;
+            }
+            RedisUtils.delete(key);
+            List<Object> members = new ArrayList<>(getStarAgentListByUserId(userId));
+            members.add(LOADED_MARKER);
+            RedisUtils.sAddAll(key, members);
+            RedisUtils.expire(key, IHUB_STAR_USER_AGENTS_EXPIRE_HOURS, TimeUnit.HOURS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private MongoCollection<Document> getStarCollection() {
+        return baseMapper.getMongoPlusClient().getCollection(Star.class);
+    }
+
+
+    /**
+     * 判断异常是否由唯一索引冲突引起
+     */
+    private boolean isDuplicateKey(Exception e) {
+        Throwable cause = ExceptionUtil.getCausedBy(e, MongoWriteException.class);
+        return ObjUtil.isNotNull(cause)
+                && ErrorCategory.fromErrorCode(((MongoWriteException) cause).getCode()) == ErrorCategory.DUPLICATE_KEY;
+    }
 }
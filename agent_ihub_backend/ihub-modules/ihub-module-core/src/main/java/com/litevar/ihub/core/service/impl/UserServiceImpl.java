@@ -15,6 +15,7 @@ import com.litevar.ihub.core.dto.UpdateUserDTO;
 import com.litevar.ihub.core.dto.UserDTO;
 import com.litevar.ihub.core.dto.UserStatsDTO;
 import com.litevar.ihub.core.entity.User;
+import com.litevar.ihub.core.handler.AgentSearchHandler;
 import com.litevar.ihub.core.service.*;
 import com.mongoplus.manager.LogicManager;
 import com.mongoplus.model.PageResult;
@@ -44,6 +45,7 @@ public class UserServiceImpl extends ServiceImpl<User> implements IUserService,
     private final IForkService forkService;
     private final IAgentsService agentService;
     private final Converter converter;
+    private final AgentSearchHandler agentSearchHandler;
 
     /**
      * 根据邮箱查询用户
@@ -133,10 +135,16 @@ public class UserServiceImpl extends ServiceImpl<User> implements IUserService,
             throw new BusinessException(ErrorCode.USER_NOT_FOUND);
         }
         User updateUser = converter.convert(updateUserDTO, User.class);
+        String originNickName = user.getNickName();
         BeanUtil.copyProperties(updateUser, user, CopyOptions.create().ignoreNullValue());
         // 删除翻译缓存
         RedisUtils.delete(StrUtil.format(IHUB_TRANSLATION_CACHE_KEY,user.getId()));
-       return updateById(user);
+        Boolean updated = updateById(user);
+        // 昵称变更时同步agent上冗余的作者名称
+        if (!StrUtil.equals(originNickName, user.getNickName())) {
+            agentSearchHandler.syncAuthorNames(user.getId());
+        }
+        return updated;
     }
 
 
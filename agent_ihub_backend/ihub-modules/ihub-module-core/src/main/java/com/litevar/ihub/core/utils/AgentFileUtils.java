@@ -4,13 +4,15 @@ import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.codec.Base64;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.thread.ExecutorBuilder;
+import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.core.util.ZipUtil;
 import cn.hutool.json.JSONConfig;
 import cn.hutool.json.JSONUtil;
+import com.litevar.ihub.common.core.config.IHubExportProperties;
+import com.litevar.ihub.common.core.config.IHubImportProperties;
 import com.litevar.ihub.common.web.exception.BusinessException;
 import com.litevar.ihub.common.web.exception.ErrorCode;
 import com.litevar.ihub.core.dto.CreateAgentDTO;
@@ -27,24 +29,40 @@ import com.litevar.ihub.file.service.IFileInfoService;
 import com.litevar.ihub.file.util.MdAgentInfoValidator;
 import com.mongoplus.mapper.BaseMapper;
 import com.mongoplus.toolkit.ChainWrappers;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import static com.litevar.ihub.file.constant.DirConstants.*;
@@ -64,27 +82,74 @@ public class AgentFileUtils {
 
     private final IFileInfoService fileInfoService;
     private final BaseMapper baseMapper;
+    private final IHubExportProperties exportProperties;
+    private final IHubImportProperties importProperties;
 
     /**
-     * 导出信息缓存，用于模型、知识库、工具的合并
+     * 导出线程池，用于并行准备压缩包中各部分内容
      */
-    private final Map<String, String> exportInfoMap = new HashMap<>();
+    private ExecutorService exportExecutor;
+
+    /**
+     * 导入线程池，用于并行写入知识库文档及图片，队列满时由导入请求线程写入
+     */
+    private ExecutorService importExecutor;
+
+
+    @PostConstruct
+    public void init() {
+        exportExecutor = ExecutorBuilder.create()
+                .setCorePoolSize(exportProperties.getParallelism())
+                .setMaxPoolSize(exportProperties.getParallelism())
+                .setWorkQueue(new LinkedBlockingQueue<>(exportProperties.getQueueCapacity()))
+                .setThreadFactory(ThreadUtil.newNamedThreadFactory("agent-export-", true))
+                .setHandler(new ThreadPoolExecutor.CallerRunsPolicy())
+                .build();
+        importExecutor = ExecutorBuilder.create()
+                .setCorePoolSize(importProperties.getParallelism())
+                .setMaxPoolSize(importProperties.getParallelism())
+                .setWorkQueue(new LinkedBlockingQueue<>(importProperties.getQueueCapacity()))
+                .setThreadFactory(ThreadUtil.newNamedThreadFactory("agent-import-", true))
+                .setHandler(new ThreadPoolExecutor.CallerRunsPolicy())
+                .build();
+    }
+
+
+    @PreDestroy
+    public void destroy() {
+        exportExecutor.shutdownNow();
+        importExecutor.shutdownNow();
+    }
 
 
     /**
-     * 导出处理
+     * 导出前解析并校验agent的md内容
+     * 流式导出时需在写出响应前调用，校验失败时仍能返回正常的错误信息
      *
-     * @param agent
+     * @param agent agent
+     * @return 解析后的agent信息
      */
-    public void handleExport(Agent agent, ZipOutputStream zipOut) {
+    public MdAgentInfoDTO prepareExport(Agent agent) {
         MdAgentInfoDTO mdAgentInfoDTO = AgentMarkdownParser.parse(agent.getMdContent());
-
         // 递归校验mdAgentInfoDTO中的内容
         MdAgentInfoValidator.validateExportMdAgentInfo(mdAgentInfoDTO, StrUtil.format("agent[{}]", mdAgentInfoDTO.getName()));
+        return mdAgentInfoDTO;
+    }
+
+
+    /**
+     * 导出处理 文件按块写入zipOut，不在内存中缓存整个压缩包
+     * 工具文稿读取、知识库文档及图片信息查询、子agent序列化由导出线程池并行执行，只有当前线程写入zipOut
+     *
+     * @param agent          agent
+     * @param mdAgentInfoDTO prepareExport解析后的agent信息
+     * @param zipOut         ZIP输出流
+     */
+    public void handleExport(Agent agent, MdAgentInfoDTO mdAgentInfoDTO, ZipOutputStream zipOut) {
         User one = ChainWrappers.lambdaQueryChain(baseMapper, User.class).eq(User::getId, agent.getAuthorId()).one();
+        ExportContext context = new ExportContext(fileInfoService.getByIds(agent.getToolFileIdList()).stream().toList(),
+                fileInfoService.getByIds(agent.getDocsFileIdList()).stream().toList());
         try {
-            List<FileInfo> toolsFileInfoList = fileInfoService.getByIds(agent.getToolFileIdList()).stream().toList();
-            List<FileInfo> docsFileInfoList = fileInfoService.getByIds(agent.getDocsFileIdList()).stream().toList();
             // 1. 添加 metadata.json
             FileAgentMetadataDTO metadataDTO = FileAgentMetadataDTO.builder()
                     .agent(agent.getName())
@@ -92,15 +157,14 @@ public class AgentFileUtils {
                     .author(one.getUserName())
                     .createTime(agent.getCreateTime())
                     .build();
-            addZipEntry("metadata.json", JSONUtil.toJsonStr(metadataDTO,
-                    JSONConfig.create().setDateFormat("yyyy-MM-dd HH:mm:ss")), zipOut);
+            context.addText("metadata.json", JSONUtil.toJsonStr(metadataDTO,
+                    JSONConfig.create().setDateFormat("yyyy-MM-dd HH:mm:ss")));
 
             // 处理agent信息
-            exportInfoMap.clear();
-            FileAgentDTO fileAgentDTO = processAgentInfo(mdAgentInfoDTO, toolsFileInfoList, docsFileInfoList, zipOut);
+            FileAgentDTO fileAgentDTO = processAgentInfo(mdAgentInfoDTO, context);
 
             //  处理子agent
-            processSubAgents(mdAgentInfoDTO.getSubAgents(), fileAgentDTO, zipOut, toolsFileInfoList, docsFileInfoList);
+            processSubAgents(mdAgentInfoDTO.getSubAgents(), fileAgentDTO, context);
 
             fileAgentDTO.setId(IdUtil.getSnowflakeNextIdStr());
             fileAgentDTO.setDescription(agent.getDescription());
@@ -108,7 +172,9 @@ public class AgentFileUtils {
             fileAgentDTO.setName(agent.getName());
             fileAgentDTO.setPrompt(mdAgentInfoDTO.getPrompt());
             fileAgentDTO.setMode(mdAgentInfoDTO.getMode());
-            addZipEntry(agent.getName() + ".json", JSONUtil.toJsonStr(fileAgentDTO), zipOut);
+            context.addJson(agent.getName() + ".json", fileAgentDTO);
+
+            context.writeTo(zipOut);
         } catch (IOException e) {
             throw new BusinessException(ErrorCode.FILE_DOWNLOAD_ERROR, "导出失败:" + e.getMessage());
         }
@@ -117,18 +183,16 @@ public class AgentFileUtils {
     /**
      * 递归处理子agent导出
      *
-     * @param subAgentDTO       子agent信息
-     * @param subAgentId        子agent ID
-     * @param zipOut            ZIP输出流
-     * @param toolsFileInfoList 工具文件信息列表
-     * @param docsFileInfoList  文档文件信息列表
+     * @param subAgentDTO 子agent信息
+     * @param subAgentId  子agent ID
+     * @param context     导出上下文
      */
-    private void handleSubAgentExport(MdAgentInfoDTO subAgentDTO, String subAgentId, ZipOutputStream zipOut, List<FileInfo> toolsFileInfoList, List<FileInfo> docsFileInfoList) throws IOException {
+    private void handleSubAgentExport(MdAgentInfoDTO subAgentDTO, String subAgentId, ExportContext context) {
         // 处理agent信息
-        FileAgentDTO fileAgentDTO = processAgentInfo(subAgentDTO, toolsFileInfoList, docsFileInfoList, zipOut);
+        FileAgentDTO fileAgentDTO = processAgentInfo(subAgentDTO, context);
 
         // 处理子agent的子agent
-        processSubAgents(subAgentDTO.getSubAgents(), fileAgentDTO, zipOut, toolsFileInfoList, docsFileInfoList);
+        processSubAgents(subAgentDTO.getSubAgents(), fileAgentDTO, context);
 
         fileAgentDTO.setId(subAgentId);
         fileAgentDTO.setDescription(subAgentDTO.getDescription());
@@ -138,19 +202,17 @@ public class AgentFileUtils {
         fileAgentDTO.setMode(subAgentDTO.getMode());
 
         // 将子agent的JSON内容写入到multiagent目录，文件名为agent的id
-        addZipEntry(MULTIAGENT_DIR + File.separator + subAgentId + ".json", JSONUtil.toJsonStr(fileAgentDTO), zipOut);
+        context.addJson(MULTIAGENT_DIR + File.separator + subAgentId + ".json", fileAgentDTO);
     }
 
     /**
      * 处理子agent列表
      *
-     * @param subAgents         子agent列表
-     * @param fileAgentDTO      父agent DTO
-     * @param zipOut            ZIP输出流
-     * @param toolsFileInfoList 工具文件信息列表
-     * @param docsFileInfoList  文档文件信息列表
+     * @param subAgents    子agent列表
+     * @param fileAgentDTO 父agent DTO
+     * @param context      导出上下文
      */
-    private void processSubAgents(List<MdAgentInfoDTO> subAgents, FileAgentDTO fileAgentDTO, ZipOutputStream zipOut, List<FileInfo> toolsFileInfoList, List<FileInfo> docsFileInfoList) throws IOException {
+    private void processSubAgents(List<MdAgentInfoDTO> subAgents, FileAgentDTO fileAgentDTO, ExportContext context) {
         if (CollUtil.isNotEmpty(subAgents)) {
             List<String> subAgentIds = new ArrayList<>();
             for (MdAgentInfoDTO subAgent : subAgents) {
@@ -158,7 +220,7 @@ public class AgentFileUtils {
                 String subAgentId = IdUtil.getSnowflakeNextIdStr();
                 subAgentIds.add(subAgentId);
                 // 递归处理子agent
-                handleSubAgentExport(subAgent, subAgentId, zipOut, toolsFileInfoList, docsFileInfoList);
+                handleSubAgentExport(subAgent, subAgentId, context);
             }
             fileAgentDTO.setSubAgentIds(subAgentIds);
         }
@@ -167,34 +229,36 @@ public class AgentFileUtils {
     /**
      * 处理agent信息（工具、模型、知识库）
      *
-     * @param agentInfoDTO      agent信息
-     * @param toolsFileInfoList 工具文件信息列表
-     * @param docsFileInfoList  文档文件信息列表
-     * @param zipOut            ZIP输出流
+     * @param agentInfoDTO agent信息
+     * @param context      导出上下文
      * @return 处理后的FileAgentDTO对象
      */
-    private FileAgentDTO processAgentInfo(MdAgentInfoDTO agentInfoDTO, List<FileInfo> toolsFileInfoList, List<FileInfo> docsFileInfoList, ZipOutputStream zipOut) throws IOException {
+    private FileAgentDTO processAgentInfo(MdAgentInfoDTO agentInfoDTO, ExportContext context) {
         FileAgentDTO fileAgentDTO = new FileAgentDTO();
+        Map<String, String> exportInfoMap = context.exportInfoMap;
 
         // 处理tools
         if (CollUtil.isNotEmpty(agentInfoDTO.getTools())) {
             // 导出时重新生成文件id
             List<FileAgentDTO.Function> fileFunctionList = new ArrayList<>();
             for (MdAgentInfoDTO.Tool tool : agentInfoDTO.getTools()) {
-                FileToolDTO fileToolDTO = new FileToolDTO();
-                BeanUtil.copyProperties(tool, fileToolDTO);
-                fileToolDTO.setSchemaType(tool.getSchemaType().getCode());
-                // 获取schema文稿内容
-                toolsFileInfoList.stream().filter(fileInfo -> fileInfo.getFileName().equals(tool.getSchemaFileName())).findFirst().ifPresent(fileInfo -> {
-                    fileToolDTO.setSchemaStr(FileUtil.readUtf8String(fileInfo.getFilePath()));
-                });
                 // 唯一标识： 工具名称 + schema文稿 + schema类型
                 String importKey = tool.getName() + "_" + tool.getSchemaFileName() + "_" + tool.getSchemaType().getDescription();
                 String id = exportInfoMap.get(importKey);
                 if (StrUtil.isBlank(id)) {
                     id = IdUtil.getSnowflakeNextIdStr();
-                    addZipEntry(TOOLS_DIR + File.separator + id + ".json", JSONUtil.toJsonStr(fileToolDTO), zipOut);
                     exportInfoMap.put(importKey, id);
+                    String entryName = TOOLS_DIR + File.separator + id + ".json";
+                    FileToolDTO fileToolDTO = new FileToolDTO();
+                    BeanUtil.copyProperties(tool, fileToolDTO);
+                    fileToolDTO.setSchemaType(tool.getSchemaType().getCode());
+                    Optional<FileInfo> schemaFileInfo = context.toolsFileInfoList.stream()
+                            .filter(fileInfo -> fileInfo.getFileName().equals(tool.getSchemaFileName())).findFirst();
+                    // 获取schema文稿内容
+                    context.addAsync(() -> {
+                        schemaFileInfo.ifPresent(fileInfo -> fileToolDTO.setSchemaStr(FileUtil.readUtf8String(fileInfo.getFilePath())));
+                        return List.of(ExportEntry.text(entryName, JSONUtil.toJsonStr(fileToolDTO)));
+                    });
                 }
                 List<FileAgentDTO.Function> fileFunctions = new ArrayList<>();
                 if (CollUtil.isNotEmpty(tool.getFunctions())) {
@@ -229,7 +293,7 @@ public class AgentFileUtils {
             String modelId = exportInfoMap.get(importKey);
             if (StrUtil.isBlank(modelId)) {
                 modelId = IdUtil.getSnowflakeNextIdStr();
-                addZipEntry(MODELS_DIR + File.separator + modelId + ".json", JSONUtil.toJsonStr(fileModelDTO), zipOut);
+                context.addText(MODELS_DIR + File.separator + modelId + ".json", JSONUtil.toJsonStr(fileModelDTO));
                 exportInfoMap.put(importKey, modelId);
             }
             if (fileModelDTO.getType().equals(ModelType.TTS)) {
@@ -258,7 +322,7 @@ public class AgentFileUtils {
                 String knowledgeModelId = exportInfoMap.get(importKey);
                 if (StrUtil.isBlank(knowledgeModelId)) {
                     knowledgeModelId = IdUtil.getSnowflakeNextIdStr();
-                    addZipEntry(MODELS_DIR + File.separator + knowledgeModelId + ".json", JSONUtil.toJsonStr(knowledgeModelDTO), zipOut);
+                    context.addText(MODELS_DIR + File.separator + knowledgeModelId + ".json", JSONUtil.toJsonStr(knowledgeModelDTO));
                     exportInfoMap.put(importKey, knowledgeModelId);
                 }
 
@@ -271,29 +335,12 @@ public class AgentFileUtils {
                     knowledgeModelMetadataDTO.setName(knowledgeBase.getName());
                     knowledgeModelMetadataDTO.setDescription(knowledgeBase.getDescription());
                     knowledgeModelMetadataDTO.setEmbeddingModelId(knowledgeModelId);
-                    List<FileInfo> mdFileInfo = docsFileInfoList.stream().filter(fileInfo -> knowledgeBase.getDocuments().contains(fileInfo.getFileName())).toList();
-                    addZipEntry(KNOWLEDGE_BASES_DIR + File.separator + knowledgeId + File.separator + AGENT_METADATA_FILE_NAME, JSONUtil.toJsonStr(knowledgeModelMetadataDTO), zipOut);
+                    List<FileInfo> mdFileInfo = context.docsFileInfoList.stream().filter(fileInfo -> knowledgeBase.getDocuments().contains(fileInfo.getFileName())).toList();
+                    context.addText(KNOWLEDGE_BASES_DIR + File.separator + knowledgeId + File.separator + AGENT_METADATA_FILE_NAME, JSONUtil.toJsonStr(knowledgeModelMetadataDTO));
 
                     for (FileInfo fileInfo : mdFileInfo) {
-                        //md文件
-                        addZipEntry(KNOWLEDGE_BASES_DIR + File.separator + knowledgeId + File.separator +
-                                fileInfo.getId() + File.separator + fileInfo.getFileName(), FileUtil.file(fileInfo.getFilePath()), zipOut);
-                        FileDocMetadataDTO metadata = fileInfo.getMetadata();
-                        if (ObjUtil.isNull(metadata)) {
-                            metadata = FileDocMetadataDTO.builder()
-                                    .name(FileUtil.getPrefix(fileInfo.getFileName()))
-                                    .build();
-                        }
-                        // metadata.json
-                        addZipEntry(KNOWLEDGE_BASES_DIR + File.separator + knowledgeId + File.separator +
-                                fileInfo.getId() + File.separator + AGENT_METADATA_FILE_NAME, JSONUtil.toJsonStr(metadata), zipOut);
-                        // images
-                        if (CollUtil.isNotEmpty(fileInfo.getImagesFileIds())) {
-                            String finalKnowledgeId = knowledgeId;
-                            fileInfoService.getByIds(fileInfo.getImagesFileIds()).forEach(imagesFileInfo -> addZipEntry(KNOWLEDGE_BASES_DIR + File.separator + finalKnowledgeId + File.separator +
-                                            fileInfo.getId() + File.separator + KNOWLEDGE_BASES_IMAGES_DIR + File.separator + imagesFileInfo.getFileName(),
-                                    FileUtil.file(imagesFileInfo.getFilePath()), zipOut));
-                        }
+                        String docDir = KNOWLEDGE_BASES_DIR + File.separator + knowledgeId + File.separator + fileInfo.getId() + File.separator;
+                        context.addAsync(() -> exportDocument(docDir, fileInfo));
                     }
                     exportInfoMap.put(knowledgeImportKey, knowledgeId);
                 }
@@ -307,6 +354,35 @@ public class AgentFileUtils {
     }
 
 
+    /**
+     * 准备知识库文档的压缩包条目：md文件、文档元数据及图片
+     *
+     * @param docDir   文档在压缩包中的目录
+     * @param fileInfo 文档文件信息
+     * @return 压缩包条目
+     */
+    private List<ExportEntry> exportDocument(String docDir, FileInfo fileInfo) {
+        List<ExportEntry> entries = new ArrayList<>();
+        //md文件
+        entries.add(ExportEntry.file(docDir + fileInfo.getFileName(), FileUtil.file(fileInfo.getFilePath())));
+        FileDocMetadataDTO metadata = fileInfo.getMetadata();
+        if (ObjUtil.isNull(metadata)) {
+            metadata = FileDocMetadataDTO.builder()
+                    .name(FileUtil.getPrefix(fileInfo.getFileName()))
+                    .build();
+        }
+        // metadata.json
+        entries.add(ExportEntry.text(docDir + AGENT_METADATA_FILE_NAME, JSONUtil.toJsonStr(metadata)));
+        // images
+        if (CollUtil.isNotEmpty(fileInfo.getImagesFileIds())) {
+            fileInfoService.getByIds(fileInfo.getImagesFileIds()).forEach(imagesFileInfo -> entries.add(ExportEntry.file(
+                    docDir + KNOWLEDGE_BASES_IMAGES_DIR + File.separator + imagesFileInfo.getFileName(),
+                    FileUtil.file(imagesFileInfo.getFilePath()))));
+        }
+        return entries;
+    }
+
+
     /**
      * 添加ZIP条目 纯文本文件
      */
@@ -336,93 +412,171 @@ public class AgentFileUtils {
     }
 
 
+    /**
+     * 单次导出的上下文
+     * 导出信息缓存只在当前线程的遍历过程中读写，并行任务只负责准备条目内容，条目按添加顺序写入压缩包
+     */
+    private class ExportContext {
+
+        private final List<FileInfo> toolsFileInfoList;
+        private final List<FileInfo> docsFileInfoList;
+
+        /**
+         * 导出信息缓存，用于模型、知识库、工具的合并
+         */
+        private final Map<String, String> exportInfoMap = new HashMap<>();
+
+        /**
+         * 按写入顺序排列的压缩包条目
+         */
+        private final List<CompletableFuture<List<ExportEntry>>> parts = new ArrayList<>();
+
+        ExportContext(List<FileInfo> toolsFileInfoList, List<FileInfo> docsFileInfoList) {
+            this.toolsFileInfoList = toolsFileInfoList;
+            this.docsFileInfoList = docsFileInfoList;
+        }
+
+        void addText(String name, String content) {
+            parts.add(CompletableFuture.completedFuture(List.of(ExportEntry.text(name, content))));
+        }
+
+        /**
+         * 添加agent的JSON条目，由导出线程池序列化，添加后不能再修改fileAgentDTO
+         */
+        void addJson(String name, FileAgentDTO fileAgentDTO) {
+            addAsync(() -> List.of(ExportEntry.text(name, JSONUtil.toJsonStr(fileAgentDTO))));
+        }
+
+        void addAsync(Supplier<List<ExportEntry>> supplier) {
+            parts.add(CompletableFuture.supplyAsync(supplier, exportExecutor));
+        }
+
+        /**
+         * 按顺序将所有条目写入压缩包
+         */
+        void writeTo(ZipOutputStream zipOut) throws IOException {
+            try {
+                for (CompletableFuture<List<ExportEntry>> part : parts) {
+                    for (ExportEntry entry : await(part)) {
+                        if (ObjUtil.isNotNull(entry.file())) {
+                            addZipEntry(entry.name(), entry.file(), zipOut);
+                        } else {
+                            addZipEntry(entry.name(), entry.content(), zipOut);
+                        }
+                    }
+                }
+            } finally {
+                // 写入失败时取消尚未执行的任务
+                parts.forEach(part -> part.cancel(false));
+            }
+        }
+
+        private List<ExportEntry> await(CompletableFuture<List<ExportEntry>> part) {
+            try {
+                return part.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+    }
+
+
+    /**
+     * 压缩包条目 内容为文本或磁盘文件，磁盘文件在写入时才读取
+     *
+     * @param name    条目名称
+     * @param content 文本内容
+     * @param file    磁盘文件
+     */
+    private record ExportEntry(String name, String content, File file) {
+
+        static ExportEntry text(String name, String content) {
+            return new ExportEntry(name, content, null);
+        }
+
+        static ExportEntry file(String name, File file) {
+            return new ExportEntry(name, null, file);
+        }
+    }
+
+
+    /**
+     * 导入处理
+     * 顺序读取上传的压缩包，每个条目只读取一次：JSON条目解码为文本，工具文稿、知识库文档和图片交由导入线程池写入存储目录，
+     * 文件信息在所有条目写入完成后批量保存，文档元数据和图片关联在保存前直接设置到文件信息中
+     *
+     * @param file agent文件
+     */
     public CreateAgentDTO handleImport(MultipartFile file) {
-        try {
-            // 创建临时文件
-            File tempFile = FileUtil.createTempFile();
-            //缓存读取到的对象
-            HashMap<String, FileModelDTO> fileModelDTOMap = new HashMap<>();
-            HashMap<String, FileToolDTO> fileToolDTOMap = new HashMap<>();
-            HashMap<String, FileAgentDTO> multiAgentHashMap = new HashMap<>();
-            HashMap<String, ImportKnowledgeDTO> knowledgeDTOHashMap = new HashMap<>();
-            AtomicReference<FileAgentDTO> rootAgentDTO = new AtomicReference<>();
-            file.transferTo(tempFile);
-            // 工具文件信息
-            List<FileInfoDTO> toolFileInfoDTOList = new ArrayList<>();
-            List<FileInfoDTO> knowledgeFileInfoDTOList = new ArrayList<>();
-            ZipFile zipFile = new ZipFile(tempFile);
-            ZipUtil.read(zipFile, entry -> {
+        //缓存读取到的对象
+        HashMap<String, FileModelDTO> fileModelDTOMap = new HashMap<>();
+        HashMap<String, FileToolDTO> fileToolDTOMap = new HashMap<>();
+        HashMap<String, FileAgentDTO> multiAgentHashMap = new HashMap<>();
+        HashMap<String, ImportKnowledgeDTO> knowledgeDTOHashMap = new HashMap<>();
+        AtomicReference<FileAgentDTO> rootAgentDTO = new AtomicReference<>();
+        ImportContext context = new ImportContext();
+        try (ZipInputStream zipIn = new ZipInputStream(new BufferedInputStream(file.getInputStream()), StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = zipIn.getNextEntry()) != null) {
                 log.debug("正在解析文件: {}", entry.getName());
-                if (!entry.isDirectory()) {
-                    // 读取ZipEntry中的实际文件内容
-                    String read = IoUtil.readUtf8(ZipUtil.getStream(zipFile, entry));
-                    if ("json".equals(FileUtil.getSuffix(entry.getName()))) {
-                        log.debug("读取文件{},内容: {}", entry.getName(), read);
-                    }
-                    if (StrUtil.contains(entry.getName(), MODELS_DIR)) {
-                        fileModelDTOMap.put(FileUtil.getPrefix(entry.getName()), JSONUtil.toBean(read, FileModelDTO.class));
-                    } else if (StrUtil.contains(entry.getName(), TOOLS_DIR)) {
-                        FileToolDTO fileToolDTO = JSONUtil.toBean(read, FileToolDTO.class);
-                        fileToolDTOMap.put(FileUtil.getPrefix(entry.getName()), fileToolDTO);
-                        // 将schema转换为文件
-                        boolean typeJSON = JSONUtil.isTypeJSON(fileToolDTO.getSchemaStr());
-                        String schemaFileName = fileToolDTO.getName() + (typeJSON ? ".json" : ".yaml");
-                        ZipEntryMultipartFile zipEntryMultipartFile =
-                                new ZipEntryMultipartFile(schemaFileName, new ByteArrayInputStream(fileToolDTO.getSchemaStr().getBytes(StandardCharsets.UTF_8)));
-                        toolFileInfoDTOList.add(fileInfoService.uploadToolFile(zipEntryMultipartFile));
-                    } else if (StrUtil.contains(entry.getName(), KNOWLEDGE_BASES_DIR)) {
-                        // 文件分隔符可能为“/” 或者 “\” 这里需要做兼容
-                        String regex = StrUtil.contains(entry.getName(), "/") ? "/" : "\\\\";
-                        String[] split = entry.getName().split(regex);
-
-                        // 获取知识库id
-                        String knowledgeId = split[1];
-                        ImportKnowledgeDTO importKnowledgeDTO = knowledgeDTOHashMap.getOrDefault(knowledgeId, new ImportKnowledgeDTO());
-                        // 知识库层
-                        if (split.length == 3) {
-                            // 知识库的元数据
-                            if (StrUtil.contains(entry.getName(), AGENT_METADATA_FILE_NAME)) {
-                                FileKnowledgeMetadataDTO fileKnowledgeMetadataDTO = JSONUtil.toBean(read, FileKnowledgeMetadataDTO.class);
-                                importKnowledgeDTO.setMetadata(fileKnowledgeMetadataDTO);
-                            }
-
-                        } else if (split.length >= 4) {
-                            // 文档层
-                            // 获取文档id
-                            String docId = split[2];
-                            Map<String, ImportKnowledgeDTO.ImportDocDTO> document = importKnowledgeDTO.getDocument();
-                            ImportKnowledgeDTO.ImportDocDTO importDocDTO = document.getOrDefault(docId, new ImportKnowledgeDTO.ImportDocDTO());
-
-                            // 文档的元数据
-                            if (StrUtil.contains(entry.getName(), AGENT_METADATA_FILE_NAME)) {
-                                FileDocMetadataDTO fileDocMetadataDTO = JSONUtil.toBean(read, FileDocMetadataDTO.class);
-                                importDocDTO.setMetadata(fileDocMetadataDTO);
-                            } else if (StrUtil.contains(entry.getName(), KNOWLEDGE_BASES_IMAGES_DIR)) {
-                                ZipEntryMultipartFile zipEntryMultipartFile =
-                                        new ZipEntryMultipartFile(FileUtil.getName(entry.getName()), ZipUtil.getStream(zipFile, entry));
-                                FileInfoDTO fileInfoDTO = fileInfoService.uploadImagesFile(zipEntryMultipartFile);
-                                importDocDTO.getImagesFileIds().add(fileInfoDTO.getId());
-                            } else {
-                                ZipEntryMultipartFile zipEntryMultipartFile =
-                                        new ZipEntryMultipartFile(FileUtil.getName(entry.getName()), ZipUtil.getStream(zipFile, entry));
-                                FileInfoDTO fileInfoDTO = fileInfoService.uploadKnowledgeMdFile(zipEntryMultipartFile);
-                                importDocDTO.setMdFileInfo(fileInfoDTO);
-                                knowledgeFileInfoDTOList.add(fileInfoDTO);
-                            }
-                            document.put(docId, importDocDTO);
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (StrUtil.contains(entry.getName(), MODELS_DIR)) {
+                    fileModelDTOMap.put(FileUtil.getPrefix(entry.getName()), JSONUtil.toBean(readJson(entry, zipIn), FileModelDTO.class));
+                } else if (StrUtil.contains(entry.getName(), TOOLS_DIR)) {
+                    FileToolDTO fileToolDTO = JSONUtil.toBean(readJson(entry, zipIn), FileToolDTO.class);
+                    fileToolDTOMap.put(FileUtil.getPrefix(entry.getName()), fileToolDTO);
+                    // 将schema转换为文件
+                    boolean typeJSON = JSONUtil.isTypeJSON(fileToolDTO.getSchemaStr());
+                    String schemaFileName = fileToolDTO.getName() + (typeJSON ? ".json" : ".yaml");
+                    context.writeTool(schemaFileName, fileToolDTO.getSchemaStr().getBytes(StandardCharsets.UTF_8));
+                } else if (StrUtil.contains(entry.getName(), KNOWLEDGE_BASES_DIR)) {
+                    // 文件分隔符可能为“/” 或者 “\” 这里需要做兼容
+                    String regex = StrUtil.contains(entry.getName(), "/") ? "/" : "\\\\";
+                    String[] split = entry.getName().split(regex);
+
+                    // 获取知识库id
+                    String knowledgeId = split[1];
+                    ImportKnowledgeDTO importKnowledgeDTO = knowledgeDTOHashMap.getOrDefault(knowledgeId, new ImportKnowledgeDTO());
+                    // 知识库层
+                    if (split.length == 3) {
+                        // 知识库的元数据
+                        if (StrUtil.contains(entry.getName(), AGENT_METADATA_FILE_NAME)) {
+                            FileKnowledgeMetadataDTO fileKnowledgeMetadataDTO = JSONUtil.toBean(readJson(entry, zipIn), FileKnowledgeMetadataDTO.class);
+                            importKnowledgeDTO.setMetadata(fileKnowledgeMetadataDTO);
                         }
-                        knowledgeDTOHashMap.put(knowledgeId, importKnowledgeDTO);
-                    } else if (StrUtil.contains(entry.getName(), MULTIAGENT_DIR)) {
-                        multiAgentHashMap.put(FileUtil.getPrefix(entry.getName()), JSONUtil.toBean(read, FileAgentDTO.class));
-                    } else {
-                        rootAgentDTO.set(JSONUtil.toBean(read, FileAgentDTO.class));
-                    }
 
+                    } else if (split.length >= 4) {
+                        // 文档层
+                        // 获取文档id
+                        String docId = split[2];
+                        Map<String, ImportKnowledgeDTO.ImportDocDTO> document = importKnowledgeDTO.getDocument();
+                        ImportKnowledgeDTO.ImportDocDTO importDocDTO = document.getOrDefault(docId, new ImportKnowledgeDTO.ImportDocDTO());
+
+                        // 文档的元数据
+                        if (StrUtil.contains(entry.getName(), AGENT_METADATA_FILE_NAME)) {
+                            FileDocMetadataDTO fileDocMetadataDTO = JSONUtil.toBean(readJson(entry, zipIn), FileDocMetadataDTO.class);
+                            importDocDTO.setMetadata(fileDocMetadataDTO);
+                        } else if (StrUtil.contains(entry.getName(), KNOWLEDGE_BASES_IMAGES_DIR)) {
+                            context.writeImage(importDocDTO, FileUtil.getName(entry.getName()), zipIn);
+                        } else {
+                            context.writeDoc(importDocDTO, FileUtil.getName(entry.getName()), zipIn);
+                        }
+                        document.put(docId, importDocDTO);
+                    }
+                    knowledgeDTOHashMap.put(knowledgeId, importKnowledgeDTO);
+                } else if (StrUtil.contains(entry.getName(), MULTIAGENT_DIR)) {
+                    multiAgentHashMap.put(FileUtil.getPrefix(entry.getName()), JSONUtil.toBean(readJson(entry, zipIn), FileAgentDTO.class));
+                } else {
+                    rootAgentDTO.set(JSONUtil.toBean(readJson(entry, zipIn), FileAgentDTO.class));
                 }
-            });
-            FileUtil.del(tempFile);
-            // 保存md文档元数据和图片文件信息
-            updateMdFileInfo(knowledgeDTOHashMap);
+            }
+            // 等待文件写入完成，设置md文档元数据和图片文件信息后批量保存
+            context.save();
 
 
             MdAgentInfoDTO mdAgentInfoDTO = getMdAgentInfoDTO(rootAgentDTO.get(), fileModelDTOMap, fileToolDTOMap, knowledgeDTOHashMap, multiAgentHashMap);
@@ -434,20 +588,144 @@ public class AgentFileUtils {
                     .description(rootAgentDTO.get().getDescription())
                     .platform(PlatformType.LITE_AGENT)// 目前默认LITE_AGENT
                     .mdContent(generate)
-                    .toolFileIdList(toolFileInfoDTOList.stream().map(FileInfoDTO::getId).distinct().toList())
-                    .docsFileIdList(knowledgeFileInfoDTOList.stream().map(FileInfoDTO::getId).distinct().toList())
+                    .toolFileIdList(context.toolFileIds())
+                    .docsFileIdList(context.docFileIds())
                     .build();
         } catch (Exception e) {
+            // 文件信息未保存，释放已写入的文件
+            context.discard();
+            if (e instanceof CompletionException && e.getCause() instanceof Exception cause) {
+                e = cause;
+            }
             log.error("解析ZIP文件失败: ", e);
             throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "解析ZIP文件失败: " + e.getMessage());
         }
     }
 
-    private void updateMdFileInfo(HashMap<String, ImportKnowledgeDTO> knowledgeDTOHashMap) {
-        knowledgeDTOHashMap.values().forEach(importKnowledgeDTO ->
-                importKnowledgeDTO.getDocument().values().forEach(importDocDTO ->
-                        fileInfoService.updateFileDocMetaData(importDocDTO.getMdFileInfo().getId(),
-                                importDocDTO.getMetadata(), importDocDTO.getImagesFileIds())));
+
+    /**
+     * 读取压缩包中当前JSON条目的文本内容
+     */
+    private String readJson(ZipEntry entry, ZipInputStream zipIn) throws IOException {
+        String read = new String(zipIn.readAllBytes(), StandardCharsets.UTF_8);
+        log.debug("读取文件{},内容: {}", entry.getName(), read);
+        return read;
+    }
+
+
+    /**
+     * 单次导入的上下文
+     * 压缩包只能由当前线程顺序读取，较小的条目读入内存后交由导入线程池写入，较大的条目由当前线程直接写入。
+     * 写入结果按条目顺序记录，生成的文件id列表与压缩包中的条目顺序一致，不受写入完成先后影响
+     */
+    private class ImportContext {
+
+        /**
+         * 按条目顺序排列的全部写入任务
+         */
+        private final List<CompletableFuture<FileInfo>> writes = new ArrayList<>();
+
+        private final List<CompletableFuture<FileInfo>> toolWrites = new ArrayList<>();
+
+        private final List<CompletableFuture<FileInfo>> docWrites = new ArrayList<>();
+
+        /**
+         * 文档 -> md文件写入任务，文档对象在读取过程中会被修改，按引用区分
+         */
+        private final Map<ImportKnowledgeDTO.ImportDocDTO, CompletableFuture<FileInfo>> mdWrites = new IdentityHashMap<>();
+
+        /**
+         * 文档 -> 图片文件写入任务
+         */
+        private final Map<ImportKnowledgeDTO.ImportDocDTO, List<CompletableFuture<FileInfo>>> imageWrites = new IdentityHashMap<>();
+
+        void writeTool(String fileName, byte[] content) {
+            toolWrites.add(submit(() -> fileInfoService.writeToolFile(fileName, new ByteArrayInputStream(content))));
+        }
+
+        void writeDoc(ImportKnowledgeDTO.ImportDocDTO importDocDTO, String fileName, ZipInputStream zipIn) throws IOException {
+            CompletableFuture<FileInfo> write = write(zipIn, in -> fileInfoService.writeKnowledgeMdFile(fileName, in));
+            mdWrites.put(importDocDTO, write);
+            docWrites.add(write);
+        }
+
+        void writeImage(ImportKnowledgeDTO.ImportDocDTO importDocDTO, String fileName, ZipInputStream zipIn) throws IOException {
+            CompletableFuture<FileInfo> write = write(zipIn, in -> fileInfoService.writeImagesFile(fileName, in));
+            imageWrites.computeIfAbsent(importDocDTO, k -> new ArrayList<>()).add(write);
+        }
+
+        /**
+         * 写入当前条目，不超过缓冲大小的条目读入内存后异步写入，否则由当前线程边读边写
+         */
+        private CompletableFuture<FileInfo> write(ZipInputStream zipIn, Function<InputStream, FileInfo> writer) throws IOException {
+            int bufferSize = (int) importProperties.getBufferSize().toBytes();
+            byte[] head = zipIn.readNBytes(bufferSize + 1);
+            if (head.length <= bufferSize) {
+                return submit(() -> writer.apply(new ByteArrayInputStream(head)));
+            }
+            FileInfo fileInfo = writer.apply(new SequenceInputStream(new ByteArrayInputStream(head), unclosable(zipIn)));
+            CompletableFuture<FileInfo> write = CompletableFuture.completedFuture(fileInfo);
+            writes.add(write);
+            return write;
+        }
+
+        private CompletableFuture<FileInfo> submit(Supplier<FileInfo> supplier) {
+            CompletableFuture<FileInfo> write = CompletableFuture.supplyAsync(supplier, importExecutor);
+            writes.add(write);
+            return write;
+        }
+
+        /**
+         * 等待全部写入完成，将文档元数据和图片关联设置到md文件信息后批量保存
+         */
+        void save() {
+            CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).join();
+            mdWrites.forEach((importDocDTO, write) -> {
+                FileInfo mdFileInfo = write.join();
+                List<String> imagesFileIds = imageWrites.getOrDefault(importDocDTO, List.of()).stream()
+                        .map(image -> image.join().getId())
+                        .toList();
+                importDocDTO.getImagesFileIds().addAll(imagesFileIds);
+                mdFileInfo.setMetadata(importDocDTO.getMetadata());
+                mdFileInfo.setImagesFileIds(importDocDTO.getImagesFileIds());
+                importDocDTO.setMdFileInfo(BeanUtil.copyProperties(mdFileInfo, FileInfoDTO.class));
+            });
+            fileInfoService.saveFileInfoBatch(writes.stream().map(CompletableFuture::join).toList());
+        }
+
+        List<String> toolFileIds() {
+            return toolWrites.stream().map(write -> write.join().getId()).distinct().toList();
+        }
+
+        List<String> docFileIds() {
+            return docWrites.stream().map(write -> write.join().getId()).distinct().toList();
+        }
+
+        /**
+         * 导入失败时取消未执行的写入，并释放已写入的文件
+         */
+        void discard() {
+            writes.forEach(write -> write.cancel(false));
+            writes.forEach(write -> {
+                try {
+                    fileInfoService.discardFile(write.join());
+                } catch (CancellationException | CompletionException e) {
+                    // 未执行或写入失败的任务没有需要删除的文件
+                }
+            });
+        }
+    }
+
+
+    /**
+     * 包装输入流，忽略关闭操作，避免关闭压缩包输入流
+     */
+    private static InputStream unclosable(InputStream inputStream) {
+        return new FilterInputStream(inputStream) {
+            @Override
+            public void close() {
+            }
+        };
     }
 
 
@@ -587,13 +865,6 @@ public class AgentFileUtils {
     }
 
 
-    /**
-     * 复制文件
-     */
-    public String copyFile(String fileId) {
-        return fileInfoService.copyFile(fileId);
-    }
-
     /**
      * 删除文件
      */
@@ -0,0 +1,339 @@
+package com.litevar.ihub.file;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.litevar.ihub.common.core.config.IHubUploadFileProperties;
+import com.litevar.ihub.common.core.utils.RedisUtils;
+import com.litevar.ihub.common.web.exception.BusinessException;
+import com.litevar.ihub.common.web.exception.ErrorCode;
+import com.litevar.ihub.file.dto.ChunkUploadDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.stream.Stream;
+
+import static com.litevar.ihub.common.core.constant.CacheConstants.IHUB_CHUNK_UPLOAD_KEY;
+import static com.litevar.ihub.common.core.constant.CacheConstants.IHUB_CHUNK_UPLOAD_LOCK_KEY;
+import static com.litevar.ihub.file.constant.DirConstants.CHUNKS_DIR;
+
+/**
+ * 分片上传处理
+ * <p>
+ * 分片按顺序追加写入上传目录下的临时文件，写入时同时计算md5和sha256，每个分片只经过固定大小的缓冲区，不在内存中缓存文件内容。
+ * md5用于校验客户端上传的内容，sha256作为转换缓存的key返回给调用方，完成上传时不再重新读取文件。
+ * 已上传大小以磁盘上的文件大小为准，上传中断后客户端查询会话获取偏移量继续上传。
+ * 摘要计算状态只缓存在当前节点，并记录已计算的长度，缓存丢失(如重启)或与文件大小不一致(如分片写入了其他节点)时从已上传的文件重新计算。
+ *
+ * @author Teoan
+ * @since 2025/11/28 14:30
+ */
+@Slf4j
+@Component
+public class ChunkUploadHandler {
+
+    private static final String PART_FILE_SUFFIX = ".part";
+
+    private final IHubUploadFileProperties iHubUploadFileProperties;
+
+    /**
+     * 上传ID -> 已上传内容的摘要计算状态
+     */
+    private final LRUCache<String, PartDigest> digests;
+
+
+    public ChunkUploadHandler(IHubUploadFileProperties iHubUploadFileProperties) {
+        this.iHubUploadFileProperties = iHubUploadFileProperties;
+        this.digests = CacheUtil.newLRUCache(1000, iHubUploadFileProperties.getChunkSessionTtl().toMillis());
+    }
+
+
+    /**
+     * 创建分片上传
+     *
+     * @param fileName 文件名
+     * @param fileSize 文件大小
+     * @param userId   上传用户ID
+     * @return 上传会话
+     */
+    public ChunkUploadDTO init(String fileName, long fileSize, String userId) {
+        String uploadId = IdUtil.getSnowflakeNextIdStr();
+        Path partPath = partPath(uploadId);
+        try {
+            Files.createDirectories(partPath.getParent());
+            Files.createFile(partPath);
+        } catch (IOException e) {
+            log.error("创建分片上传文件失败: {}", partPath, e);
+            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "创建分片上传失败: " + e.getMessage());
+        }
+        ChunkUploadDTO session = ChunkUploadDTO.builder()
+                .uploadId(uploadId)
+                .fileName(fileName)
+                .fileSize(fileSize)
+                .offset(0L)
+                .userId(userId)
+                .build();
+        saveSession(session);
+        return session;
+    }
+
+
+    /**
+     * 获取上传会话
+     *
+     * @param uploadId 上传ID
+     * @param userId   上传用户ID
+     * @return 上传会话
+     */
+    public ChunkUploadDTO get(String uploadId, String userId) {
+        ChunkUploadDTO session = RedisUtils.get(StrUtil.format(IHUB_CHUNK_UPLOAD_KEY, uploadId), ChunkUploadDTO.class);
+        if (ObjUtil.isNull(session) || !StrUtil.equals(session.getUserId(), userId)) {
+            throw new BusinessException(ErrorCode.NOT_FOUND, "上传不存在或已过期");
+        }
+        return session;
+    }
+
+
+    /**
+     * 追加写入分片
+     *
+     * @param uploadId    上传ID
+     * @param userId      上传用户ID
+     * @param offset      分片在文件中的起始位置，必须等于已上传大小
+     * @param inputStream 分片内容
+     * @return 写入后的上传会话
+     */
+    public ChunkUploadDTO write(String uploadId, String userId, long offset, InputStream inputStream) {
+        ChunkUploadDTO session = get(uploadId, userId);
+        RLock lock = lock(uploadId);
+        try {
+            Path partPath = partPath(uploadId);
+            long uploaded = Files.size(partPath);
+            if (offset != uploaded) {
+                throw new BusinessException(ErrorCode.UPLOAD_OFFSET_MISMATCH,
+                        StrUtil.format("分片偏移量{}与已上传大小{}不一致", offset, uploaded));
+            }
+            PartDigest partDigest = digest(uploadId, partPath, uploaded);
+            long remaining = session.getFileSize() - uploaded;
+            try (OutputStream out = new DigestOutputStream(new DigestOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(partPath, StandardOpenOption.APPEND)), partDigest.md5), partDigest.sha256)) {
+                byte[] buffer = new byte[IoUtil.DEFAULT_BUFFER_SIZE];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    if (read > remaining) {
+                        throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "上传内容超过文件大小");
+                    }
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+                partDigest.length = session.getFileSize() - remaining;
+            } catch (IOException | RuntimeException e) {
+                // 写入中断时已写入的内容保留，摘要计算状态可能与文件不一致，下次从文件重新计算
+                digests.remove(uploadId);
+                throw e;
+            } finally {
+                session.setOffset(Files.size(partPath));
+                saveSession(session);
+            }
+            return session;
+        } catch (IOException e) {
+            log.error("写入分片失败: uploadId={}", uploadId, e);
+            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "写入分片失败: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * 完成分片上传
+     *
+     * @param uploadId 上传ID
+     * @param userId   上传用户ID
+     * @param md5      客户端计算的文件md5，为空时不校验
+     * @return 合并后的文件及其sha256，文件名保留原扩展名，由调用方处理后删除
+     */
+    public CompletedUpload complete(String uploadId, String userId, String md5) {
+        ChunkUploadDTO session = get(uploadId, userId);
+        RLock lock = lock(uploadId);
+        try {
+            Path partPath = partPath(uploadId);
+            long uploaded = Files.size(partPath);
+            if (uploaded != session.getFileSize()) {
+                throw new BusinessException(ErrorCode.UPLOAD_OFFSET_MISMATCH,
+                        StrUtil.format("文件未上传完成, 已上传大小{}", uploaded));
+            }
+            // 在副本上完成计算，digest()会重置计算状态
+            PartDigest partDigest = digest(uploadId, partPath, uploaded);
+            String actualMd5 = HexUtil.encodeHexStr(copy(partDigest.md5).digest());
+            if (StrUtil.isNotBlank(md5) && !StrUtil.equalsIgnoreCase(md5, actualMd5)) {
+                remove(uploadId);
+                throw new BusinessException(ErrorCode.DATA_VERIFICATION_FAILED, "文件md5校验失败，请重新上传");
+            }
+            Path filePath = partPath.resolveSibling(uploadId + "." + FileUtil.extName(session.getFileName()));
+            Files.move(partPath, filePath, StandardCopyOption.REPLACE_EXISTING);
+            RedisUtils.delete(StrUtil.format(IHUB_CHUNK_UPLOAD_KEY, uploadId));
+            digests.remove(uploadId);
+            return new CompletedUpload(filePath, HexUtil.encodeHexStr(copy(partDigest.sha256).digest()));
+        } catch (IOException e) {
+            log.error("合并分片失败: uploadId={}", uploadId, e);
+            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "合并分片失败: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * 取消分片上传
+     *
+     * @param uploadId 上传ID
+     * @param userId   上传用户ID
+     */
+    public void abort(String uploadId, String userId) {
+        get(uploadId, userId);
+        RLock lock = lock(uploadId);
+        try {
+            remove(uploadId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * 定时清理会话已过期的分片文件
+     */
+    @Scheduled(fixedDelayString = "1h")
+    public void cleanExpired() {
+        Path chunksDir = chunksDir();
+        if (!Files.isDirectory(chunksDir)) {
+            return;
+        }
+        long expireBefore = System.currentTimeMillis() - iHubUploadFileProperties.getChunkSessionTtl().toMillis();
+        try (Stream<Path> paths = Files.list(chunksDir)) {
+            paths.filter(path -> path.getFileName().toString().endsWith(PART_FILE_SUFFIX))
+                    .filter(path -> FileUtil.lastModifiedTime(path.toFile()).getTime() < expireBefore)
+                    .forEach(path -> {
+                        FileUtil.del(path);
+                        log.debug("清理过期的分片文件: {}", path);
+                    });
+        } catch (IOException e) {
+            log.warn("清理过期的分片文件失败", e);
+        }
+    }
+
+
+    private void remove(String uploadId) {
+        FileUtil.del(partPath(uploadId));
+        RedisUtils.delete(StrUtil.format(IHUB_CHUNK_UPLOAD_KEY, uploadId));
+        digests.remove(uploadId);
+    }
+
+
+    private void saveSession(ChunkUploadDTO session) {
+        RedisUtils.set(StrUtil.format(IHUB_CHUNK_UPLOAD_KEY, session.getUploadId()), session,
+                iHubUploadFileProperties.getChunkSessionTtl());
+    }
+
+
+    /**
+     * 同一上传同时只允许一个请求写入
+     */
+    private RLock lock(String uploadId) {
+        RLock lock = RedisUtils.getLock(StrUtil.format(IHUB_CHUNK_UPLOAD_LOCK_KEY, uploadId));
+        if (!lock.tryLock()) {
+            throw new BusinessException(ErrorCode.UPLOAD_OFFSET_MISMATCH, "该文件正在上传其他分片");
+        }
+        return lock;
+    }
+
+
+    /**
+     * 获取已上传内容的摘要计算状态，未缓存或已计算长度与已上传大小不一致时读取已上传的文件重新计算
+     */
+    private PartDigest digest(String uploadId, Path partPath, long uploaded) throws IOException {
+        PartDigest partDigest = digests.get(uploadId, false);
+        if (ObjUtil.isNotNull(partDigest) && partDigest.length == uploaded) {
+            return partDigest;
+        }
+        MessageDigest md5 = DigestUtil.digester(DigestAlgorithm.MD5).getDigest();
+        MessageDigest sha256 = DigestUtil.digester(DigestAlgorithm.SHA256).getDigest();
+        long length;
+        try (InputStream in = new DigestInputStream(new DigestInputStream(Files.newInputStream(partPath), md5), sha256)) {
+            length = IoUtil.copy(in, OutputStream.nullOutputStream());
+        }
+        partDigest = new PartDigest(md5, sha256, length);
+        digests.put(uploadId, partDigest);
+        return partDigest;
+    }
+
+
+    private Path partPath(String uploadId) {
+        return chunksDir().resolve(uploadId + PART_FILE_SUFFIX);
+    }
+
+
+    private Path chunksDir() {
+        return Paths.get(iHubUploadFileProperties.getPath(), CHUNKS_DIR).toAbsolutePath().normalize();
+    }
+
+
+    private static MessageDigest copy(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * 合并后的文件及写入时计算的sha256
+     *
+     * @param path   合并后的文件
+     * @param sha256 文件内容的sha256
+     */
+    public record CompletedUpload(Path path, String sha256) {
+    }
+
+
+    /**
+     * md5、sha256计算状态及已计算的长度
+     */
+    private static class PartDigest {
+
+        private final MessageDigest md5;
+
+        private final MessageDigest sha256;
+
+        private long length;
+
+        PartDigest(MessageDigest md5, MessageDigest sha256, long length) {
+            this.md5 = md5;
+            this.sha256 = sha256;
+            this.length = length;
+        }
+    }
+}
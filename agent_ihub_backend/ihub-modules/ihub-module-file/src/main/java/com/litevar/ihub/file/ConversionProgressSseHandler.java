@@ -0,0 +1,168 @@
+package com.litevar.ihub.file;
+
+import cn.hutool.core.util.ObjUtil;
+import com.litevar.ihub.common.core.config.IHubConversionProperties;
+import com.litevar.ihub.common.core.utils.RedisUtils;
+import com.litevar.ihub.file.dto.ConversionProgressDTO;
+import com.litevar.ihub.file.enums.ConversionJobStatus;
+import com.litevar.ihub.file.service.IFileInfoService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.litevar.ihub.common.core.constant.CacheConstants.IHUB_CONVERSION_PROGRESS_TOPIC;
+
+/**
+ * 知识库文件转换进度推送
+ * <p>
+ * 转换进度和任务状态变化通过redis发布订阅通知所有节点，节点收到后推送给本节点上订阅该文件的连接。
+ * 转换进度直接推送；任务状态变化时查询完整进度后推送，转换结束时推送最终结果并关闭连接。
+ * 心跳时重新查询进度推送，既保持连接，也刷新排队位置并补上发布失败的通知。
+ *
+ * @author Teoan
+ * @since 2025/11/30 10:20
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversionProgressSseHandler {
+
+    private static final String EVENT_NAME = "progress";
+
+    /**
+     * 任务状态，收到这些状态的通知时查询完整进度
+     */
+    private static final Set<String> JOB_STAGES = Set.copyOf(Arrays.stream(ConversionJobStatus.values()).map(Enum::name).toList());
+
+    /**
+     * 转换结束的状态
+     */
+    private static final Set<String> FINISHED_STAGES = Set.of(ConversionJobStatus.DONE.name(),
+            ConversionJobStatus.FAILED.name(), ConversionJobStatus.CANCELLED.name());
+
+    private final IFileInfoService fileInfoService;
+    private final IHubConversionProperties conversionProperties;
+
+    /**
+     * 文件id -> 订阅连接
+     */
+    private final Map<String, Set<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+    private Integer listenerId;
+
+
+    /**
+     * 订阅转换进度通知
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        listenerId = RedisUtils.subscribe(IHUB_CONVERSION_PROGRESS_TOPIC, ConversionProgressDTO.class,
+                (channel, progress) -> onProgress(progress));
+    }
+
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (ObjUtil.isNotNull(listenerId)) {
+            RedisUtils.unsubscribe(IHUB_CONVERSION_PROGRESS_TOPIC, listenerId);
+        }
+        // 客户端收到连接关闭后重新连接到其他节点
+        emitters.values().forEach(set -> set.forEach(SseEmitter::complete));
+        emitters.clear();
+    }
+
+
+    /**
+     * 创建转换进度推送连接，连接建立后先推送当前进度
+     *
+     * @param fileId 转换后的md文件id
+     * @return 推送连接
+     */
+    public SseEmitter connect(String fileId) {
+        SseEmitter emitter = new SseEmitter(conversionProperties.getSseTimeout().toMillis());
+        emitter.onCompletion(() -> remove(fileId, emitter));
+        emitter.onTimeout(() -> remove(fileId, emitter));
+        emitter.onError(e -> remove(fileId, emitter));
+        // 先登记再查询当前进度，查询期间发生的变化由后续通知推送
+        emitters.computeIfAbsent(fileId, key -> ConcurrentHashMap.newKeySet()).add(emitter);
+        pushSnapshot(fileId, List.of(emitter));
+        return emitter;
+    }
+
+
+    /**
+     * 定时推送当前进度
+     */
+    @Scheduled(fixedDelayString = "${agent-ihub.conversion.sse-heartbeat-interval:15s}")
+    public void heartbeat() {
+        emitters.forEach((fileId, set) -> {
+            try {
+                pushSnapshot(fileId, set);
+            } catch (Exception e) {
+                log.warn("推送转换进度失败: fileId={}", fileId, e);
+            }
+        });
+    }
+
+
+    private void onProgress(ConversionProgressDTO progress) {
+        Set<SseEmitter> targets = emitters.get(progress.getFileId());
+        if (ObjUtil.isEmpty(targets)) {
+            return;
+        }
+        if (JOB_STAGES.contains(progress.getStage())) {
+            pushSnapshot(progress.getFileId(), targets);
+        } else {
+            // 转换进度来自执行中的任务，与查询接口一致，结果保存完成前不推送100
+            push(progress.getFileId(), targets, MarkdownConversionHandler.clampRunningProgress(progress), false);
+        }
+    }
+
+
+    private void pushSnapshot(String fileId, Collection<SseEmitter> targets) {
+        ConversionProgressDTO progress = fileInfoService.getConversionProgress(fileId);
+        progress.setFileId(fileId);
+        // 未通过转换任务执行的旧记录以进度100作为结束
+        boolean finished = FINISHED_STAGES.contains(progress.getStage())
+                || (ObjUtil.isNotNull(progress.getFileInfoDTO()) && progress.getProgress() >= 100.0);
+        push(fileId, targets, progress, finished);
+    }
+
+
+    private void push(String fileId, Collection<SseEmitter> targets, ConversionProgressDTO progress, boolean finished) {
+        for (SseEmitter emitter : targets) {
+            try {
+                emitter.send(SseEmitter.event().name(EVENT_NAME).data(progress, MediaType.APPLICATION_JSON));
+                if (finished) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开
+                log.debug("转换进度推送连接已断开: fileId={}", fileId);
+                remove(fileId, emitter);
+            }
+        }
+    }
+
+
+    private void remove(String fileId, SseEmitter emitter) {
+        emitters.computeIfPresent(fileId, (key, set) -> {
+            set.remove(emitter);
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
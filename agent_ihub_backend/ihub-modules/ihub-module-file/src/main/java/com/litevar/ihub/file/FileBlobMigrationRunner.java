@@ -0,0 +1,142 @@
+package com.litevar.ihub.file;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.litevar.ihub.file.entity.FileInfo;
+import com.litevar.ihub.file.service.IFileBlobService;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import com.mongoplus.mapper.BaseMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants.ID;
+import static com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants.LOGIC_DEL;
+import static com.litevar.ihub.file.constant.DirConstants.KNOWLEDGE_BASES_IMAGES_DIR;
+
+/**
+ * 旧文件迁移
+ * <p>
+ * 将未记录文件内容sha256的文件信息(按雪花id独占保存的旧文件)迁移到按内容寻址的存储目录，相同内容的旧文件只保留一份。
+ * 按id顺序分批处理，可重复执行，已迁移的记录不会再次处理。只迁移未删除的文件信息。
+ * 先复制旧文件再保存文件内容，文件信息更新成功后才删除旧文件，更新失败时释放文件内容，旧文件保持可用。
+ *
+ * @author Teoan
+ * @since 2025/11/27 16:45
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "agent-ihub.upload-file", name = "migrate-blobs", havingValue = "true")
+public class FileBlobMigrationRunner implements ApplicationRunner {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String FILE_PATH_FIELD = "file_path";
+
+    private static final String MD5_FIELD = "md5";
+
+    private static final String BLOB_HASH_FIELD = "blob_hash";
+
+    private static final String IMAGE_NAME_FIELD = "image_name";
+
+    private final BaseMapper baseMapper;
+    private final IFileBlobService fileBlobService;
+
+
+    @Override
+    public void run(ApplicationArguments args) {
+        MongoCollection<Document> collection = baseMapper.getMongoPlusClient().getCollection(FileInfo.class);
+        long migrated = 0;
+        long missing = 0;
+        long failed = 0;
+        long reclaimedBytes = 0;
+        String lastId = "";
+        log.info("开始迁移旧文件到按内容寻址的存储目录");
+        while (true) {
+            List<Document> batch = collection.find(Filters.and(Filters.eq(BLOB_HASH_FIELD, null),
+                            Filters.eq(LOGIC_DEL, false), Filters.gt(ID, lastId)))
+                    .projection(Projections.include(FILE_PATH_FIELD, MD5_FIELD))
+                    .sort(Sorts.ascending(ID))
+                    .limit(BATCH_SIZE)
+                    .into(new ArrayList<>());
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (Document fileInfo : batch) {
+                String id = fileInfo.getString(ID);
+                lastId = id;
+                String filePath = fileInfo.getString(FILE_PATH_FIELD);
+                if (StrUtil.isBlank(filePath) || !FileUtil.exist(filePath)) {
+                    missing++;
+                    continue;
+                }
+                try {
+                    File file = new File(filePath);
+                    long fileSize = file.length();
+                    String blobHash = DigestUtil.sha256Hex(file);
+                    String md5 = StrUtil.blankToDefault(fileInfo.getString(MD5_FIELD), DigestUtil.md5Hex(file));
+                    boolean duplicated = Files.exists(fileBlobService.blobPath(blobHash));
+                    Path tempPath = fileBlobService.createTempPath();
+                    try {
+                        Files.copy(file.toPath(), tempPath, StandardCopyOption.REPLACE_EXISTING);
+                    } catch (IOException e) {
+                        FileUtil.del(tempPath);
+                        throw e;
+                    }
+                    String blobPath = fileBlobService.store(tempPath, blobHash, fileSize).toString();
+                    List<Bson> updates = new ArrayList<>(List.of(
+                            Updates.set(FILE_PATH_FIELD, blobPath),
+                            Updates.set(MD5_FIELD, md5),
+                            Updates.set(BLOB_HASH_FIELD, blobHash)));
+                    // 知识库图片按图片目录中的文件名访问，迁移后按该名称查找
+                    if (KNOWLEDGE_BASES_IMAGES_DIR.equals(file.getParentFile().getName())) {
+                        updates.add(Updates.set(IMAGE_NAME_FIELD, file.getName()));
+                    }
+                    boolean updated;
+                    try {
+                        updated = collection.updateOne(Filters.and(Filters.eq(ID, id), Filters.eq(BLOB_HASH_FIELD, null)),
+                                Updates.combine(updates)).getModifiedCount() > 0;
+                    } catch (Exception e) {
+                        fileBlobService.release(blobHash);
+                        throw e;
+                    }
+                    if (!updated) {
+                        // 迁移期间文件信息被删除或已由其他节点迁移
+                        fileBlobService.release(blobHash);
+                        continue;
+                    }
+                    FileUtil.del(file);
+                    migrated++;
+                    if (duplicated) {
+                        reclaimedBytes += fileSize;
+                    }
+                } catch (Exception e) {
+                    failed++;
+                    log.error("迁移文件失败: id={}, filePath={}", id, filePath, e);
+                }
+            }
+            log.info("已迁移文件:{}, 文件缺失:{}, 失败:{}", migrated, missing, failed);
+        }
+        log.info("旧文件迁移完成, 迁移文件:{}, 文件缺失:{}, 失败:{}, 去重释放空间:{}MB",
+                migrated, missing, failed, reclaimedBytes >> 20);
+    }
+}
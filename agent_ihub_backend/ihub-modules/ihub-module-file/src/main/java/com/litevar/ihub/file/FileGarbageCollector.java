@@ -0,0 +1,330 @@
+package com.litevar.ihub.file;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.unit.DataSizeUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.core.util.ObjUtil;
+import com.litevar.ihub.common.core.config.IHubFileGcProperties;
+import com.litevar.ihub.common.core.config.IHubUploadFileProperties;
+import com.litevar.ihub.common.core.utils.RedisUtils;
+import com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants;
+import com.litevar.ihub.file.entity.ConversionJob;
+import com.litevar.ihub.file.entity.FileInfo;
+import com.litevar.ihub.file.enums.ConversionJobStatus;
+import com.litevar.ihub.file.service.IConversionJobService;
+import com.litevar.ihub.file.service.IFileInfoService;
+import com.litevar.ihub.file.service.IFileReferenceService;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import com.mongoplus.mapper.BaseMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static com.litevar.ihub.common.core.constant.CacheConstants.IHUB_FILE_GC_LOCK_KEY;
+import static com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants.ID;
+import static com.litevar.ihub.file.constant.DirConstants.BLOBS_DIR;
+import static com.litevar.ihub.file.constant.DirConstants.BLOBS_TEMP_DIR;
+import static com.litevar.ihub.file.constant.DirConstants.CONVERSIONS_DIR;
+
+/**
+ * 无引用文件清理
+ * <p>
+ * 先标记被引用的文件：未删除agent的工具及文档文件、用户头像，以及被引用或仍在保留期内的文档所引用的图片；
+ * 再分批删除上传时间早于保留期且未被标记的文件信息，并释放其文件内容。每批删除前重新查询引用，
+ * 标记后新建的引用(如fork agent、修改共享文档)不会被误删。同时清理写入中断残留的临时文件和没有对应转换任务的待转换文件。
+ * 多个节点中同时只有一个节点执行清理。清理在独立线程中执行，不占用定时任务线程，避免阻塞转换任务续期等其他定时任务。
+ *
+ * @author Teoan
+ * @since 2025/11/30 15:10
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FileGarbageCollector {
+
+    private static final String UPLOAD_TIME_FIELD = "upload_time";
+
+    private static final String IMAGES_FILE_IDS_FIELD = "images_file_ids";
+
+    private final IHubFileGcProperties fileGcProperties;
+    private final IHubUploadFileProperties iHubUploadFileProperties;
+    private final IFileInfoService fileInfoService;
+    private final IFileReferenceService fileReferenceService;
+    private final IConversionJobService conversionJobService;
+    private final BaseMapper baseMapper;
+
+    /**
+     * 当前节点是否在清理中
+     */
+    private final AtomicBoolean collecting = new AtomicBoolean();
+
+    private ExecutorService executor;
+
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadExecutor(ThreadUtil.newNamedThreadFactory("file-gc-", true));
+    }
+
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+
+    /**
+     * 定时提交清理任务，当前节点上次清理未完成或已有其他节点在清理时跳过
+     */
+    @Scheduled(initialDelayString = "${agent-ihub.file-gc.interval:6h}", fixedDelayString = "${agent-ihub.file-gc.interval:6h}")
+    public void schedule() {
+        if (!BooleanUtil.isTrue(fileGcProperties.getEnabled()) || !collecting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::collectExclusively);
+        } catch (RejectedExecutionException e) {
+            collecting.set(false);
+        }
+    }
+
+
+    /**
+     * 持有分布式锁执行清理，锁与清理在同一线程中获取和释放
+     */
+    private void collectExclusively() {
+        try {
+            if (!RedisUtils.tryLock(IHUB_FILE_GC_LOCK_KEY, 0, TimeUnit.SECONDS)) {
+                return;
+            }
+            try {
+                collect();
+            } finally {
+                RedisUtils.unlock(IHUB_FILE_GC_LOCK_KEY);
+            }
+        } catch (Exception e) {
+            log.error("清理无引用文件失败", e);
+        } finally {
+            collecting.set(false);
+        }
+    }
+
+
+    /**
+     * 清理无引用的文件及残留的临时文件
+     *
+     * @return 清理结果
+     */
+    public GcReport collect() {
+        long start = System.currentTimeMillis();
+        GcReport report = new GcReport();
+        List<String> candidates = findUnreferenced(new Date(start - fileGcProperties.getGracePeriod().toMillis()));
+        sweep(candidates, report);
+        cleanTempFiles(report);
+        log.info("清理无引用文件完成: 删除文件{}个共{}, 回收磁盘空间{}, 删除临时文件{}个共{}, 耗时{}ms",
+                report.files, DataSizeUtil.format(report.releasedBytes), DataSizeUtil.format(report.reclaimedBytes),
+                report.tempFiles, DataSizeUtil.format(report.tempBytes), System.currentTimeMillis() - start);
+        return report;
+    }
+
+
+    /**
+     * 标记被引用的文件，返回上传时间早于保留期且未被引用的文件ID
+     */
+    private List<String> findUnreferenced(Date graceBefore) {
+        Set<String> referenced = new HashSet<>(fileReferenceService.getReferencedFileIds());
+        Set<String> images = new HashSet<>();
+        fileCollection().find(Filters.and(notDeleted(), Filters.exists(IMAGES_FILE_IDS_FIELD + ".0")))
+                .projection(Projections.include(UPLOAD_TIME_FIELD, IMAGES_FILE_IDS_FIELD))
+                .forEach(document -> {
+                    Date uploadTime = document.getDate(UPLOAD_TIME_FIELD);
+                    boolean inGracePeriod = ObjUtil.isNull(uploadTime) || !uploadTime.before(graceBefore);
+                    if (inGracePeriod || referenced.contains(document.getString(ID))) {
+                        CollUtil.addAll(images, document.getList(IMAGES_FILE_IDS_FIELD, String.class));
+                    }
+                });
+        referenced.addAll(images);
+
+        List<String> candidates = new ArrayList<>();
+        fileCollection().find(Filters.and(notDeleted(), Filters.lt(UPLOAD_TIME_FIELD, graceBefore)))
+                .projection(Projections.include(ID))
+                .forEach(document -> {
+                    String fileId = document.getString(ID);
+                    if (!referenced.contains(fileId)) {
+                        candidates.add(fileId);
+                    }
+                });
+        return candidates;
+    }
+
+
+    /**
+     * 分批删除未被引用的文件，每批删除前重新查询引用
+     */
+    private void sweep(List<String> candidates, GcReport report) {
+        Set<String> candidateSet = new HashSet<>(candidates);
+        List<List<String>> batches = CollUtil.split(candidates, fileGcProperties.getBatchSize());
+        for (int i = 0; i < batches.size(); i++) {
+            // 停机时中断清理，剩余的文件下次再清理
+            if (i > 0 && !ThreadUtil.sleep(fileGcProperties.getBatchInterval().toMillis())) {
+                log.info("清理无引用文件被中断，剩余{}批下次清理", batches.size() - i);
+                return;
+            }
+            List<String> batch = batches.get(i);
+            Set<String> referenced = new HashSet<>(fileReferenceService.filterReferenced(batch));
+            referenced.addAll(findLiveImages(batch, candidateSet));
+            List<String> removable = batch.stream().filter(fileId -> !referenced.contains(fileId)).toList();
+            if (removable.isEmpty()) {
+                continue;
+            }
+            for (FileInfo fileInfo : fileInfoService.getByIds(removable)) {
+                // 清理线程没有登录上下文，直接更新删除标记，不经过自动填充；已被其他请求删除的文件不重复释放
+                if (fileCollection().updateOne(Filters.and(Filters.eq(ID, fileInfo.getId()), notDeleted()),
+                        Updates.set(MongoFieldConstants.LOGIC_DEL, true)).getModifiedCount() == 0) {
+                    continue;
+                }
+                long fileSize = ObjUtil.defaultIfNull(fileInfo.getFileSize(), 0L);
+                report.files++;
+                report.releasedBytes += fileSize;
+                // 文件内容仍被其他文件信息或转换缓存引用时不计入回收空间
+                if (fileInfoService.discardFile(fileInfo)) {
+                    report.reclaimedBytes += fileSize;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 获取仍被文档引用的图片，引用这些图片的文档不在待删除文件中或已被重新引用
+     */
+    private Set<String> findLiveImages(List<String> imageIds, Set<String> candidateSet) {
+        Map<String, List<String>> documents = new HashMap<>();
+        fileCollection().find(Filters.and(notDeleted(), Filters.in(IMAGES_FILE_IDS_FIELD, imageIds)))
+                .projection(Projections.include(IMAGES_FILE_IDS_FIELD))
+                .forEach(document -> documents.put(document.getString(ID),
+                        document.getList(IMAGES_FILE_IDS_FIELD, String.class)));
+        Set<String> liveDocuments = new HashSet<>(fileReferenceService.filterReferenced(
+                documents.keySet().stream().filter(candidateSet::contains).toList()));
+        documents.keySet().stream().filter(documentId -> !candidateSet.contains(documentId)).forEach(liveDocuments::add);
+        Set<String> images = new HashSet<>();
+        liveDocuments.forEach(documentId -> CollUtil.addAll(images, documents.get(documentId)));
+        return images;
+    }
+
+
+    /**
+     * 清理写入中断残留的临时文件，以及提交转换任务前中断或任务已结束的待转换文件
+     */
+    private void cleanTempFiles(GcReport report) {
+        long expireAt = System.currentTimeMillis() - fileGcProperties.getTempRetention().toMillis();
+        Path uploadPath = Paths.get(iHubUploadFileProperties.getPath()).toAbsolutePath().normalize();
+        cleanDir(uploadPath.resolve(BLOBS_DIR).resolve(BLOBS_TEMP_DIR), expireAt, path -> false, report);
+        cleanDir(uploadPath.resolve(CONVERSIONS_DIR), expireAt, this::isConversionPending, report);
+    }
+
+
+    private boolean isConversionPending(Path source) {
+        ConversionJob job = conversionJobService.getById(FileUtil.getPrefix(source.toFile()));
+        return ObjUtil.isNotNull(job)
+                && (job.getStatus() == ConversionJobStatus.QUEUED || job.getStatus() == ConversionJobStatus.RUNNING);
+    }
+
+
+    private void cleanDir(Path dir, long expireAt, Predicate<Path> keep, GcReport report) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.list(dir)) {
+            paths.filter(Files::isRegularFile).forEach(path -> {
+                try {
+                    long size = Files.size(path);
+                    if (Files.getLastModifiedTime(path).toMillis() >= expireAt || keep.test(path)) {
+                        return;
+                    }
+                    if (Files.deleteIfExists(path)) {
+                        report.tempFiles++;
+                        report.tempBytes += size;
+                    }
+                } catch (IOException e) {
+                    // 文件已被删除
+                }
+            });
+        } catch (IOException e) {
+            log.warn("读取临时文件目录失败: {}", dir, e);
+        }
+    }
+
+
+    private Bson notDeleted() {
+        return Filters.eq(MongoFieldConstants.LOGIC_DEL, false);
+    }
+
+
+    private MongoCollection<Document> fileCollection() {
+        return baseMapper.getMongoPlusClient().getCollection(FileInfo.class);
+    }
+
+
+    /**
+     * 清理结果
+     */
+    @Getter
+    public static class GcReport {
+
+        /**
+         * 删除的文件信息数
+         */
+        private long files;
+
+        /**
+         * 删除的文件信息的文件大小合计
+         */
+        private long releasedBytes;
+
+        /**
+         * 从磁盘删除的文件内容大小，文件内容仍被其他文件信息或转换缓存引用时不计入
+         */
+        private long reclaimedBytes;
+
+        /**
+         * 删除的临时文件数
+         */
+        private long tempFiles;
+
+        /**
+         * 删除的临时文件大小合计
+         */
+        private long tempBytes;
+    }
+}
@@ -0,0 +1,236 @@
+package com.litevar.ihub.file;
+
+import cn.hutool.core.util.StrUtil;
+import com.litevar.ihub.common.core.config.IHubImageProperties;
+import com.litevar.ihub.common.core.utils.DiskLruCache;
+import com.litevar.ihub.common.web.exception.BusinessException;
+import com.litevar.ihub.common.web.exception.ErrorCode;
+import com.litevar.ihub.common.web.exception.ServerBusyException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片缩略图处理
+ * <p>
+ * 缩略图在首次请求时生成，按原图md5、尺寸和格式缓存在磁盘上，原图内容变更后md5随之变化，旧缓存不会再被命中，
+ * 由磁盘空间上限按最近访问时间淘汰。解码和缩放占用较多内存和CPU，同时生成的缩略图数量受并发上限限制，超出时等待，等待超时返回服务繁忙。
+ * 缩略图只写入像素数据，原图的EXIF等元数据不会保留。webp需运行环境提供ImageIO的webp编码器，未提供时使用原图对应的格式。
+ *
+ * @author Teoan
+ * @since 2025/11/28 16:20
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageDerivativeHandler {
+
+    public static final String FORMAT_WEBP = "webp";
+
+    public static final String FORMAT_JPEG = "jpeg";
+
+    public static final String FORMAT_PNG = "png";
+
+    private static final long RETRY_AFTER_SECONDS = 5;
+
+    private final IHubImageProperties imageProperties;
+
+    private DiskLruCache cache;
+
+    /**
+     * 限制同时生成的缩略图数量
+     */
+    private Semaphore permits;
+
+    private boolean webpSupported;
+
+
+    @PostConstruct
+    public void init() {
+        webpSupported = ImageIO.getImageWritersByFormatName(FORMAT_WEBP).hasNext();
+        cache = new DiskLruCache("缩略图缓存", Path.of(imageProperties.getCachePath()), "",
+                () -> imageProperties.getCacheMaxSize().toBytes());
+        permits = new Semaphore(imageProperties.getMaxConcurrency());
+        log.info("图片缩略图缓存已占用{}MB, webp编码{}", cache.size() >> 20, webpSupported ? "可用" : "不可用");
+    }
+
+
+    /**
+     * 是否为允许生成的缩略图尺寸
+     */
+    public boolean isSupportedSize(int size) {
+        return imageProperties.getSizes().contains(size);
+    }
+
+
+    /**
+     * 确定缩略图格式
+     * 未指定格式或webp不可用时，带透明通道的png、gif生成png，其余生成jpeg
+     *
+     * @param format     请求的格式
+     * @param sourceType 原图扩展名
+     * @return 缩略图格式
+     */
+    public String resolveFormat(String format, String sourceType) {
+        String requested = StrUtil.nullToEmpty(format).toLowerCase();
+        switch (requested) {
+            case FORMAT_WEBP:
+                if (webpSupported) {
+                    return FORMAT_WEBP;
+                }
+                break;
+            case "jpg", FORMAT_JPEG:
+                return FORMAT_JPEG;
+            case FORMAT_PNG:
+                return FORMAT_PNG;
+            case "":
+                break;
+            default:
+                throw new BusinessException(ErrorCode.INVALID_FILE_FORMAT, "不支持的缩略图格式: " + format);
+        }
+        return StrUtil.equalsAnyIgnoreCase(sourceType, FORMAT_PNG, "gif") ? FORMAT_PNG : FORMAT_JPEG;
+    }
+
+
+    /**
+     * 获取缩略图，未缓存时生成
+     *
+     * @param source    原图
+     * @param sourceMd5 原图md5
+     * @param size      缩略图最长边像素
+     * @param format    缩略图格式
+     * @return 缩略图文件
+     */
+    public Path getOrCreate(Path source, String sourceMd5, int size, String format) throws IOException {
+        String cacheKey = sourceMd5 + "-" + size + "." + format;
+        return cache.getOrCreate(cacheKey, target -> {
+            acquire();
+            try {
+                write(scale(read(source, size), size, !FORMAT_JPEG.equals(format)), format, target);
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+
+    /**
+     * 获取生成缩略图的名额，等待超时返回服务繁忙
+     */
+    private void acquire() {
+        try {
+            if (!permits.tryAcquire(imageProperties.getAcquireTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new ServerBusyException("生成缩略图的请求较多，请稍后重试", RETRY_AFTER_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServerBusyException("生成缩略图的请求较多，请稍后重试", RETRY_AFTER_SECONDS);
+        }
+    }
+
+
+    /**
+     * 读取原图，原图远大于缩略图时按间隔采样读取，减少解码后的内存占用
+     */
+    private BufferedImage read(Path source, int size) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new BusinessException(ErrorCode.INVALID_FILE_FORMAT, "不支持的图片格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                // 忽略元数据，缩略图不保留EXIF等信息
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > imageProperties.getMaxSourcePixels()) {
+                    throw new BusinessException(ErrorCode.INVALID_FILE_FORMAT, "图片尺寸过大，无法生成缩略图");
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / (size * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+
+    /**
+     * 等比缩放到最长边不超过size，小图不放大；逐次减半缩放，避免一次缩放过多产生锯齿
+     */
+    private BufferedImage scale(BufferedImage image, int size, boolean keepAlpha) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double ratio = Math.min(1.0, (double) size / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+        boolean alpha = keepAlpha && image.getColorModel().hasAlpha();
+        BufferedImage current = image;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                if (!alpha) {
+                    // 不保留透明通道时透明区域填充白色，避免变为黑色
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, width, height);
+                }
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+
+    private void write(BufferedImage image, String format, Path target) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new BusinessException(ErrorCode.INVALID_FILE_FORMAT, "不支持的缩略图格式: " + format);
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (!FORMAT_PNG.equals(format) && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(imageProperties.getQuality());
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
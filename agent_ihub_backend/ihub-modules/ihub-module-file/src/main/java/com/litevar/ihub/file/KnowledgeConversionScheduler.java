@@ -0,0 +1,188 @@
+package com.litevar.ihub.file;
+
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.thread.ExecutorBuilder;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ObjUtil;
+import com.litevar.ihub.common.core.config.IHubConversionProperties;
+import com.litevar.ihub.common.satoken.utils.LoginHelper;
+import com.litevar.ihub.file.entity.ConversionJob;
+import com.litevar.ihub.file.enums.ConversionJobStatus;
+import com.litevar.ihub.file.service.IConversionCacheService;
+import com.litevar.ihub.file.service.IConversionJobService;
+import com.litevar.ihub.file.service.IFileInfoService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 知识库文件转换调度
+ * <p>
+ * 转换任务保存在数据库中，各节点按空闲线程数抢占排队中的任务执行，执行期间定时续期租约。
+ * 节点宕机后租约过期的任务由任意节点重新排队；停机时未在等待时间内完成的任务主动交回队列。
+ * 执行中的任务被请求取消后，执行节点在续期时中断执行线程，并丢弃转换结果。
+ * 续期使用独立的线程，不受其他耗时定时任务影响，避免租约被误判过期后任务被其他节点重复执行。
+ *
+ * @author Teoan
+ * @since 2025/11/29 10:20
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KnowledgeConversionScheduler {
+
+    private final IHubConversionProperties conversionProperties;
+    private final IConversionJobService conversionJobService;
+    private final IConversionCacheService conversionCacheService;
+    private final IFileInfoService fileInfoService;
+
+    /**
+     * 当前节点标识
+     */
+    private final String nodeId = NetUtil.getLocalHostName() + ":" + IdUtil.fastSimpleUUID();
+
+    /**
+     * 当前节点抢占的任务id
+     */
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 任务id -> 执行任务的线程
+     */
+    private final Map<String, Thread> threads = new ConcurrentHashMap<>();
+
+    private volatile boolean stopping;
+
+    private ExecutorService executor;
+
+    private ScheduledExecutorService heartbeatScheduler;
+
+
+    @PostConstruct
+    public void init() {
+        executor = ExecutorBuilder.create()
+                .setCorePoolSize(conversionProperties.getWorkers())
+                .setMaxPoolSize(conversionProperties.getWorkers())
+                .setWorkQueue(new LinkedBlockingQueue<>())
+                .setThreadFactory(ThreadUtil.newNamedThreadFactory("knowledge-conversion-", false))
+                .build();
+        long heartbeatInterval = conversionProperties.getHeartbeatInterval().toMillis();
+        heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadUtil.newNamedThreadFactory("knowledge-conversion-heartbeat-", true));
+        heartbeatScheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * 停机时不再抢占新任务，等待执行中的任务完成，超时的任务交回队列由其他节点执行
+     */
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        stopping = true;
+        executor.shutdown();
+        if (!executor.awaitTermination(conversionProperties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("等待知识库文件转换完成超时，未完成的任务重新排队: {}", running);
+            running.forEach(jobId -> conversionJobService.requeue(jobId, nodeId));
+            executor.shutdownNow();
+        }
+        // 等待期间仍需续期，任务全部结束或交回后再停止
+        heartbeatScheduler.shutdownNow();
+    }
+
+
+    /**
+     * 按空闲线程数抢占排队中的任务
+     */
+    @Scheduled(fixedDelayString = "${agent-ihub.conversion.poll-interval:1s}")
+    public void dispatch() {
+        while (!stopping && running.size() < conversionProperties.getWorkers()) {
+            ConversionJob job = conversionJobService.claim(nodeId);
+            if (ObjUtil.isNull(job)) {
+                return;
+            }
+            // 先占用名额再提交，避免下一轮循环超额抢占
+            running.add(job.getId());
+            executor.execute(() -> run(job));
+        }
+    }
+
+
+    /**
+     * 续期执行中任务的租约，并中断已请求取消的任务
+     */
+    public void heartbeat() {
+        if (running.isEmpty()) {
+            return;
+        }
+        // 异常未捕获时后续续期不再执行
+        try {
+            conversionJobService.heartbeat(nodeId, running).forEach(jobId -> {
+                Thread thread = threads.get(jobId);
+                if (ObjUtil.isNotNull(thread)) {
+                    log.info("知识库文件转换已取消，中断执行: jobId={}", jobId);
+                    thread.interrupt();
+                }
+            });
+        } catch (Exception e) {
+            log.error("续期知识库文件转换任务失败: {}", running, e);
+        }
+    }
+
+
+    /**
+     * 恢复租约过期的任务
+     */
+    @Scheduled(fixedDelayString = "${agent-ihub.conversion.lease-ttl:60s}")
+    public void recover() {
+        conversionJobService.recoverExpired();
+    }
+
+
+    /**
+     * 淘汰过期的转换结果缓存
+     */
+    @Scheduled(fixedDelayString = "${agent-ihub.conversion.cache-clean-interval:1h}")
+    public void cleanCache() {
+        conversionCacheService.evictExpired();
+    }
+
+
+    private void run(ConversionJob job) {
+        threads.put(job.getId(), Thread.currentThread());
+        try {
+            // 转换线程没有登录上下文，以上传用户的身份保存文件信息
+            boolean completed = LoginHelper.runAs(job.getUserId(), () -> fileInfoService.runConversion(job));
+            conversionJobService.finish(job.getId(), nodeId,
+                    completed ? ConversionJobStatus.DONE : ConversionJobStatus.CANCELLED, null);
+        } catch (Exception e) {
+            if (stopping) {
+                // 停机中断的任务已交回队列
+                log.info("停机中断知识库文件转换: jobId={}", job.getId());
+            } else if (conversionJobService.isCancelRequested(job.getId())) {
+                log.info("知识库文件转换已取消: jobId={}", job.getId());
+                conversionJobService.finish(job.getId(), nodeId, ConversionJobStatus.CANCELLED, null);
+            } else {
+                log.error("知识库文件转换失败: jobId={}", job.getId(), e);
+                conversionJobService.finish(job.getId(), nodeId, ConversionJobStatus.FAILED, "转换失败: " + e.getMessage());
+            }
+        } finally {
+            threads.remove(job.getId());
+            running.remove(job.getId());
+            // 清除取消时设置的中断状态，避免影响线程执行后续任务
+            Thread.interrupted();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.litevar.ihub.file;
 
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.StrUtil;
+import com.litevar.ihub.common.core.config.IHubConversionProperties;
 import com.litevar.ihub.common.core.utils.RedisUtils;
 import com.litevar.ihub.file.dto.ConversionProgressDTO;
 import com.litevar.liteagent.markdown_conversion.core.ConversionResult;
@@ -15,6 +16,7 @@ import java.nio.file.Path;
 import java.time.Duration;
 
 import static com.litevar.ihub.common.core.constant.CacheConstants.IHUB_CONVERSION_PROGRESS_KEY;
+import static com.litevar.ihub.common.core.constant.CacheConstants.IHUB_CONVERSION_PROGRESS_TOPIC;
 
 /**
  *
@@ -26,22 +28,72 @@ import static com.litevar.ihub.common.core.constant.CacheConstants.IHUB_CONVERSI
 @Slf4j
 public class MarkdownConversionHandler {
 
+    /**
+     * 排队等待转换
+     */
+    public static final String STAGE_QUEUED = "QUEUED";
+
+    /**
+     * 转换已取消
+     */
+    public static final String STAGE_CANCELLED = "CANCELLED";
+
+    /**
+     * 转换失败
+     */
+    public static final String STAGE_FAILED = "FAILED";
+
     private final MarkdownConversionService markdownConversionService;
+    private final IHubConversionProperties conversionProperties;
 
     @SneakyThrows
     public ConversionResult convert(Path path, String fileId, Path outputPath) {
+        ProgressWriter progressWriter = new ProgressWriter(fileId, conversionProperties.getProgressInterval().toMillis());
         return markdownConversionService.convert(path, MarkdownConversionService.Settings.builder()
                 .outputDir(outputPath)
                 .detectScannedPdf(true)
-                .progressListener((progress, stage, detail) ->
-                        RedisUtils.set(StrUtil.format(IHUB_CONVERSION_PROGRESS_KEY, fileId), ConversionProgressDTO.builder()
-                        .detail(detail).progress(progress * 100).stage(stage)
-                        .build(), Duration.ofMinutes(30)))
+                .progressListener((progress, stage, detail) -> progressWriter.write(ConversionProgressDTO.builder()
+                        .fileId(fileId).detail(detail).progress(progress * 100).stage(stage)
+                        .build()))
                 .build());
 
     }
 
 
+    /**
+     * 合并写入转换进度
+     * 转换过程中进度回调频繁，只在阶段变化、转换完成或距上次写入超过间隔时写入redis并发布通知
+     */
+    @RequiredArgsConstructor
+    private static class ProgressWriter {
+
+        private final String fileId;
+
+        private final long interval;
+
+        private String lastStage;
+
+        private long lastWriteTime;
+
+        private void write(ConversionProgressDTO progress) {
+            long now = System.currentTimeMillis();
+            boolean stageChanged = !StrUtil.equals(lastStage, progress.getStage());
+            if (!stageChanged && progress.getProgress() < 100.0 && now - lastWriteTime < interval) {
+                return;
+            }
+            lastStage = progress.getStage();
+            lastWriteTime = now;
+            try {
+                RedisUtils.set(StrUtil.format(IHUB_CONVERSION_PROGRESS_KEY, fileId), progress, Duration.ofMinutes(30));
+                RedisUtils.publish(IHUB_CONVERSION_PROGRESS_TOPIC, progress);
+            } catch (Exception e) {
+                // 进度写入失败不影响转换
+                log.warn("写入转换进度失败: fileId={}", fileId, e);
+            }
+        }
+    }
+
+
     /**
      * 查询转换进度
      */
@@ -55,4 +107,16 @@ public class MarkdownConversionHandler {
     }
 
 
+    /**
+     * 转换完成后还需保存文件信息，保存完成前执行中的进度不返回100
+     */
+    public static ConversionProgressDTO clampRunningProgress(ConversionProgressDTO progress) {
+        if (progress.getProgress() >= 100.0) {
+            progress.setProgress(99.0);
+            progress.setDetail("正在保存转换结果");
+        }
+        return progress;
+    }
+
+
 }
@@ -0,0 +1,37 @@
+package com.litevar.ihub.file.config;
+
+import cn.hutool.core.util.StrUtil;
+import com.litevar.ihub.common.satoken.utils.LoginHelper;
+import com.litevar.ihub.file.service.IConversionJobService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 知识库文件上传前检查转换队列容量
+ * <p>
+ * multipart请求延迟解析(spring.servlet.multipart.resolve-lazily)，拦截器在读取文件内容前执行，
+ * 队列已满时直接返回服务繁忙，不必等整个文件上传完成后再拒绝。
+ *
+ * @author Teoan
+ * @since 2025/12/01 15:30
+ */
+@Component
+@RequiredArgsConstructor
+public class ConversionCapacityInterceptor implements HandlerInterceptor {
+
+    private final IConversionJobService conversionJobService;
+
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String userId = LoginHelper.getCurrentUserId();
+        // 未登录的请求由登录校验拒绝
+        if (StrUtil.isNotBlank(userId)) {
+            conversionJobService.checkCapacity(userId);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,28 @@
+package com.litevar.ihub.file.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * 文件模块web配置
+ *
+ * @author Teoan
+ * @since 2025/12/01 15:30
+ */
+@Configuration
+@RequiredArgsConstructor
+public class FileWebConfigure implements WebMvcConfigurer {
+
+    private final ConversionCapacityInterceptor conversionCapacityInterceptor;
+
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 在登录校验之后执行
+        registry.addInterceptor(conversionCapacityInterceptor)
+                .addPathPatterns("/api/v1/file/knowledge")
+                .order(1);
+    }
+}
@@ -44,4 +44,24 @@ public interface DirConstants {
      * 用户头像目录
      */
     String AVATAR_DIR = "avatars";
+
+    /**
+     * 按内容寻址的文件目录
+     */
+    String BLOBS_DIR = "blobs";
+
+    /**
+     * 写入中的文件内容临时目录 位于按内容寻址的文件目录下
+     */
+    String BLOBS_TEMP_DIR = "tmp";
+
+    /**
+     * 分片上传中的文件目录
+     */
+    String CHUNKS_DIR = "chunks";
+
+    /**
+     * 等待转换的知识库文件目录
+     */
+    String CONVERSIONS_DIR = "conversions";
 }
@@ -3,6 +3,9 @@ package com.litevar.ihub.file.controller;
 import cn.dev33.satoken.annotation.SaCheckLogin;
 import cn.dev33.satoken.annotation.SaIgnore;
 import com.litevar.ihub.common.web.R;
+import com.litevar.ihub.file.ConversionProgressSseHandler;
+import com.litevar.ihub.file.dto.ChunkUploadDTO;
+import com.litevar.ihub.file.dto.ChunkUploadInitDTO;
 import com.litevar.ihub.file.dto.ConversionProgressDTO;
 import com.litevar.ihub.file.dto.FileInfoDTO;
 import com.litevar.ihub.file.dto.UpdateFileContentDTO;
@@ -10,15 +13,20 @@ import com.litevar.ihub.file.service.IFileInfoService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -33,6 +41,7 @@ import java.util.List;
 public class FileInfoController {
 
     private final IFileInfoService fileInfoService;
+    private final ConversionProgressSseHandler conversionProgressSseHandler;
     
     /**
      * 修改文件内容
@@ -42,7 +51,8 @@ public class FileInfoController {
     @SaCheckLogin
     public R<Boolean> updateFileContent(
             @Validated @RequestBody UpdateFileContentDTO updateFileContentDTO) {
-        return R.ok(fileInfoService.updateFileContent(updateFileContentDTO.getId(), updateFileContentDTO.getContent()));
+        return R.ok(fileInfoService.updateFileContent(updateFileContentDTO.getId(),
+                updateFileContentDTO.getContent(), updateFileContentDTO.getAgentId()));
     }
     
     /**
@@ -67,6 +77,60 @@ public class FileInfoController {
         return R.ok("", fileInfoService.uploadKnowledgeFile(file));
     }
 
+    /**
+     * 创建知识库文件分片上传
+     */
+    @PostMapping("/knowledge/chunk")
+    @Operation(summary = "创建知识库文件分片上传", description = "返回上传ID,按顺序上传分片后调用完成接口开始转换")
+    @SaCheckLogin
+    public R<ChunkUploadDTO> initKnowledgeUpload(@Validated @RequestBody ChunkUploadInitDTO chunkUploadInitDTO) {
+        return R.ok(fileInfoService.initKnowledgeUpload(chunkUploadInitDTO));
+    }
+
+    /**
+     * 获取知识库文件分片上传进度
+     */
+    @GetMapping("/knowledge/chunk/{uploadId}")
+    @Operation(summary = "获取知识库文件分片上传进度", description = "返回已上传大小,断点续传时从该偏移量继续上传")
+    @SaCheckLogin
+    public R<ChunkUploadDTO> getKnowledgeUpload(@PathVariable("uploadId") String uploadId) {
+        return R.ok(fileInfoService.getKnowledgeUpload(uploadId));
+    }
+
+    /**
+     * 上传知识库文件分片
+     */
+    @PutMapping(value = "/knowledge/chunk/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(summary = "上传知识库文件分片", description = "请求体为分片内容,offset必须等于已上传大小")
+    @SaCheckLogin
+    public R<ChunkUploadDTO> uploadKnowledgeChunk(@PathVariable("uploadId") String uploadId,
+                                                 @Parameter(description = "分片起始位置") @RequestParam("offset") long offset,
+                                                 HttpServletRequest request) throws IOException {
+        return R.ok(fileInfoService.uploadKnowledgeChunk(uploadId, offset, request.getInputStream()));
+    }
+
+    /**
+     * 完成知识库文件分片上传
+     */
+    @PostMapping("/knowledge/chunk/{uploadId}/complete")
+    @Operation(summary = "完成知识库文件分片上传", description = "校验文件后开始转换,返回文件id,可查询文件上传进度")
+    @SaCheckLogin
+    public R<String> completeKnowledgeUpload(@PathVariable("uploadId") String uploadId,
+                                             @Parameter(description = "文件md5,为空时不校验") @RequestParam(value = "md5", required = false) String md5) {
+        return R.ok("", fileInfoService.completeKnowledgeUpload(uploadId, md5));
+    }
+
+    /**
+     * 取消知识库文件分片上传
+     */
+    @DeleteMapping("/knowledge/chunk/{uploadId}")
+    @Operation(summary = "取消知识库文件分片上传", description = "删除已上传的分片")
+    @SaCheckLogin
+    public R<Void> abortKnowledgeUpload(@PathVariable("uploadId") String uploadId) {
+        fileInfoService.abortKnowledgeUpload(uploadId);
+        return R.ok();
+    }
+
     /**
      * 获取知识库上传进度
      */
@@ -77,6 +141,26 @@ public class FileInfoController {
         return R.ok(fileInfoService.getConversionProgress(fileId));
     }
 
+    /**
+     * 订阅知识库上传进度
+     */
+    @GetMapping(value = "/knowledge/progress/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "订阅知识库上传进度", description = "以SSE推送progress事件,连接建立后先推送当前进度,转换结束后推送最终结果并关闭连接")
+    @SaCheckLogin
+    public SseEmitter streamConversionProgress(@RequestParam("fileId") String fileId) {
+        return conversionProgressSseHandler.connect(fileId);
+    }
+
+    /**
+     * 取消知识库文件转换
+     */
+    @DeleteMapping("/knowledge/conversion/{fileId}")
+    @Operation(summary = "取消知识库文件转换", description = "取消排队中或转换中的文件,已完成的返回false")
+    @SaCheckLogin
+    public R<Boolean> cancelConversion(@PathVariable("fileId") String fileId) {
+        return R.ok(fileInfoService.cancelConversion(fileId));
+    }
+
     /**
      * 删除文件信息
      */
@@ -85,7 +169,7 @@ public class FileInfoController {
     @Parameter(name = "id", description = "文件ID", required = true)
     @SaCheckLogin
     public R<Boolean> deleteFile(@NotBlank(message = "文件ID不能为空") @PathVariable("id") String id) {
-        return R.ok(fileInfoService.removeById(id));
+        return R.ok(fileInfoService.removeUserFiles(java.util.List.of(id)));
     }
 
     /**
@@ -95,7 +179,7 @@ public class FileInfoController {
     @Operation(summary = "批量删除文件信息", description = "根据ID列表批量删除文件信息")
     @SaCheckLogin
     public R<Boolean> deleteFiles(@RequestBody String[] ids) {
-        return R.ok(fileInfoService.removeByIds(java.util.Arrays.asList(ids)));
+        return R.ok(fileInfoService.removeUserFiles(java.util.Arrays.asList(ids)));
     }
 
     /**
@@ -113,10 +197,26 @@ public class FileInfoController {
      * 根据文件ID获取文件内容
      */
     @GetMapping("/content/{id}")
-    @Operation(summary = "获取文件内容", description = "根据文件ID获取文件内容，支持文本和图片")
+    @Operation(summary = "获取文件内容", description = "根据文件ID获取文件内容，支持文本和图片，支持条件请求和Range分段请求")
+    @SaIgnore
+    public ResponseEntity<Resource> getFileContent(@PathVariable("id") String id,
+                                                   @Parameter(description = "文件版本号(md5),与文件一致时可长期缓存") @RequestParam(value = "v", required = false) String version,
+                                                   @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
+        return fileInfoService.getFileContent(id, version, ifRange);
+    }
+
+    /**
+     * 获取图片文件的缩略图
+     */
+    @GetMapping("/content/{id}/thumbnail/{size}")
+    @Operation(summary = "获取图片缩略图", description = "按最长边像素生成缩略图，不保留原图元数据，支持条件请求和Range分段请求")
     @SaIgnore
-    public ResponseEntity<Resource> getFileContent(@PathVariable("id") String id) {
-        return fileInfoService.getFileContent(id);
+    public ResponseEntity<Resource> getImageThumbnail(@PathVariable("id") String id,
+                                                      @Parameter(description = "缩略图最长边像素,支持64,128,256,512") @PathVariable("size") int size,
+                                                      @Parameter(description = "缩略图格式 webp/jpeg/png,为空时按原图格式") @RequestParam(value = "format", required = false) String format,
+                                                      @Parameter(description = "文件版本号(md5),与文件一致时可长期缓存") @RequestParam(value = "v", required = false) String version,
+                                                      @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
+        return fileInfoService.getImageThumbnail(id, size, format, version, ifRange);
     }
 
     /**
@@ -137,8 +237,9 @@ public class FileInfoController {
     @Operation(summary = "获取图片文件", description = "获取图片文件")
     @Parameter(name = "imagesFileName", description = "图片文件名称", required = true)
     @SaIgnore
-    public ResponseEntity<Resource> getImageFile(@NotBlank(message = "图片文件名称") @PathVariable("imagesFileName") String imagesFileName) {
-        return fileInfoService.getImageFile(imagesFileName);
+    public ResponseEntity<Resource> getImageFile(@NotBlank(message = "图片文件名称") @PathVariable("imagesFileName") String imagesFileName,
+                                                 @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
+        return fileInfoService.getImageFile(imagesFileName, ifRange);
     }
 
 
@@ -0,0 +1,57 @@
+package com.litevar.ihub.file.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * 分片上传会话
+ *
+ * @author Teoan
+ * @since 2025/11/28 14:30
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "分片上传会话")
+public class ChunkUploadDTO implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 上传ID
+     */
+    @Schema(description = "上传ID")
+    String uploadId;
+
+    /**
+     * 文件名
+     */
+    @Schema(description = "文件名")
+    String fileName;
+
+    /**
+     * 文件大小 (字节)
+     */
+    @Schema(description = "文件大小 (字节)")
+    Long fileSize;
+
+    /**
+     * 已上传大小 (字节)，下一个分片从该位置开始
+     */
+    @Schema(description = "已上传大小 (字节)，下一个分片从该位置开始")
+    Long offset;
+
+    /**
+     * 上传用户ID
+     */
+    @Schema(hidden = true)
+    String userId;
+}
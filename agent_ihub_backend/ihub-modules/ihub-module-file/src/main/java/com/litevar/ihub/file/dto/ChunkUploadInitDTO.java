@@ -0,0 +1,37 @@
+package com.litevar.ihub.file.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 创建分片上传
+ *
+ * @author Teoan
+ * @since 2025/11/28 14:30
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "创建分片上传")
+public class ChunkUploadInitDTO {
+
+    /**
+     * 文件名
+     */
+    @NotBlank(message = "文件名不能为空")
+    @Schema(description = "文件名")
+    String fileName;
+
+    /**
+     * 文件大小 (字节)
+     */
+    @NotNull(message = "文件大小不能为空")
+    @Positive(message = "文件大小必须大于0")
+    @Schema(description = "文件大小 (字节)")
+    Long fileSize;
+}
@@ -17,6 +17,11 @@ import lombok.NoArgsConstructor;
 @Builder
 public class ConversionProgressDTO {
 
+    /**
+     * 文件id
+     */
+    @Schema(description = "文件id")
+    String fileId;
 
     /**
      * 进度
@@ -37,6 +42,12 @@ public class ConversionProgressDTO {
     @Schema(description = "详情")
     String detail;
 
+    /**
+     * 排队位置
+     */
+    @Schema(description = "排队中时前面等待转换的文件数")
+    Integer queuePosition;
+
     @Schema(description = "文件信息,完成时返回")
     FileInfoDTO fileInfoDTO;
 }
@@ -30,4 +30,10 @@ public class UpdateFileContentDTO {
     @Schema(description = "文件内容")
     @NotBlank(message = "文件内容不能为空")
     String content;
+
+    /**
+     * 文件所属agent ID 文件被fork共享时只修改该agent引用的文件
+     */
+    @Schema(description = "文件所属agent ID")
+    String agentId;
 }
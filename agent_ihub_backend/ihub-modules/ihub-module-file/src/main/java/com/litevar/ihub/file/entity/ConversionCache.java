@@ -0,0 +1,101 @@
+package com.litevar.ihub.file.entity;
+
+import com.mongoplus.annotation.ID;
+import com.mongoplus.annotation.collection.CollectionName;
+import com.mongoplus.annotation.index.MongoIndex;
+import com.mongoplus.enums.IdTypeEnum;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 知识库文件转换结果缓存
+ * 按源文件内容记录转换得到的md和图片，缓存对其文件内容各持有一个引用，文件信息删除后文件内容仍保留到缓存淘汰
+ *
+ * @author Teoan
+ * @since 2025/11/30 10:15
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@CollectionName("conversion_caches")
+public class ConversionCache implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 源文件内容sha256及扩展名 {sha256}.{ext}
+     */
+    @ID(type = IdTypeEnum.ASSIGN_ID)
+    private String id;
+
+    /**
+     * 转换得到的md文件
+     */
+    private CachedFile markdown;
+
+    /**
+     * 转换得到的图片文件，文件名与md中的引用一致
+     */
+    private List<CachedFile> images;
+
+    /**
+     * 命中次数
+     */
+    private Long hitCount;
+
+    /**
+     * 最近命中时间(毫秒时间戳)，超过保留时间未命中时淘汰
+     */
+    @MongoIndex
+    private Long lastHitAt;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+
+    /**
+     * 缓存的文件
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class CachedFile implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * 文件名
+         */
+        private String fileName;
+
+        /**
+         * 文件类型
+         */
+        private String fileType;
+
+        /**
+         * 文件大小 (字节)
+         */
+        private Long fileSize;
+
+        /**
+         * 文件md5
+         */
+        private String md5;
+
+        /**
+         * 文件内容sha256 对应FileBlob的id
+         */
+        private String blobHash;
+    }
+}
@@ -0,0 +1,104 @@
+package com.litevar.ihub.file.entity;
+
+import com.litevar.ihub.file.enums.ConversionJobStatus;
+import com.mongoplus.annotation.ID;
+import com.mongoplus.annotation.collection.CollectionName;
+import com.mongoplus.annotation.index.MongoIndex;
+import com.mongoplus.enums.IdTypeEnum;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 知识库文件转换任务
+ * 任务由各节点抢占执行，执行期间定时续期租约，节点宕机后租约过期的任务重新排队
+ *
+ * @author Teoan
+ * @since 2025/11/29 15:10
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@CollectionName("conversion_jobs")
+public class ConversionJob implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 转换后的md文件id
+     */
+    @ID(type = IdTypeEnum.ASSIGN_ID)
+    private String id;
+
+    /**
+     * 上传用户ID
+     */
+    @MongoIndex
+    private String userId;
+
+    /**
+     * 原始文件名
+     */
+    private String fileName;
+
+    /**
+     * 待转换的源文件路径，任务结束后删除
+     */
+    private String sourcePath;
+
+    /**
+     * 源文件的转换缓存key，未启用缓存时为空
+     */
+    private String sourceKey;
+
+    /**
+     * 任务状态
+     */
+    @MongoIndex
+    private ConversionJobStatus status;
+
+    /**
+     * 用户内的排队序号，按序号从小到大执行，各用户的任务轮流执行
+     */
+    private Long userSeq;
+
+    /**
+     * 执行任务的节点
+     */
+    private String owner;
+
+    /**
+     * 租约到期时间(毫秒时间戳)
+     */
+    private Long leaseExpireAt;
+
+    /**
+     * 已执行次数
+     */
+    private Integer attempts;
+
+    /**
+     * 是否已请求取消
+     */
+    private Boolean cancelRequested;
+
+    /**
+     * 失败原因
+     */
+    private String error;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 结束时间(毫秒时间戳)
+     */
+    private Long finishAt;
+}
@@ -0,0 +1,54 @@
+package com.litevar.ihub.file.entity;
+
+import com.mongoplus.annotation.ID;
+import com.mongoplus.annotation.collection.CollectionName;
+import com.mongoplus.enums.IdTypeEnum;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 文件内容 按内容sha256寻址，多个文件信息可引用同一份文件内容
+ *
+ * @author Teoan
+ * @since 2025/11/27 15:20
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@CollectionName("file_blobs")
+public class FileBlob implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 文件内容sha256
+     */
+    @ID(type = IdTypeEnum.ASSIGN_ID)
+    private String id;
+
+    /**
+     * 文件Path
+     */
+    private String filePath;
+
+    /**
+     * 文件大小 (字节)
+     */
+    private Long fileSize;
+
+    /**
+     * 引用该文件内容的文件信息数量，为0时删除
+     */
+    private Integer refCount;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+}
@@ -39,6 +39,7 @@ public class FileInfo extends BaseEntity {
     /**
      * 文件名
      */
+    @MongoIndex
     private String fileName;
 
     /**
@@ -62,6 +63,12 @@ public class FileInfo extends BaseEntity {
      */
     private String md5;
 
+    /**
+     * 文件内容sha256 对应FileBlob的id，为空时为未迁移的旧文件，filePath为独占的文件
+     */
+    @MongoIndex
+    private String blobHash;
+
 
     /**
      * 上传类型 (tools,knowledge)
@@ -73,6 +80,13 @@ public class FileInfo extends BaseEntity {
      */
     private FileDocMetadataDTO metadata;
 
+    /**
+     * 图片名称 知识库图片按该名称访问，md中按该名称引用图片
+     * 上传及导入的图片为"{id}.{扩展名}"，转换生成的图片为转换输出的文件名，复用转换结果的图片与原图片同名且内容相同
+     */
+    @MongoIndex
+    private String imageName;
+
     /**
      * 关联图片文件ID
      */
@@ -0,0 +1,55 @@
+package com.litevar.ihub.file.enums;
+
+import com.mongoplus.annotation.comm.EnumValue;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 知识库文件转换任务状态
+ *
+ * @author Teoan
+ * @since 2025/11/29 15:10
+ */
+@Getter
+@AllArgsConstructor
+public enum ConversionJobStatus {
+
+    /**
+     * 排队中
+     */
+    QUEUED("queued", "排队中"),
+
+    /**
+     * 转换中
+     */
+    RUNNING("running", "转换中"),
+
+    /**
+     * 已完成
+     */
+    DONE("done", "已完成"),
+
+    /**
+     * 转换失败
+     */
+    FAILED("failed", "转换失败"),
+
+    /**
+     * 已取消
+     */
+    CANCELLED("cancelled", "已取消");
+
+    @EnumValue
+    private final String code;
+    private final String description;
+
+
+    public static ConversionJobStatus of(String code) {
+        for (ConversionJobStatus status : values()) {
+            if (status.getCode().equalsIgnoreCase(code)) {
+                return status;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,61 @@
+package com.litevar.ihub.file.service;
+
+import com.litevar.ihub.file.entity.ConversionCache;
+import com.litevar.ihub.file.entity.FileInfo;
+import com.mongoplus.service.IService;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 知识库文件转换结果缓存
+ *
+ * @author Teoan
+ * @since 2025/11/30 10:15
+ */
+public interface IConversionCacheService extends IService<ConversionCache> {
+
+    /**
+     * 计算源文件的缓存key
+     *
+     * @param source 待转换的源文件
+     * @return 缓存key 未启用缓存时返回null
+     */
+    String sourceKey(Path source);
+
+
+    /**
+     * 由写入源文件时计算的sha256生成缓存key，不再读取源文件
+     *
+     * @param sha256  源文件内容的sha256
+     * @param extName 源文件扩展名
+     * @return 缓存key 未启用缓存时返回null
+     */
+    String sourceKey(String sha256, String extName);
+
+
+    /**
+     * 获取缓存的转换结果，并为调用方新建的文件信息增加文件内容的引用计数
+     * 调用方保存文件信息失败时需释放这些引用
+     *
+     * @param sourceKey 缓存key
+     * @return 转换结果 未命中时返回null
+     */
+    ConversionCache acquire(String sourceKey);
+
+
+    /**
+     * 缓存转换结果，缓存对文件内容各持有一个引用，相同key已缓存时忽略
+     *
+     * @param sourceKey 缓存key
+     * @param markdown  转换得到的md文件信息
+     * @param images    转换得到的图片文件信息
+     */
+    void put(String sourceKey, FileInfo markdown, List<FileInfo> images);
+
+
+    /**
+     * 淘汰超过保留时间未命中的缓存，并释放其引用的文件内容
+     */
+    void evictExpired();
+}
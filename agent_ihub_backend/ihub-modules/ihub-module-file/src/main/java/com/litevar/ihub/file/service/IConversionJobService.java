@@ -0,0 +1,130 @@
+package com.litevar.ihub.file.service;
+
+import com.litevar.ihub.file.entity.ConversionJob;
+import com.litevar.ihub.file.enums.ConversionJobStatus;
+import com.mongoplus.service.IService;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 知识库文件转换任务
+ *
+ * @author Teoan
+ * @since 2025/11/29 15:30
+ */
+public interface IConversionJobService extends IService<ConversionJob> {
+
+    /**
+     * 获取待转换文件的保存路径，位于上传目录下，任务结束前节点重启不会丢失
+     *
+     * @param fileId  转换后的md文件id
+     * @param extName 源文件扩展名
+     * @return 保存路径
+     */
+    Path sourcePath(String fileId, String extName);
+
+
+    /**
+     * 检查是否还能提交转换任务，在接收文件内容前调用，避免上传完成后才被拒绝
+     *
+     * @param userId 上传用户ID
+     */
+    void checkCapacity(String userId);
+
+
+    /**
+     * 提交转换任务
+     *
+     * @param fileId     转换后的md文件id
+     * @param userId     上传用户ID
+     * @param fileName   原始文件名
+     * @param sourcePath 待转换的源文件
+     * @param sourceKey  源文件的转换缓存key
+     */
+    void submit(String fileId, String userId, String fileName, Path sourcePath, String sourceKey);
+
+
+    /**
+     * 记录已完成的转换任务，用于复用转换缓存直接完成的转换，使查询转换进度的方式保持一致
+     *
+     * @param fileId   转换后的md文件id
+     * @param userId   上传用户ID
+     * @param fileName 原始文件名
+     */
+    void saveCompleted(String fileId, String userId, String fileName);
+
+
+    /**
+     * 抢占一个排队中的任务
+     *
+     * @param owner 执行任务的节点
+     * @return 任务 没有排队中的任务时返回null
+     */
+    ConversionJob claim(String owner);
+
+
+    /**
+     * 续期节点执行中任务的租约
+     *
+     * @param owner  执行任务的节点
+     * @param jobIds 执行中的任务
+     * @return 已请求取消的任务id
+     */
+    List<String> heartbeat(String owner, Collection<String> jobIds);
+
+
+    /**
+     * 结束任务，任务仍由该节点持有时更新状态并删除源文件
+     *
+     * @param jobId  任务id
+     * @param owner  执行任务的节点
+     * @param status 结束状态
+     * @param error  失败原因
+     * @return 任务已不由该节点持有(租约过期被重新排队)时返回false
+     */
+    boolean finish(String jobId, String owner, ConversionJobStatus status, String error);
+
+
+    /**
+     * 将节点执行中的任务重新排队，用于停机时交给其他节点执行
+     *
+     * @param jobId 任务id
+     * @param owner 执行任务的节点
+     */
+    void requeue(String jobId, String owner);
+
+
+    /**
+     * 将租约过期的任务重新排队，执行次数达到上限的任务置为失败，并删除保留期已过的已结束任务
+     */
+    void recoverExpired();
+
+
+    /**
+     * 取消任务，排队中的任务直接取消，执行中的任务由执行节点在续期时中断
+     *
+     * @param jobId  任务id
+     * @param userId 当前用户ID，只能取消自己的任务
+     * @return 任务已结束时返回false
+     */
+    boolean cancel(String jobId, String userId);
+
+
+    /**
+     * 任务是否已请求取消
+     *
+     * @param jobId 任务id
+     */
+    boolean isCancelRequested(String jobId);
+
+
+    /**
+     * 获取排队位置
+     *
+     * @param job 排队中的任务
+     * @return 前面等待的任务数
+     */
+    long getQueuePosition(ConversionJob job);
+}
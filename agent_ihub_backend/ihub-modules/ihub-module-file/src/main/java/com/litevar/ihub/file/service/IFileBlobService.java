@@ -0,0 +1,60 @@
+package com.litevar.ihub.file.service;
+
+import com.litevar.ihub.file.entity.FileBlob;
+import com.mongoplus.service.IService;
+
+import java.nio.file.Path;
+
+/**
+ * 按内容寻址的文件存储
+ *
+ * @author Teoan
+ * @since 2025/11/27 15:20
+ */
+public interface IFileBlobService extends IService<FileBlob> {
+
+    /**
+     * 获取文件内容的存储路径 blobs/{hash[0:2]}/{hash[2:4]}/{hash}
+     *
+     * @param hash 文件内容sha256
+     * @return 存储路径
+     */
+    Path blobPath(String hash);
+
+
+    /**
+     * 创建写入中的临时文件路径，与存储目录位于同一文件系统
+     *
+     * @return 临时文件路径
+     */
+    Path createTempPath();
+
+
+    /**
+     * 保存文件内容并增加引用计数
+     * 相同内容已存在时删除源文件，否则将源文件移动到存储路径
+     *
+     * @param source 源文件
+     * @param hash   文件内容sha256
+     * @param size   文件大小
+     * @return 存储路径
+     */
+    Path store(Path source, String hash, long size);
+
+
+    /**
+     * 增加文件内容的引用计数
+     *
+     * @param hash 文件内容sha256
+     */
+    void retain(String hash);
+
+
+    /**
+     * 减少文件内容的引用计数，最后一个引用释放时删除文件内容
+     *
+     * @param hash 文件内容sha256
+     * @return 是否删除了文件内容
+     */
+    boolean release(String hash);
+}
@@ -1,14 +1,18 @@
 package com.litevar.ihub.file.service;
 
+import com.litevar.ihub.file.dto.ChunkUploadDTO;
+import com.litevar.ihub.file.dto.ChunkUploadInitDTO;
 import com.litevar.ihub.file.dto.ConversionProgressDTO;
 import com.litevar.ihub.file.dto.FileDocMetadataDTO;
 import com.litevar.ihub.file.dto.FileInfoDTO;
+import com.litevar.ihub.file.entity.ConversionJob;
 import com.litevar.ihub.file.entity.FileInfo;
 import com.mongoplus.service.IService;
 import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -26,6 +30,16 @@ public interface IFileInfoService extends IService<FileInfo> {
     FileInfoDTO uploadToolFile(MultipartFile file);
 
 
+    /**
+     * 写入工具描述文件 从输入流写入，不关闭输入流，不保存文件信息
+     *
+     * @param fileName    文件名
+     * @param inputStream 文件内容
+     * @return 未保存的文件信息，需通过saveFileInfoBatch保存
+     */
+    FileInfo writeToolFile(String fileName, InputStream inputStream);
+
+
     /**
      * 上传知识库md文件
      *
@@ -34,6 +48,16 @@ public interface IFileInfoService extends IService<FileInfo> {
      */
     FileInfoDTO uploadKnowledgeMdFile(MultipartFile file);
 
+
+    /**
+     * 写入知识库md文件 从输入流写入，不关闭输入流，不保存文件信息
+     *
+     * @param fileName    文件名
+     * @param inputStream 文件内容
+     * @return 未保存的文件信息，需通过saveFileInfoBatch保存
+     */
+    FileInfo writeKnowledgeMdFile(String fileName, InputStream inputStream);
+
     /**
      * 上传知识库文件
      *
@@ -43,6 +67,71 @@ public interface IFileInfoService extends IService<FileInfo> {
     String uploadKnowledgeFile(MultipartFile file);
 
 
+    /**
+     * 创建知识库文件分片上传
+     *
+     * @param chunkUploadInitDTO 文件信息
+     * @return 上传会话
+     */
+    ChunkUploadDTO initKnowledgeUpload(ChunkUploadInitDTO chunkUploadInitDTO);
+
+
+    /**
+     * 获取知识库文件分片上传进度
+     *
+     * @param uploadId 上传ID
+     * @return 上传会话
+     */
+    ChunkUploadDTO getKnowledgeUpload(String uploadId);
+
+
+    /**
+     * 上传知识库文件分片
+     *
+     * @param uploadId    上传ID
+     * @param offset      分片在文件中的起始位置
+     * @param inputStream 分片内容
+     * @return 上传会话
+     */
+    ChunkUploadDTO uploadKnowledgeChunk(String uploadId, long offset, InputStream inputStream);
+
+
+    /**
+     * 完成知识库文件分片上传并开始转换
+     *
+     * @param uploadId 上传ID
+     * @param md5      文件md5，为空时不校验
+     * @return md文件id
+     */
+    String completeKnowledgeUpload(String uploadId, String md5);
+
+
+    /**
+     * 取消知识库文件分片上传
+     *
+     * @param uploadId 上传ID
+     */
+    void abortKnowledgeUpload(String uploadId);
+
+
+    /**
+     * 取消知识库文件转换
+     *
+     * @param fileId md文件id
+     * @return 任务已结束时返回false
+     */
+    boolean cancelConversion(String fileId);
+
+
+    /**
+     * 执行知识库文件转换，由转换调度调用
+     *
+     * @param job 转换任务
+     * @return 转换期间被取消时返回false
+     */
+    boolean runConversion(ConversionJob job);
+
+
     /**
      * 上传知识库图片文件
      *
@@ -51,6 +140,24 @@ public interface IFileInfoService extends IService<FileInfo> {
      */
     FileInfoDTO uploadImagesFile(MultipartFile file);
 
+
+    /**
+     * 写入知识库图片文件 从输入流写入，不关闭输入流，不保存文件信息
+     *
+     * @param fileName    文件名
+     * @param inputStream 文件内容
+     * @return 未保存的文件信息，需通过saveFileInfoBatch保存
+     */
+    FileInfo writeImagesFile(String fileName, InputStream inputStream);
+
+
+    /**
+     * 批量保存文件信息，未设置用户id的记录归属当前登录用户
+     *
+     * @param fileInfos 文件信息
+     */
+    void saveFileInfoBatch(List<FileInfo> fileInfos);
+
     /**
      * 根据ID列表批量删除文件信息
      *
@@ -60,6 +167,25 @@ public interface IFileInfoService extends IService<FileInfo> {
     boolean removeByIds(List<String> ids);
 
 
+    /**
+     * 删除当前用户上传的文件
+     * 文件与fork的agent共享，仍被agent引用时不允许删除，需通过agent移除文件
+     *
+     * @param ids ID列表
+     * @return 是否删除成功
+     */
+    boolean removeUserFiles(List<String> ids);
+
+
+    /**
+     * 释放文件信息引用的文件内容，用于文件信息已删除或未保存时
+     *
+     * @param fileInfo 文件信息
+     * @return 文件内容是否已从磁盘删除，仍被其他文件信息引用时返回false
+     */
+    boolean discardFile(FileInfo fileInfo);
+
+
     /**
      * 更新文件的文档元数据和图片文件信息
      */
@@ -83,10 +209,25 @@ public interface IFileInfoService extends IService<FileInfo> {
     /**
      * 根据文件ID获取文件内容及媒体类型
      * 
-     * @param fileId 文件ID
+     * @param fileId  文件ID
+     * @param version 文件版本号(md5)，与文件md5一致时响应允许长期缓存
+     * @param ifRange If-Range请求头
      * @return 包含文件资源和媒体类型的对象
      */
-    ResponseEntity<Resource> getFileContent(String fileId);
+    ResponseEntity<Resource> getFileContent(String fileId, String version, String ifRange);
+
+
+    /**
+     * 获取图片文件的缩略图
+     *
+     * @param fileId  文件ID
+     * @param size    缩略图最长边像素
+     * @param format  缩略图格式 webp/jpeg/png，为空时按原图格式
+     * @param version 文件版本号(md5)，与文件md5一致时响应允许长期缓存
+     * @param ifRange If-Range请求头
+     * @return 缩略图
+     */
+    ResponseEntity<Resource> getImageThumbnail(String fileId, int size, String format, String version, String ifRange);
 
     /**
      * 上传用户头像
@@ -102,25 +243,20 @@ public interface IFileInfoService extends IService<FileInfo> {
      * 根据图片文件名称获取图片
      *
      * @param imagesFileName 文件名称
+     * @param ifRange        If-Range请求头
      * @return 包含文件资源和媒体类型的对象
      */
-    ResponseEntity<Resource> getImageFile(String imagesFileName);
-
+    ResponseEntity<Resource> getImageFile(String imagesFileName, String ifRange);
 
-    /**
-     * 复制文件 返回新的文件id
-     * @param fileId 文件id
-     * @return 新的文件id
-     */
-    String copyFile(String fileId);
 
     /**
-     * 修改文件内容
+     * 修改文件内容 文件被其他用户的agent共享时，为当前用户的agent生成独立的文件
      *
-     * @param fileId 文件ID
+     * @param fileId  文件ID
      * @param content 新的文件内容
+     * @param agentId 修改的文件所属agent，为空时为当前用户所有引用该文件的agent
      * @return 是否修改成功
      */
-    boolean updateFileContent(String fileId, String content);
+    boolean updateFileContent(String fileId, String content, String agentId);
 
 }
\ No newline at end of file
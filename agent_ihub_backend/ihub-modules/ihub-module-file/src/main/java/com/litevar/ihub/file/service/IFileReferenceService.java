@@ -0,0 +1,52 @@
+package com.litevar.ihub.file.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 文件引用查询 由引用文件的业务模块实现
+ * <p>
+ * fork的agent与原agent共享同一文件，修改文件内容前需确认文件是否被其他agent引用
+ *
+ * @author Teoan
+ * @since 2025/11/28 10:05
+ */
+public interface IFileReferenceService {
+
+    /**
+     * 获取引用文件的agent
+     *
+     * @param fileId 文件ID
+     * @return agent id -> 作者id
+     */
+    Map<String, String> getReferences(String fileId);
+
+
+    /**
+     * 将agent对文件的引用替换为新文件
+     *
+     * @param agentIds  agent id
+     * @param fileId    原文件ID
+     * @param newFileId 新文件ID
+     */
+    void replaceReference(List<String> agentIds, String fileId, String newFileId);
+
+
+    /**
+     * 获取所有被引用的文件ID，包括未删除agent的工具及文档文件和用户头像，不包括文档引用的图片
+     *
+     * @return 文件ID
+     */
+    Set<String> getReferencedFileIds();
+
+
+    /**
+     * 筛选被引用的文件ID，引用范围与{@link #getReferencedFileIds()}一致
+     *
+     * @param fileIds 文件ID
+     * @return 其中被引用的文件ID
+     */
+    Set<String> filterReferenced(Collection<String> fileIds);
+}
@@ -0,0 +1,174 @@
+package com.litevar.ihub.file.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.litevar.ihub.common.core.config.IHubConversionProperties;
+import com.litevar.ihub.common.web.exception.BusinessException;
+import com.litevar.ihub.file.entity.ConversionCache;
+import com.litevar.ihub.file.entity.FileInfo;
+import com.litevar.ihub.file.service.IConversionCacheService;
+import com.litevar.ihub.file.service.IFileBlobService;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import com.mongoplus.service.impl.ServiceImpl;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants.ID;
+
+/**
+ * 知识库文件转换结果缓存
+ * <p>
+ * 相同内容的文件(如公开的规范、手册)被多个用户上传时，直接复用已有的转换结果，新建的文件信息引用同一份md和图片内容，
+ * 不再执行转换。缓存与文件信息一样通过引用计数持有文件内容，命中时先增加引用再保存文件信息，
+ * 淘汰时先删除缓存记录再释放引用，并发的命中和淘汰不会引用到已删除的文件内容。
+ *
+ * @author Teoan
+ * @since 2025/11/30 10:15
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConversionCacheServiceImpl extends ServiceImpl<ConversionCache> implements IConversionCacheService {
+
+    private static final String HIT_COUNT_FIELD = "hit_count";
+
+    private static final String LAST_HIT_AT_FIELD = "last_hit_at";
+
+    private final IHubConversionProperties conversionProperties;
+    private final IFileBlobService fileBlobService;
+
+
+    @Override
+    public String sourceKey(Path source) {
+        if (!BooleanUtil.isTrue(conversionProperties.getCacheEnabled())) {
+            return null;
+        }
+        return sourceKey(DigestUtil.sha256Hex(source.toFile()), FileUtil.extName(source.toFile()));
+    }
+
+
+    @Override
+    public String sourceKey(String sha256, String extName) {
+        if (!BooleanUtil.isTrue(conversionProperties.getCacheEnabled())) {
+            return null;
+        }
+        // 相同内容按不同格式转换的结果可能不同，扩展名一并计入
+        return sha256 + StrUtil.DOT + StrUtil.nullToEmpty(extName).toLowerCase();
+    }
+
+
+    @Override
+    public ConversionCache acquire(String sourceKey) {
+        if (StrUtil.isBlank(sourceKey) || !BooleanUtil.isTrue(conversionProperties.getCacheEnabled())) {
+            return null;
+        }
+        ConversionCache cache = getById(sourceKey);
+        if (ObjUtil.isNull(cache)) {
+            return null;
+        }
+        List<String> retained = new ArrayList<>();
+        try {
+            for (String blobHash : blobHashes(cache)) {
+                fileBlobService.retain(blobHash);
+                retained.add(blobHash);
+            }
+        } catch (BusinessException e) {
+            // 读取后缓存被淘汰，文件内容已删除，按未命中处理
+            log.debug("转换缓存的文件内容已删除: sourceKey={}", sourceKey);
+            retained.forEach(fileBlobService::release);
+            return null;
+        }
+        collection().updateOne(Filters.eq(ID, sourceKey), Updates.combine(
+                Updates.inc(HIT_COUNT_FIELD, 1),
+                Updates.set(LAST_HIT_AT_FIELD, System.currentTimeMillis())));
+        return cache;
+    }
+
+
+    @Override
+    public void put(String sourceKey, FileInfo markdown, List<FileInfo> images) {
+        if (StrUtil.isBlank(sourceKey) || !BooleanUtil.isTrue(conversionProperties.getCacheEnabled())) {
+            return;
+        }
+        List<FileInfo> fileInfos = new ArrayList<>(images);
+        fileInfos.add(markdown);
+        // 未迁移到按内容存储的文件无法共享
+        if (fileInfos.stream().anyMatch(fileInfo -> StrUtil.isBlank(fileInfo.getBlobHash()))
+                || ObjUtil.isNotNull(getById(sourceKey))) {
+            return;
+        }
+        ConversionCache cache = new ConversionCache();
+        cache.setId(sourceKey);
+        cache.setMarkdown(cachedFile(markdown));
+        cache.setImages(images.stream().map(this::cachedFile).toList());
+        cache.setHitCount(0L);
+        cache.setLastHitAt(System.currentTimeMillis());
+        cache.setCreateTime(LocalDateTime.now());
+
+        List<String> retained = new ArrayList<>();
+        try {
+            for (String blobHash : blobHashes(cache)) {
+                fileBlobService.retain(blobHash);
+                retained.add(blobHash);
+            }
+            save(cache);
+        } catch (RuntimeException e) {
+            // 文件已被删除，或其他节点同时缓存了相同内容的转换结果
+            log.debug("缓存转换结果失败: sourceKey={}", sourceKey, e);
+            retained.forEach(fileBlobService::release);
+        }
+    }
+
+
+    @Override
+    public void evictExpired() {
+        long expireAt = System.currentTimeMillis() - conversionProperties.getCacheRetention().toMillis();
+        List<String> expired = new ArrayList<>();
+        collection().find(Filters.lt(LAST_HIT_AT_FIELD, expireAt))
+                .projection(Projections.include(ID))
+                .forEach(document -> expired.add(document.getString(ID)));
+        for (String sourceKey : expired) {
+            ConversionCache cache = getById(sourceKey);
+            // 只有删除成功的节点释放引用，查询后被再次命中的缓存保留
+            if (ObjUtil.isNull(cache) || collection().deleteOne(Filters.and(Filters.eq(ID, sourceKey),
+                    Filters.lt(LAST_HIT_AT_FIELD, expireAt))).getDeletedCount() == 0) {
+                continue;
+            }
+            blobHashes(cache).forEach(fileBlobService::release);
+            log.debug("淘汰转换缓存: sourceKey={}", sourceKey);
+        }
+    }
+
+
+    private List<String> blobHashes(ConversionCache cache) {
+        List<String> blobHashes = new ArrayList<>();
+        CollUtil.emptyIfNull(cache.getImages()).forEach(image -> blobHashes.add(image.getBlobHash()));
+        blobHashes.add(cache.getMarkdown().getBlobHash());
+        return blobHashes;
+    }
+
+
+    private ConversionCache.CachedFile cachedFile(FileInfo fileInfo) {
+        return new ConversionCache.CachedFile(fileInfo.getFileName(), fileInfo.getFileType(), fileInfo.getFileSize(),
+                fileInfo.getMd5(), fileInfo.getBlobHash());
+    }
+
+
+    private MongoCollection<Document> collection() {
+        return baseMapper.getMongoPlusClient().getCollection(ConversionCache.class);
+    }
+}
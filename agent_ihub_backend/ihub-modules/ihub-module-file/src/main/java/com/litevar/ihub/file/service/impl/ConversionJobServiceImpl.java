@@ -0,0 +1,324 @@
+package com.litevar.ihub.file.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.litevar.ihub.common.core.config.IHubConversionProperties;
+import com.litevar.ihub.common.core.config.IHubUploadFileProperties;
+import com.litevar.ihub.common.core.utils.RedisUtils;
+import com.litevar.ihub.common.web.exception.BusinessException;
+import com.litevar.ihub.common.web.exception.ErrorCode;
+import com.litevar.ihub.common.web.exception.ServerBusyException;
+import com.litevar.ihub.file.dto.ConversionProgressDTO;
+import com.litevar.ihub.file.entity.ConversionJob;
+import com.litevar.ihub.file.enums.ConversionJobStatus;
+import com.litevar.ihub.file.service.IConversionJobService;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.UpdateResult;
+import com.mongoplus.service.impl.ServiceImpl;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.litevar.ihub.common.core.constant.CacheConstants.IHUB_CONVERSION_PROGRESS_TOPIC;
+import static com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants.ID;
+import static com.litevar.ihub.file.constant.DirConstants.CONVERSIONS_DIR;
+
+/**
+ * 知识库文件转换任务
+ * <p>
+ * 任务的抢占、续期和结束都通过带状态及节点条件的原子更新完成，多个节点共享同一个任务队列。
+ * 排队中的任务按用户内排队序号和任务id排序，新提交的任务序号不小于当前排队中的最小序号，各用户的任务轮流执行。
+ *
+ * @author Teoan
+ * @since 2025/11/29 15:30
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConversionJobServiceImpl extends ServiceImpl<ConversionJob> implements IConversionJobService {
+
+    /**
+     * 拒绝提交时建议的重试间隔(秒)
+     */
+    private static final long RETRY_AFTER_SECONDS = 30;
+
+    private static final String USER_ID_FIELD = "user_id";
+
+    private static final String SOURCE_PATH_FIELD = "source_path";
+
+    private static final String STATUS_FIELD = "status";
+
+    private static final String USER_SEQ_FIELD = "user_seq";
+
+    private static final String OWNER_FIELD = "owner";
+
+    private static final String LEASE_EXPIRE_AT_FIELD = "lease_expire_at";
+
+    private static final String ATTEMPTS_FIELD = "attempts";
+
+    private static final String CANCEL_REQUESTED_FIELD = "cancel_requested";
+
+    private static final String ERROR_FIELD = "error";
+
+    private static final String FINISH_AT_FIELD = "finish_at";
+
+    private final IHubUploadFileProperties iHubUploadFileProperties;
+    private final IHubConversionProperties conversionProperties;
+
+
+    @Override
+    public Path sourcePath(String fileId, String extName) {
+        Path dir = Paths.get(iHubUploadFileProperties.getPath(), CONVERSIONS_DIR).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "创建转换目录失败: " + e.getMessage());
+        }
+        return dir.resolve(fileId + "." + extName);
+    }
+
+
+    @Override
+    public void checkCapacity(String userId) {
+        long queued = collection().countDocuments(statusEq(ConversionJobStatus.QUEUED));
+        if (queued >= conversionProperties.getQueueCapacity()) {
+            throw new ServerBusyException("待转换的文件较多，请稍后重试", RETRY_AFTER_SECONDS);
+        }
+        long userQueued = collection().countDocuments(Filters.and(
+                Filters.eq(USER_ID_FIELD, userId), statusEq(ConversionJobStatus.QUEUED)));
+        if (userQueued >= conversionProperties.getUserQueueCapacity()) {
+            throw new ServerBusyException("您待转换的文件较多，请等待转换完成后再上传", RETRY_AFTER_SECONDS);
+        }
+    }
+
+
+    @Override
+    public void submit(String fileId, String userId, String fileName, Path sourcePath, String sourceKey) {
+        checkCapacity(userId);
+        // 当前轮次为排队中的最小序号，用户已有未结束的任务时排在自己最后一个任务之后
+        Document first = collection().find(statusEq(ConversionJobStatus.QUEUED))
+                .sort(Sorts.ascending(USER_SEQ_FIELD)).projection(Projections.include(USER_SEQ_FIELD)).first();
+        long round = ObjUtil.isNull(first) ? 0 : first.get(USER_SEQ_FIELD, Number.class).longValue();
+        Document last = collection().find(Filters.and(Filters.eq(USER_ID_FIELD, userId),
+                        Filters.in(STATUS_FIELD, ConversionJobStatus.QUEUED.getCode(), ConversionJobStatus.RUNNING.getCode())))
+                .sort(Sorts.descending(USER_SEQ_FIELD)).projection(Projections.include(USER_SEQ_FIELD)).first();
+        long userSeq = ObjUtil.isNull(last) ? round : Math.max(round, last.get(USER_SEQ_FIELD, Number.class).longValue() + 1);
+
+        ConversionJob job = new ConversionJob();
+        job.setId(fileId);
+        job.setUserId(userId);
+        job.setFileName(fileName);
+        job.setSourcePath(sourcePath.toString());
+        job.setSourceKey(sourceKey);
+        job.setStatus(ConversionJobStatus.QUEUED);
+        job.setUserSeq(userSeq);
+        job.setAttempts(0);
+        job.setCancelRequested(false);
+        job.setCreateTime(LocalDateTime.now());
+        save(job);
+    }
+
+
+    @Override
+    public void saveCompleted(String fileId, String userId, String fileName) {
+        ConversionJob job = new ConversionJob();
+        job.setId(fileId);
+        job.setUserId(userId);
+        job.setFileName(fileName);
+        job.setStatus(ConversionJobStatus.DONE);
+        job.setAttempts(0);
+        job.setCancelRequested(false);
+        job.setCreateTime(LocalDateTime.now());
+        job.setFinishAt(System.currentTimeMillis());
+        save(job);
+        notifyStatus(fileId, ConversionJobStatus.DONE);
+    }
+
+
+    @Override
+    public ConversionJob claim(String owner) {
+        Document document = collection().findOneAndUpdate(statusEq(ConversionJobStatus.QUEUED),
+                Updates.combine(
+                        Updates.set(STATUS_FIELD, ConversionJobStatus.RUNNING.getCode()),
+                        Updates.set(OWNER_FIELD, owner),
+                        Updates.set(LEASE_EXPIRE_AT_FIELD, leaseExpireAt()),
+                        Updates.inc(ATTEMPTS_FIELD, 1)),
+                new FindOneAndUpdateOptions().sort(Sorts.ascending(USER_SEQ_FIELD, ID)).returnDocument(ReturnDocument.AFTER));
+        if (ObjUtil.isNull(document)) {
+            return null;
+        }
+        notifyStatus(document.getString(ID), ConversionJobStatus.RUNNING);
+        return getById(document.getString(ID));
+    }
+
+
+    @Override
+    public List<String> heartbeat(String owner, Collection<String> jobIds) {
+        List<String> cancelled = new ArrayList<>();
+        if (jobIds.isEmpty()) {
+            return cancelled;
+        }
+        Bson owned = Filters.and(Filters.in(ID, jobIds), Filters.eq(OWNER_FIELD, owner), statusEq(ConversionJobStatus.RUNNING));
+        collection().updateMany(owned, Updates.set(LEASE_EXPIRE_AT_FIELD, leaseExpireAt()));
+        collection().find(Filters.and(owned, Filters.eq(CANCEL_REQUESTED_FIELD, true)))
+                .projection(Projections.include(ID))
+                .forEach(document -> cancelled.add(document.getString(ID)));
+        return cancelled;
+    }
+
+
+    @Override
+    public boolean finish(String jobId, String owner, ConversionJobStatus status, String error) {
+        Document document = collection().findOneAndUpdate(
+                Filters.and(Filters.eq(ID, jobId), Filters.eq(OWNER_FIELD, owner), statusEq(ConversionJobStatus.RUNNING)),
+                finishUpdate(status, error));
+        if (ObjUtil.isNull(document)) {
+            return false;
+        }
+        FileUtil.del(document.getString(SOURCE_PATH_FIELD));
+        notifyStatus(jobId, status);
+        return true;
+    }
+
+
+    @Override
+    public void requeue(String jobId, String owner) {
+        // 停机交出的任务不计入执行次数
+        UpdateResult result = collection().updateOne(
+                Filters.and(Filters.eq(ID, jobId), Filters.eq(OWNER_FIELD, owner), statusEq(ConversionJobStatus.RUNNING)),
+                Updates.combine(
+                        Updates.set(STATUS_FIELD, ConversionJobStatus.QUEUED.getCode()),
+                        Updates.unset(OWNER_FIELD),
+                        Updates.unset(LEASE_EXPIRE_AT_FIELD),
+                        Updates.inc(ATTEMPTS_FIELD, -1)));
+        if (result.getModifiedCount() > 0) {
+            notifyStatus(jobId, ConversionJobStatus.QUEUED);
+        }
+    }
+
+
+    @Override
+    public void recoverExpired() {
+        long now = System.currentTimeMillis();
+        List<Document> expired = collection().find(Filters.and(
+                        statusEq(ConversionJobStatus.RUNNING), Filters.lt(LEASE_EXPIRE_AT_FIELD, now)))
+                .projection(Projections.include(ID, OWNER_FIELD, ATTEMPTS_FIELD, SOURCE_PATH_FIELD))
+                .into(new ArrayList<>());
+        for (Document document : expired) {
+            String jobId = document.getString(ID);
+            // 查询后其他节点可能已恢复该任务或原节点已续期
+            Bson filter = Filters.and(Filters.eq(ID, jobId),
+                    statusEq(ConversionJobStatus.RUNNING), Filters.lt(LEASE_EXPIRE_AT_FIELD, now));
+            if (document.getInteger(ATTEMPTS_FIELD, 0) >= conversionProperties.getMaxAttempts()) {
+                if (ObjUtil.isNotNull(collection().findOneAndUpdate(filter, finishUpdate(ConversionJobStatus.FAILED, "转换超时")))) {
+                    FileUtil.del(document.getString(SOURCE_PATH_FIELD));
+                    notifyStatus(jobId, ConversionJobStatus.FAILED);
+                    log.warn("知识库文件转换多次超时，不再重试: jobId={}", jobId);
+                }
+            } else if (collection().updateOne(filter, Updates.combine(
+                    Updates.set(STATUS_FIELD, ConversionJobStatus.QUEUED.getCode()),
+                    Updates.unset(OWNER_FIELD),
+                    Updates.unset(LEASE_EXPIRE_AT_FIELD))).getModifiedCount() > 0) {
+                notifyStatus(jobId, ConversionJobStatus.QUEUED);
+                log.warn("知识库文件转换租约过期，重新排队: jobId={}, owner={}", jobId, document.getString(OWNER_FIELD));
+            }
+        }
+        long deleted = collection().deleteMany(Filters.and(
+                Filters.in(STATUS_FIELD, ConversionJobStatus.DONE.getCode(), ConversionJobStatus.FAILED.getCode(),
+                        ConversionJobStatus.CANCELLED.getCode()),
+                Filters.lt(FINISH_AT_FIELD, now - conversionProperties.getJobRetention().toMillis()))).getDeletedCount();
+        if (deleted > 0) {
+            log.debug("删除已结束的知识库文件转换任务: {}", deleted);
+        }
+    }
+
+
+    @Override
+    public boolean cancel(String jobId, String userId) {
+        ConversionJob job = getById(jobId);
+        if (ObjUtil.isNull(job)) {
+            return false;
+        }
+        if (!StrUtil.equals(job.getUserId(), userId)) {
+            throw new BusinessException(ErrorCode.FORBIDDEN, "只能取消自己上传的文件");
+        }
+        Document queued = collection().findOneAndUpdate(Filters.and(Filters.eq(ID, jobId), statusEq(ConversionJobStatus.QUEUED)),
+                finishUpdate(ConversionJobStatus.CANCELLED, null));
+        if (ObjUtil.isNotNull(queued)) {
+            FileUtil.del(queued.getString(SOURCE_PATH_FIELD));
+            notifyStatus(jobId, ConversionJobStatus.CANCELLED);
+            return true;
+        }
+        return collection().updateOne(Filters.and(Filters.eq(ID, jobId), statusEq(ConversionJobStatus.RUNNING)),
+                Updates.set(CANCEL_REQUESTED_FIELD, true)).getMatchedCount() > 0;
+    }
+
+
+    @Override
+    public boolean isCancelRequested(String jobId) {
+        return collection().countDocuments(Filters.and(Filters.eq(ID, jobId), Filters.eq(CANCEL_REQUESTED_FIELD, true))) > 0;
+    }
+
+
+    @Override
+    public long getQueuePosition(ConversionJob job) {
+        return collection().countDocuments(Filters.and(statusEq(ConversionJobStatus.QUEUED), Filters.or(
+                Filters.lt(USER_SEQ_FIELD, job.getUserSeq()),
+                Filters.and(Filters.eq(USER_SEQ_FIELD, job.getUserSeq()), Filters.lt(ID, job.getId())))));
+    }
+
+
+    /**
+     * 发布任务状态变化通知，各节点收到后向订阅该文件的连接推送最新进度
+     */
+    private void notifyStatus(String jobId, ConversionJobStatus status) {
+        try {
+            RedisUtils.publish(IHUB_CONVERSION_PROGRESS_TOPIC, ConversionProgressDTO.builder().fileId(jobId).stage(status.name()).build());
+        } catch (Exception e) {
+            // 通知失败时推送连接在下次心跳时刷新进度
+            log.warn("发布转换状态通知失败: jobId={}, status={}", jobId, status, e);
+        }
+    }
+
+
+    private Bson finishUpdate(ConversionJobStatus status, String error) {
+        return Updates.combine(
+                Updates.set(STATUS_FIELD, status.getCode()),
+                Updates.set(ERROR_FIELD, error),
+                Updates.set(FINISH_AT_FIELD, System.currentTimeMillis()),
+                Updates.unset(LEASE_EXPIRE_AT_FIELD));
+    }
+
+
+    private Bson statusEq(ConversionJobStatus status) {
+        return Filters.eq(STATUS_FIELD, status.getCode());
+    }
+
+
+    private long leaseExpireAt() {
+        return System.currentTimeMillis() + conversionProperties.getLeaseTtl().toMillis();
+    }
+
+
+    private MongoCollection<Document> collection() {
+        return baseMapper.getMongoPlusClient().getCollection(ConversionJob.class);
+    }
+}
@@ -0,0 +1,149 @@
+package com.litevar.ihub.file.service.impl;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.litevar.ihub.common.core.config.IHubUploadFileProperties;
+import com.litevar.ihub.common.core.utils.RedisUtils;
+import com.litevar.ihub.common.web.exception.BusinessException;
+import com.litevar.ihub.common.web.exception.ErrorCode;
+import com.litevar.ihub.file.entity.FileBlob;
+import com.litevar.ihub.file.service.IFileBlobService;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongoplus.service.impl.ServiceImpl;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.redisson.api.RLock;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+
+import static com.litevar.ihub.common.core.constant.CacheConstants.IHUB_FILE_BLOB_LOCK_KEY;
+import static com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants.CREATE_TIME;
+import static com.litevar.ihub.common.mongoplus.constant.MongoFieldConstants.ID;
+import static com.litevar.ihub.file.constant.DirConstants.BLOBS_DIR;
+import static com.litevar.ihub.file.constant.DirConstants.BLOBS_TEMP_DIR;
+
+/**
+ * 按内容寻址的文件存储
+ * <p>
+ * 文件内容按sha256分两级目录存放，相同内容只保存一份。引用计数的增减与文件的移动、删除在同一把分布式锁内完成，
+ * 避免最后一个引用释放删除文件时，另一个节点恰好保存了相同内容。
+ *
+ * @author Teoan
+ * @since 2025/11/27 15:20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileBlobServiceImpl extends ServiceImpl<FileBlob> implements IFileBlobService {
+
+    private static final String FILE_PATH_FIELD = "file_path";
+
+    private static final String FILE_SIZE_FIELD = "file_size";
+
+    private static final String REF_COUNT_FIELD = "ref_count";
+
+    private final IHubUploadFileProperties iHubUploadFileProperties;
+
+
+    @Override
+    public Path blobPath(String hash) {
+        return Paths.get(iHubUploadFileProperties.getPath(), BLOBS_DIR, hash.substring(0, 2), hash.substring(2, 4), hash)
+                .toAbsolutePath().normalize();
+    }
+
+
+    @Override
+    public Path createTempPath() {
+        Path tempDir = Paths.get(iHubUploadFileProperties.getPath(), BLOBS_DIR, BLOBS_TEMP_DIR).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(tempDir);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "创建临时文件失败: " + e.getMessage());
+        }
+        return tempDir.resolve(IdUtil.fastSimpleUUID() + ".tmp");
+    }
+
+
+    @Override
+    public Path store(Path source, String hash, long size) {
+        Path blobPath = blobPath(hash);
+        RLock lock = RedisUtils.getLock(StrUtil.format(IHUB_FILE_BLOB_LOCK_KEY, hash));
+        lock.lock();
+        try {
+            if (Files.exists(blobPath)) {
+                Files.deleteIfExists(source);
+            } else {
+                Files.createDirectories(blobPath.getParent());
+                Files.move(source, blobPath);
+            }
+            collection().updateOne(Filters.eq(ID, hash), Updates.combine(
+                            Updates.inc(REF_COUNT_FIELD, 1),
+                            Updates.setOnInsert(FILE_PATH_FIELD, blobPath.toString()),
+                            Updates.setOnInsert(FILE_SIZE_FIELD, size),
+                            Updates.setOnInsert(CREATE_TIME, LocalDateTime.now())),
+                    new UpdateOptions().upsert(true));
+            return blobPath;
+        } catch (IOException e) {
+            log.error("保存文件内容失败: hash={}", hash, e);
+            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "保存文件内容失败: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    @Override
+    public void retain(String hash) {
+        RLock lock = RedisUtils.getLock(StrUtil.format(IHUB_FILE_BLOB_LOCK_KEY, hash));
+        lock.lock();
+        try {
+            long matched = collection().updateOne(Filters.eq(ID, hash), Updates.inc(REF_COUNT_FIELD, 1)).getMatchedCount();
+            if (matched == 0) {
+                throw new BusinessException(ErrorCode.NOT_FOUND, "文件不存在");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    @Override
+    public boolean release(String hash) {
+        RLock lock = RedisUtils.getLock(StrUtil.format(IHUB_FILE_BLOB_LOCK_KEY, hash));
+        lock.lock();
+        try {
+            Document blob = collection().findOneAndUpdate(Filters.eq(ID, hash), Updates.inc(REF_COUNT_FIELD, -1),
+                    new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+            if (ObjUtil.isNull(blob) || blob.getInteger(REF_COUNT_FIELD, 0) > 0) {
+                return false;
+            }
+            collection().deleteOne(Filters.eq(ID, hash));
+            Files.deleteIfExists(blobPath(hash));
+            log.debug("删除无引用的文件内容: hash={}", hash);
+            return true;
+        } catch (IOException e) {
+            // 文件记录已删除，残留的文件在相同内容再次保存时复用
+            log.warn("删除文件内容失败: hash={}", hash, e);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private MongoCollection<Document> collection() {
+        return baseMapper.getMongoPlusClient().getCollection(FileBlob.class);
+    }
+}
@@ -1,25 +1,39 @@
 package com.litevar.ihub.file.service.impl;
 
-import cn.dev33.satoken.context.mock.SaTokenContextMockUtil;
-import cn.dev33.satoken.stp.StpUtil;
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.date.LocalDateTimeUtil;
 import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.HexUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.core.util.URLUtil;
-import cn.hutool.crypto.SecureUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
 import com.litevar.ihub.common.core.config.IHubUploadFileProperties;
 import com.litevar.ihub.common.satoken.utils.LoginHelper;
 import com.litevar.ihub.common.web.exception.BusinessException;
 import com.litevar.ihub.common.web.exception.ErrorCode;
+import com.litevar.ihub.file.ChunkUploadHandler;
+import com.litevar.ihub.file.ImageDerivativeHandler;
 import com.litevar.ihub.file.MarkdownConversionHandler;
+import com.litevar.ihub.file.dto.ChunkUploadDTO;
+import com.litevar.ihub.file.dto.ChunkUploadInitDTO;
 import com.litevar.ihub.file.dto.ConversionProgressDTO;
 import com.litevar.ihub.file.dto.FileDocMetadataDTO;
 import com.litevar.ihub.file.dto.FileInfoDTO;
+import com.litevar.ihub.file.entity.ConversionCache;
+import com.litevar.ihub.file.entity.ConversionJob;
 import com.litevar.ihub.file.entity.FileInfo;
+import com.litevar.ihub.file.enums.ConversionJobStatus;
 import com.litevar.ihub.file.enums.FileUploadType;
+import com.litevar.ihub.file.service.IConversionCacheService;
+import com.litevar.ihub.file.service.IConversionJobService;
+import com.litevar.ihub.file.service.IFileBlobService;
 import com.litevar.ihub.file.service.IFileInfoService;
+import com.litevar.ihub.file.service.IFileReferenceService;
 import com.litevar.liteagent.markdown_conversion.core.ConversionResult;
 import com.mongoplus.service.impl.ServiceImpl;
 import io.github.linpeilie.Converter;
@@ -27,21 +41,33 @@ import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static com.litevar.ihub.file.constant.DirConstants.*;
 
@@ -55,7 +81,13 @@ import static com.litevar.ihub.file.constant.DirConstants.*;
 public class FileInfoServiceImpl extends ServiceImpl<FileInfo> implements IFileInfoService {
 
     private final IHubUploadFileProperties iHubUploadFileProperties;
+    private final IFileBlobService fileBlobService;
+    private final IFileReferenceService fileReferenceService;
     private final MarkdownConversionHandler markdownConversionHandler;
+    private final ChunkUploadHandler chunkUploadHandler;
+    private final ImageDerivativeHandler imageDerivativeHandler;
+    private final IConversionJobService conversionJobService;
+    private final IConversionCacheService conversionCacheService;
     private final Converter converter;
 
 
@@ -77,8 +109,9 @@ public class FileInfoServiceImpl extends ServiceImpl<FileInfo> implements IFileI
         if (file.getSize() > 2 * 1024 * 1024) {
             throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "头像文件大小不能超过2MB");
         }
-        FileInfoDTO fileInfoDTO = uploadFile(file, FileUploadType.AVATARS, AVATAR_DIR, imagesExtNameList);
-        return "/api/v1/file/content/" + fileInfoDTO.getId();
+        FileInfoDTO fileInfoDTO = uploadFile(file, FileUploadType.AVATARS, imagesExtNameList);
+        // 带上md5作为版本号，头像更换后地址随之变化，可长期缓存
+        return "/api/v1/file/content/" + fileInfoDTO.getId() + "?v=" + fileInfoDTO.getMd5();
     }
 
     /**
@@ -86,89 +119,159 @@ public class FileInfoServiceImpl extends ServiceImpl<FileInfo> implements IFileI
      *
      * @param file         文件
      * @param uploadType   上传类型
-     * @param subDirectory 子目录
      * @param extNameList  支持的扩展名列表
      * @return 文件信息
      */
-    private FileInfoDTO uploadFile(MultipartFile file, FileUploadType uploadType, String subDirectory, List<String> extNameList) {
-        Path uploadPath = Paths.get(iHubUploadFileProperties.getPath() + File.separator + subDirectory).toAbsolutePath().normalize();
+    private FileInfoDTO uploadFile(MultipartFile file, FileUploadType uploadType, List<String> extNameList) {
         // 创建文件信息对象
         if (ObjUtil.isEmpty(file)) {
             throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "上传文件不能为空");
         }
-        // 获取文件扩展名
-        String extName = FileUtil.extName(file.getOriginalFilename());
-        if (StrUtil.isNotBlank(extName) && !extNameList.contains(extName.toLowerCase())) {
-            throw new BusinessException(ErrorCode.INVALID_FILE_FORMAT, StrUtil.format("只支持{}格式的文件", extNameList));
+        try (InputStream inputStream = file.getInputStream()) {
+            return uploadFile(inputStream, file.getOriginalFilename(), uploadType, extNameList);
+        } catch (IOException e) {
+            log.error("文件上传失败", e);
+            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "文件上传失败: " + e.getMessage());
         }
+    }
+
+
+    /**
+     * 通用文件上传方法 从输入流写入
+     * 写入文件的同时计算md5，输入流只读取一次，且不会被关闭，调用方可以继续读取(如zip中的下一个条目)
+     *
+     * @param inputStream 文件内容
+     * @param fileName    文件名
+     * @param uploadType  上传类型
+     * @param extNameList 支持的扩展名列表
+     * @return 文件信息
+     */
+    private FileInfoDTO uploadFile(InputStream inputStream, String fileName, FileUploadType uploadType,
+                                   List<String> extNameList) throws IOException {
+        return saveUploaded(writeFile(inputStream, fileName, uploadType, extNameList));
+    }
+
+
+    /**
+     * 保存已写入的文件信息，归属当前登录用户，保存失败时释放文件内容
+     *
+     * @param fileInfo 已写入的文件信息
+     * @return 文件信息
+     */
+    private FileInfoDTO saveUploaded(FileInfo fileInfo) {
+        fileInfo.setUserId(LoginHelper.getCurrentUserId());
+        // 保存文件信息到数据库
         try {
-            String md5 = SecureUtil.md5(file.getInputStream());
-            FileInfo fileInfo = new FileInfo();
-            fileInfo.setFileName(file.getOriginalFilename());
-            fileInfo.setFileSize(file.getSize());
-            if (StrUtil.isNotBlank(extName)) {
-                fileInfo.setFileType(extName.toLowerCase());
-            }
-            fileInfo.setType(uploadType);
-            fileInfo.setUserId(LoginHelper.getCurrentUserId());
-            fileInfo.setUploadTime(LocalDateTime.now());
+            save(fileInfo);
+        } catch (RuntimeException e) {
+            discardFile(fileInfo);
+            throw e;
+        }
 
+        return converter.convert(fileInfo, FileInfoDTO.class);
+    }
 
-            // 确保上传目录存在
-            File uploadDir = uploadPath.toFile();
-            if (!uploadDir.exists()) {
-                uploadDir.mkdirs();
-            }
 
-            // 生成文件名
-            String fileId = IdUtil.getSnowflakeNextIdStr();
-            String newFileName = fileId + "." + extName;
-            fileInfo.setId(fileId);
+    /**
+     * 将输入流按内容写入存储目录并计算md5，返回未保存的文件信息
+     * 不依赖登录上下文，可在非请求线程中执行
+     *
+     * @param inputStream 文件内容
+     * @param fileName    文件名
+     * @param uploadType  上传类型
+     * @param extNameList 支持的扩展名列表
+     * @return 文件信息 未设置用户id
+     */
+    private FileInfo writeFile(InputStream inputStream, String fileName, FileUploadType uploadType,
+                               List<String> extNameList) throws IOException {
+        // 获取文件扩展名
+        String extName = FileUtil.extName(fileName);
+        if (StrUtil.isNotBlank(extName) && !extNameList.contains(extName.toLowerCase())) {
+            throw new BusinessException(ErrorCode.INVALID_FILE_FORMAT, StrUtil.format("只支持{}格式的文件", extNameList));
+        }
 
-            // 保存文件到服务器
-            String filePath = uploadPath + File.separator + newFileName;
-            File destFile = new File(filePath);
-            file.transferTo(destFile);
+        // 写入临时文件并计算md5和sha256，完成后按内容保存
+        Path tempPath = fileBlobService.createTempPath();
+        MessageDigest md5Digest = DigestUtil.digester(DigestAlgorithm.MD5).getDigest();
+        MessageDigest sha256Digest = DigestUtil.digester(DigestAlgorithm.SHA256).getDigest();
+        long fileSize;
+        try (OutputStream out = new DigestOutputStream(new DigestOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempPath)), md5Digest), sha256Digest)) {
+            fileSize = IoUtil.copy(inputStream, out);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        String blobHash = HexUtil.encodeHexStr(sha256Digest.digest());
+        Path blobPath = fileBlobService.store(tempPath, blobHash, fileSize);
+
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setId(IdUtil.getSnowflakeNextIdStr());
+        fileInfo.setFileName(fileName);
+        fileInfo.setFileSize(fileSize);
+        if (StrUtil.isNotBlank(extName)) {
+            fileInfo.setFileType(extName.toLowerCase());
+        }
+        fileInfo.setType(uploadType);
+        fileInfo.setUploadTime(LocalDateTime.now());
+        // 设置文件Path
+        fileInfo.setFilePath(blobPath.toString());
+        fileInfo.setMd5(HexUtil.encodeHexStr(md5Digest.digest()));
+        fileInfo.setBlobHash(blobHash);
+        return fileInfo;
+    }
 
-            // 设置文件Path
-            fileInfo.setFilePath(filePath);
-            fileInfo.setMd5(md5);
-            // 保存文件信息到数据库
-            save(fileInfo);
 
-            return converter.convert(fileInfo, FileInfoDTO.class);
+    /**
+     * 从输入流写入文件，异常统一转换为业务异常
+     */
+    private FileInfo writeStream(InputStream inputStream, String fileName, FileUploadType uploadType,
+                                 List<String> extNameList) {
+        try {
+            return writeFile(inputStream, fileName, uploadType, extNameList);
         } catch (IOException e) {
-            log.error("文件上传失败", e);
-            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "文件上传失败: " + e.getMessage());
+            log.error("文件写入失败", e);
+            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "文件写入失败: " + e.getMessage());
         }
     }
 
 
     /**
-     * 保存文件信息
+     * 保存文件信息 文件按内容移动到存储目录
      *
-     * @param file 文件
+     * @param file      文件
+     * @param imageName 图片名称 非图片时为空
      */
-    private FileInfoDTO saveFileInfo(File file, String fileId, String fileName, List<String> imagesFileIds) {
-        // 计算md5 如果存在则直接返回
-        String md5 = SecureUtil.md5(FileUtil.getInputStream(file));
+    @SneakyThrows
+    private FileInfo saveFileInfo(File file, String fileId, String fileName, String imageName, List<String> imagesFileIds,
+                                  String userId) {
+        // 读取一次文件同时计算md5和sha256
+        MessageDigest md5Digest = DigestUtil.digester(DigestAlgorithm.MD5).getDigest();
+        MessageDigest sha256Digest = DigestUtil.digester(DigestAlgorithm.SHA256).getDigest();
+        try (InputStream in = new DigestInputStream(new DigestInputStream(FileUtil.getInputStream(file), md5Digest), sha256Digest)) {
+            IoUtil.copy(in, OutputStream.nullOutputStream());
+        }
+        long fileSize = file.length();
+        String blobHash = HexUtil.encodeHexStr(sha256Digest.digest());
+        Path blobPath = fileBlobService.store(file.toPath(), blobHash, fileSize);
 
         FileInfo fileInfo = new FileInfo();
         String extName = FileUtil.getSuffix(file.getName());
 
         fileInfo.setId(fileId);
         fileInfo.setFileName(fileName);
-        fileInfo.setFileSize(file.length());
+        fileInfo.setFileSize(fileSize);
         fileInfo.setFileType(extName.toLowerCase());
-        fileInfo.setFilePath(file.getPath());
+        fileInfo.setFilePath(blobPath.toString());
         fileInfo.setType(FileUploadType.KNOWLEDGE);
-        fileInfo.setUserId(LoginHelper.getCurrentUserId());
+        fileInfo.setUserId(userId);
         fileInfo.setUploadTime(LocalDateTime.now());
-        fileInfo.setMd5(md5);
+        fileInfo.setMd5(HexUtil.encodeHexStr(md5Digest.digest()));
+        fileInfo.setBlobHash(blobHash);
+        fileInfo.setImageName(imageName);
         fileInfo.setImagesFileIds(imagesFileIds);
         save(fileInfo);
-
-        return converter.convert(fileInfo, FileInfoDTO.class);
+        return fileInfo;
     }
 
 
@@ -180,7 +283,20 @@ public class FileInfoServiceImpl extends ServiceImpl<FileInfo> implements IFileI
      */
     @Override
     public FileInfoDTO uploadToolFile(MultipartFile file) {
-        return uploadFile(file, FileUploadType.TOOLS, TOOLS_DIR, toolsExtNameList);
+        return uploadFile(file, FileUploadType.TOOLS, toolsExtNameList);
+    }
+
+
+    /**
+     * 写入工具描述文件 不保存文件信息
+     *
+     * @param fileName    文件名
+     * @param inputStream 文件内容
+     * @return 未保存的文件信息
+     */
+    @Override
+    public FileInfo writeToolFile(String fileName, InputStream inputStream) {
+        return writeStream(inputStream, fileName, FileUploadType.TOOLS, toolsExtNameList);
     }
 
     /**
@@ -192,7 +308,20 @@ public class FileInfoServiceImpl extends ServiceImpl<FileInfo> implements IFileI
     @Override
     @SneakyThrows
     public FileInfoDTO uploadKnowledgeMdFile(MultipartFile file) {
-        return uploadFile(file, FileUploadType.KNOWLEDGE, KNOWLEDGE_BASES_DIR, knowledgeExtNameList);
+        return uploadFile(file, FileUploadType.KNOWLEDGE, knowledgeExtNameList);
+    }
+
+
+    /**
+     * 写入知识库md文件 不保存文件信息
+     *
+     * @param fileName    文件名
+     * @param inputStream 文件内容
+     * @return 未保存的文件信息
+     */
+    @Override
+    public FileInfo writeKnowledgeMdFile(String fileName, InputStream inputStream) {
+        return writeStream(inputStream, fileName, FileUploadType.KNOWLEDGE, knowledgeExtNameList);
     }
 
 
@@ -212,32 +341,262 @@ public class FileInfoServiceImpl extends ServiceImpl<FileInfo> implements IFileI
             throw new BusinessException(ErrorCode.INVALID_FILE_FORMAT, StrUtil.format("只支持{}格式的文件", knowledgeExtNameList));
         }
 
+        String userId = LoginHelper.getCurrentUserId();
+        // 上传前已由ConversionCapacityInterceptor检查，上传期间队列可能已满，写入前再检查一次
+        conversionJobService.checkCapacity(userId);
         String fileId = IdUtil.getSnowflakeNextIdStr();
-        String tokenValue = StpUtil.getTokenValue();
-        byte[] fileBytes = file.getBytes();
-        // 异步执行
-        ThreadUtil.execute(() -> SaTokenContextMockUtil.setMockContext(() -> {
-            StpUtil.setTokenValueToStorage(tokenValue);
-            File tempFile = FileUtil.createTempFile("knowledge", "." + extName, false);
-            FileUtil.writeBytes(fileBytes, tempFile);
-            // 转换为md和图片
-            ConversionResult convert = markdownConversionHandler.convert(tempFile.toPath(), fileId,
-                    Paths.get(iHubUploadFileProperties.getPath()
-                            + File.separator + KNOWLEDGE_BASES_DIR).toAbsolutePath().normalize());
-            List<String> imagesFileIds = new ArrayList<>();
-            convert.getExportedResources().forEach(path -> {
-                FileInfoDTO imageFileInfo = saveFileInfo(path.toFile(), null, path.toFile().getName(), new ArrayList<>());
-                imagesFileIds.add(imageFileInfo.getId());
-            });
-            String mdFileName = FileUtil.getPrefix(file.getOriginalFilename()) + ".md";
-            convert.getMarkdownFiles().forEach(path ->
-                    saveFileInfo(path.toFile(), fileId, mdFileName, imagesFileIds));
-            FileUtil.del(tempFile);
-        }));
+        // 写入转换目录，不在内存中缓存文件内容，转换结束前节点重启不会丢失
+        // 写入时同时计算sha256作为转换缓存的key，提交时不再读取源文件
+        Path sourcePath = conversionJobService.sourcePath(fileId, extName);
+        MessageDigest sha256Digest = DigestUtil.digester(DigestAlgorithm.SHA256).getDigest();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), sha256Digest)) {
+            Files.copy(in, sourcePath);
+        } catch (IOException e) {
+            Files.deleteIfExists(sourcePath);
+            throw e;
+        }
+        submitConversion(fileId, userId, file.getOriginalFilename(), sourcePath,
+                conversionCacheService.sourceKey(HexUtil.encodeHexStr(sha256Digest.digest()), extName));
+        return fileId;
+    }
+
+
+    /**
+     * 创建知识库文件分片上传
+     *
+     * @param chunkUploadInitDTO 文件信息
+     * @return 上传会话
+     */
+    @Override
+    public ChunkUploadDTO initKnowledgeUpload(ChunkUploadInitDTO chunkUploadInitDTO) {
+        String extName = FileUtil.extName(chunkUploadInitDTO.getFileName());
+        if (StrUtil.isBlank(extName) || !knowledgeExtNameList.contains(extName.toLowerCase())) {
+            throw new BusinessException(ErrorCode.INVALID_FILE_FORMAT, StrUtil.format("只支持{}格式的文件", knowledgeExtNameList));
+        }
+        DataSize maxSize = iHubUploadFileProperties.getKnowledgeMaxSize();
+        if (chunkUploadInitDTO.getFileSize() > maxSize.toBytes()) {
+            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, StrUtil.format("文件大小不能超过{}MB", maxSize.toMegabytes()));
+        }
+        return chunkUploadHandler.init(chunkUploadInitDTO.getFileName(), chunkUploadInitDTO.getFileSize(),
+                LoginHelper.getCurrentUserId());
+    }
+
+
+    /**
+     * 获取知识库文件分片上传进度
+     *
+     * @param uploadId 上传ID
+     * @return 上传会话
+     */
+    @Override
+    public ChunkUploadDTO getKnowledgeUpload(String uploadId) {
+        return chunkUploadHandler.get(uploadId, LoginHelper.getCurrentUserId());
+    }
+
+
+    /**
+     * 上传知识库文件分片
+     *
+     * @param uploadId    上传ID
+     * @param offset      分片在文件中的起始位置
+     * @param inputStream 分片内容
+     * @return 上传会话
+     */
+    @Override
+    public ChunkUploadDTO uploadKnowledgeChunk(String uploadId, long offset, InputStream inputStream) {
+        return chunkUploadHandler.write(uploadId, LoginHelper.getCurrentUserId(), offset, inputStream);
+    }
+
+
+    /**
+     * 完成知识库文件分片上传并开始转换 返回md文件id
+     *
+     * @param uploadId 上传ID
+     * @param md5      文件md5，为空时不校验
+     * @return md文件id
+     */
+    @Override
+    public String completeKnowledgeUpload(String uploadId, String md5) {
+        String userId = LoginHelper.getCurrentUserId();
+        String fileName = chunkUploadHandler.get(uploadId, userId).getFileName();
+        // 转换队列已满时保留已上传的分片，稍后可重新调用完成接口
+        conversionJobService.checkCapacity(userId);
+        ChunkUploadHandler.CompletedUpload upload = chunkUploadHandler.complete(uploadId, userId, md5);
+        Path filePath = upload.path();
+        String fileId = IdUtil.getSnowflakeNextIdStr();
+        Path sourcePath = conversionJobService.sourcePath(fileId, FileUtil.extName(fileName));
+        try {
+            Files.move(filePath, sourcePath);
+        } catch (IOException e) {
+            FileUtil.del(filePath);
+            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "保存上传文件失败: " + e.getMessage());
+        }
+        submitConversion(fileId, userId, fileName, sourcePath,
+                conversionCacheService.sourceKey(upload.sha256(), FileUtil.extName(fileName)));
         return fileId;
     }
 
 
+    /**
+     * 取消知识库文件分片上传
+     *
+     * @param uploadId 上传ID
+     */
+    @Override
+    public void abortKnowledgeUpload(String uploadId) {
+        chunkUploadHandler.abort(uploadId, LoginHelper.getCurrentUserId());
+    }
+
+
+    /**
+     * 提交知识库文件转换任务，由各节点的转换调度抢占执行，转换结束或取消后删除源文件
+     * 相同内容的文件已转换过时直接复用转换结果，不进入转换队列
+     *
+     * @param fileId           md文件id
+     * @param userId           上传用户ID
+     * @param originalFilename 原始文件名
+     * @param source           源文件
+     * @param sourceKey        写入源文件时计算的转换缓存key，未启用缓存时为null
+     */
+    private void submitConversion(String fileId, String userId, String originalFilename, Path source, String sourceKey) {
+        try {
+            if (saveCachedConversion(sourceKey, fileId, originalFilename, userId)) {
+                conversionJobService.saveCompleted(fileId, userId, originalFilename);
+                FileUtil.del(source);
+                return;
+            }
+            conversionJobService.submit(fileId, userId, originalFilename, source, sourceKey);
+        } catch (RuntimeException e) {
+            // 未提交成功时源文件由调用方删除
+            FileUtil.del(source);
+            throw e;
+        }
+    }
+
+
+    /**
+     * 执行知识库文件转换，转换为md和图片并保存文件信息
+     *
+     * @param job 转换任务
+     * @return 转换期间被取消时返回false
+     */
+    @Override
+    public boolean runConversion(ConversionJob job) {
+        String fileId = job.getId();
+        // 上次执行已保存结果时不再重复转换
+        if (ObjUtil.isNotNull(getById(fileId))) {
+            return true;
+        }
+        Path source = Paths.get(job.getSourcePath());
+        String sourceKey = job.getSourceKey();
+        if (StrUtil.isBlank(sourceKey)) {
+            // 启用缓存前提交的任务
+            sourceKey = conversionCacheService.sourceKey(source);
+        }
+        // 排队期间相同内容的文件可能已转换完成
+        if (saveCachedConversion(sourceKey, fileId, job.getFileName(), job.getUserId())) {
+            return true;
+        }
+        ConversionResult convert = markdownConversionHandler.convert(source, fileId,
+                Paths.get(iHubUploadFileProperties.getPath()
+                        + File.separator + KNOWLEDGE_BASES_DIR).toAbsolutePath().normalize());
+        // 转换期间被取消，或上次执行已保存结果(保存后节点宕机重新执行)时，丢弃本次转换结果
+        boolean cancelled = conversionJobService.isCancelRequested(fileId);
+        if (cancelled || ObjUtil.isNotNull(getById(fileId))) {
+            convert.getExportedResources().forEach(FileUtil::del);
+            convert.getMarkdownFiles().forEach(FileUtil::del);
+            return !cancelled;
+        }
+        List<FileInfo> images = new ArrayList<>();
+        List<String> imagesFileIds = new ArrayList<>();
+        convert.getExportedResources().forEach(path -> {
+            // md中按转换输出的文件名引用图片
+            String imageName = path.toFile().getName();
+            FileInfo imageFileInfo = saveFileInfo(path.toFile(), null, imageName, imageName, new ArrayList<>(), job.getUserId());
+            images.add(imageFileInfo);
+            imagesFileIds.add(imageFileInfo.getId());
+        });
+        String mdFileName = FileUtil.getPrefix(job.getFileName()) + ".md";
+        List<FileInfo> markdowns = new ArrayList<>();
+        convert.getMarkdownFiles().forEach(path ->
+                markdowns.add(saveFileInfo(path.toFile(), fileId, mdFileName, null, imagesFileIds, job.getUserId())));
+        if (markdowns.size() == 1) {
+            conversionCacheService.put(sourceKey, markdowns.get(0), images);
+        }
+        return true;
+    }
+
+
+    /**
+     * 复用相同内容文件的转换结果保存文件信息，新建的文件信息引用缓存中的md和图片内容，图片文件名与md中的引用保持一致
+     *
+     * @param sourceKey 源文件的转换缓存key
+     * @param fileId    md文件id
+     * @param fileName  原始文件名
+     * @param userId    上传用户ID
+     * @return 未命中缓存时返回false
+     */
+    private boolean saveCachedConversion(String sourceKey, String fileId, String fileName, String userId) {
+        ConversionCache cache = conversionCacheService.acquire(sourceKey);
+        if (ObjUtil.isNull(cache)) {
+            return false;
+        }
+        List<FileInfo> fileInfos = new ArrayList<>();
+        List<String> imagesFileIds = new ArrayList<>();
+        CollUtil.emptyIfNull(cache.getImages()).forEach(image -> {
+            FileInfo imageFileInfo = cachedFileInfo(image, IdUtil.getSnowflakeNextIdStr(), image.getFileName(), userId);
+            // 复用的md按原图片名称引用图片，同名图片内容相同
+            imageFileInfo.setImageName(image.getFileName());
+            imageFileInfo.setImagesFileIds(new ArrayList<>());
+            imagesFileIds.add(imageFileInfo.getId());
+            fileInfos.add(imageFileInfo);
+        });
+        FileInfo markdown = cachedFileInfo(cache.getMarkdown(), fileId, FileUtil.getPrefix(fileName) + ".md", userId);
+        markdown.setImagesFileIds(imagesFileIds);
+        fileInfos.add(markdown);
+        try {
+            saveBatch(fileInfos);
+        } catch (RuntimeException e) {
+            // 释放命中缓存时增加的引用，部分保存成功的记录一并删除
+            fileInfos.forEach(fileInfo -> {
+                removeById(fileInfo.getId());
+                discardFile(fileInfo);
+            });
+            throw e;
+        }
+        log.info("复用知识库文件转换结果: fileId={}, sourceKey={}", fileId, sourceKey);
+        return true;
+    }
+
+
+    private FileInfo cachedFileInfo(ConversionCache.CachedFile cachedFile, String fileId, String fileName, String userId) {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setId(fileId);
+        fileInfo.setFileName(fileName);
+        fileInfo.setFileSize(cachedFile.getFileSize());
+        fileInfo.setFileType(cachedFile.getFileType());
+        fileInfo.setFilePath(fileBlobService.blobPath(cachedFile.getBlobHash()).toString());
+        fileInfo.setType(FileUploadType.KNOWLEDGE);
+        fileInfo.setUserId(userId);
+        fileInfo.setUploadTime(LocalDateTime.now());
+        fileInfo.setMd5(cachedFile.getMd5());
+        fileInfo.setBlobHash(cachedFile.getBlobHash());
+        return fileInfo;
+    }
+
+
+    /**
+     * 取消知识库文件转换
+     *
+     * @param fileId md文件id
+     * @return 任务已结束时返回false
+     */
+    @Override
+    public boolean cancelConversion(String fileId) {
+        return conversionJobService.cancel(fileId, LoginHelper.getCurrentUserId());
+    }
+
+
     /**
      * 上传知识库图片文件
      *
@@ -246,8 +605,49 @@ public class FileInfoServiceImpl extends ServiceImpl<FileInfo> implements IFileI
      */
     @Override
     public FileInfoDTO uploadImagesFile(MultipartFile file) {
-        return uploadFile(file, FileUploadType.KNOWLEDGE, KNOWLEDGE_BASES_DIR + File.separator +
-                KNOWLEDGE_BASES_IMAGES_DIR, imagesExtNameList);
+        if (ObjUtil.isEmpty(file)) {
+            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "上传文件不能为空");
+        }
+        try (InputStream inputStream = file.getInputStream()) {
+            return saveUploaded(writeImagesFile(file.getOriginalFilename(), inputStream));
+        } catch (IOException e) {
+            log.error("文件上传失败", e);
+            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "文件上传失败: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * 写入知识库图片文件 不保存文件信息
+     * 上传的文件名可能重复，图片名称使用文件id，与按id保存的旧图片一致
+     *
+     * @param fileName    文件名
+     * @param inputStream 文件内容
+     * @return 未保存的文件信息
+     */
+    @Override
+    public FileInfo writeImagesFile(String fileName, InputStream inputStream) {
+        FileInfo fileInfo = writeStream(inputStream, fileName, FileUploadType.KNOWLEDGE, imagesExtNameList);
+        fileInfo.setImageName(StrUtil.isBlank(fileInfo.getFileType()) ? fileInfo.getId()
+                : fileInfo.getId() + StrUtil.DOT + fileInfo.getFileType());
+        return fileInfo;
+    }
+
+
+    /**
+     * 批量保存已写入的文件信息，未设置用户id的记录归属当前登录用户
+     *
+     * @param fileInfos 文件信息
+     */
+    @Override
+    public void saveFileInfoBatch(List<FileInfo> fileInfos) {
+        if (CollUtil.isEmpty(fileInfos)) {
+            return;
+        }
+        String userId = LoginHelper.getCurrentUserId();
+        fileInfos.stream().filter(fileInfo -> StrUtil.isBlank(fileInfo.getUserId()))
+                .forEach(fileInfo -> fileInfo.setUserId(userId));
+        saveBatch(fileInfos);
     }
 
     /**
@@ -260,13 +660,54 @@ public class FileInfoServiceImpl extends ServiceImpl<FileInfo> implements IFileI
     public boolean removeByIds(List<String> ids) {
         List<FileInfo> fileInfos = getByIds(ids);
         fileInfos.forEach(fileInfo -> {
-            File file = new File(fileInfo.getFilePath());
-            FileUtil.del(file);
             removeById(fileInfo.getId());
+            discardFile(fileInfo);
         });
         return true;
     }
 
+
+    /**
+     * 删除当前用户上传的文件
+     * 文件与fork的agent共享，仍被agent引用时不允许删除，需通过agent移除文件
+     *
+     * @param ids ID列表
+     * @return 是否删除成功
+     */
+    @Override
+    public boolean removeUserFiles(List<String> ids) {
+        String userId = LoginHelper.getCurrentUserId();
+        List<FileInfo> fileInfos = getByIds(ids);
+        for (FileInfo fileInfo : fileInfos) {
+            if (!userId.equals(fileInfo.getUserId())) {
+                throw new BusinessException(ErrorCode.FORBIDDEN, "只能删除自己上传的文件");
+            }
+            if (!fileReferenceService.getReferences(fileInfo.getId()).isEmpty()) {
+                throw new BusinessException(ErrorCode.FORBIDDEN, "文件被agent引用，无法删除");
+            }
+        }
+        return removeByIds(fileInfos.stream().map(FileInfo::getId).toList());
+    }
+
+
+    /**
+     * 释放文件信息引用的文件内容
+     * 按内容保存的文件减少引用计数，最后一个引用释放时删除，未迁移的旧文件直接删除
+     *
+     * @param fileInfo 已删除或未保存的文件信息
+     * @return 文件内容是否已从磁盘删除
+     */
+    @Override
+    public boolean discardFile(FileInfo fileInfo) {
+        if (StrUtil.isNotBlank(fileInfo.getBlobHash())) {
+            return fileBlobService.release(fileInfo.getBlobHash());
+        }
+        if (StrUtil.isNotBlank(fileInfo.getFilePath()) && FileUtil.exist(fileInfo.getFilePath())) {
+            return FileUtil.del(fileInfo.getFilePath());
+        }
+        return false;
+    }
+
     /**
      * 更新文件的文档元数据
      *
@@ -289,6 +730,43 @@ public class FileInfoServiceImpl extends ServiceImpl<FileInfo> implements IFileI
      */
     @Override
     public ConversionProgressDTO getConversionProgress(String fileId) {
+        ConversionJob job = conversionJobService.getById(fileId);
+        if (ObjUtil.isNull(job)) {
+            // 未通过转换任务执行的旧记录
+            return getLegacyConversionProgress(fileId);
+        }
+        return switch (job.getStatus()) {
+            case QUEUED -> {
+                long queuePosition = conversionJobService.getQueuePosition(job);
+                yield ConversionProgressDTO.builder()
+                        .progress(0.0)
+                        .stage(MarkdownConversionHandler.STAGE_QUEUED)
+                        .detail(StrUtil.format("排队中，前面还有{}个文件", queuePosition))
+                        .queuePosition((int) queuePosition)
+                        .build();
+            }
+            case RUNNING -> MarkdownConversionHandler.clampRunningProgress(markdownConversionHandler.getConversionProgress(fileId));
+            case DONE -> ConversionProgressDTO.builder()
+                    .progress(100.0)
+                    .stage(ConversionJobStatus.DONE.name())
+                    .detail(ConversionJobStatus.DONE.getDescription())
+                    .fileInfoDTO(converter.convert(getById(fileId), FileInfoDTO.class))
+                    .build();
+            case CANCELLED -> ConversionProgressDTO.builder()
+                    .progress(0.0)
+                    .stage(MarkdownConversionHandler.STAGE_CANCELLED)
+                    .detail("转换已取消")
+                    .build();
+            case FAILED -> ConversionProgressDTO.builder()
+                    .progress(0.0)
+                    .stage(MarkdownConversionHandler.STAGE_FAILED)
+                    .detail(job.getError())
+                    .build();
+        };
+    }
+
+
+    private ConversionProgressDTO getLegacyConversionProgress(String fileId) {
         ConversionProgressDTO conversionProgress = markdownConversionHandler.getConversionProgress(fileId);
         // 完成时添加文件信息
         if (conversionProgress.getProgress().equals(100.0)) {
@@ -333,60 +811,179 @@ public class FileInfoServiceImpl extends ServiceImpl<FileInfo> implements IFileI
     
     /**
      * 根据文件ID获取文件内容及媒体类型
+     * 请求携带的版本号与文件md5一致时，该地址对应的内容不会再变化，响应允许长期缓存
      *
-     * @param fileId 文件ID
+     * @param fileId  文件ID
+     * @param version 文件版本号(md5)，为空时每次使用前需向服务端校验
+     * @param ifRange If-Range请求头
      * @return 包含文件资源和媒体类型的对象
      */
     @Override
-    public ResponseEntity<Resource> getFileContent(String fileId) {
+    public ResponseEntity<Resource> getFileContent(String fileId, String version, String ifRange) {
         FileInfo fileInfo = getFileInfoById(fileId);
 
         File file = new File(fileInfo.getFilePath());
 
-        Resource resource = new FileSystemResource(file);
-
         // 获取文件信息以确定内容类型
         String fileType = fileInfo.getFileType().toLowerCase();
 
         // 根据文件类型设置内容类型
         MediaType mediaType = getMediaType(fileType);
 
-        return ResponseEntity.ok()
-                .contentType(mediaType)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + URLUtil.encode(fileInfo.getFileName()) + "\"")
-                .body(resource);
+        String eTag = StrUtil.isNotBlank(fileInfo.getMd5()) ? "\"" + fileInfo.getMd5() + "\"" : weakETag(file);
+        boolean immutable = StrUtil.isNotBlank(version) && StrUtil.equalsIgnoreCase(version, fileInfo.getMd5());
+        return fileResponse(file, fileInfo.getFileName(), mediaType, eTag, lastModified(fileInfo, file), immutable, ifRange);
+    }
+
+
+    /**
+     * 获取图片文件的缩略图
+     * 缩略图按原图md5缓存，请求携带的版本号与原图md5一致时响应允许长期缓存
+     *
+     * @param fileId  文件ID
+     * @param size    缩略图最长边像素
+     * @param format  缩略图格式 webp/jpeg/png，为空时按原图格式
+     * @param version 文件版本号(md5)
+     * @param ifRange If-Range请求头
+     * @return 缩略图
+     */
+    @Override
+    @SneakyThrows
+    public ResponseEntity<Resource> getImageThumbnail(String fileId, int size, String format, String version, String ifRange) {
+        if (!imageDerivativeHandler.isSupportedSize(size)) {
+            throw new BusinessException(ErrorCode.DATA_VERIFICATION_FAILED, "不支持的缩略图尺寸: " + size);
+        }
+        FileInfo fileInfo = getFileInfoById(fileId);
+        String fileType = StrUtil.nullToEmpty(fileInfo.getFileType()).toLowerCase();
+        if (!imagesExtNameList.contains(fileType) || StrUtil.isBlank(fileInfo.getMd5())) {
+            throw new BusinessException(ErrorCode.INVALID_FILE_FORMAT, "只支持图片文件生成缩略图");
+        }
+        File file = new File(fileInfo.getFilePath());
+        String thumbnailFormat = imageDerivativeHandler.resolveFormat(format, fileType);
+        Path thumbnail = imageDerivativeHandler.getOrCreate(file.toPath(), fileInfo.getMd5(), size, thumbnailFormat);
+
+        String eTag = "\"" + fileInfo.getMd5() + "-" + size + "." + thumbnailFormat + "\"";
+        boolean immutable = StrUtil.isNotBlank(version) && StrUtil.equalsIgnoreCase(version, fileInfo.getMd5());
+        // 缓存文件的修改时间用于淘汰，最后修改时间取原图的
+        return fileResponse(thumbnail.toFile(), FileUtil.getPrefix(fileInfo.getFileName()) + "." + thumbnailFormat,
+                getMediaType(thumbnailFormat), eTag, lastModified(fileInfo, file), immutable, ifRange);
+    }
+
+
+    /**
+     * 内容原地更新后文件路径变化，文件的修改时间可能早于更新时间
+     */
+    private long lastModified(FileInfo fileInfo, File file) {
+        long lastModified = file.lastModified();
+        if (ObjUtil.isNotNull(fileInfo.getUpdateTime())) {
+            lastModified = Math.max(lastModified, LocalDateTimeUtil.toEpochMilli(fileInfo.getUpdateTime()));
+        }
+        return lastModified;
     }
 
 
     /**
      * 根据图片文件名称获取图片
+     * 未迁移的图片按名称保存在图片目录，按内容保存的图片通过图片名称查找文件信息，
+     * 图片名称只对应一份图片内容(复用转换结果的同名图片内容相同)，不按可能重复的文件名查找
      *
      * @param imagesFileName 文件名称
+     * @param ifRange        If-Range请求头
      * @return 包含文件资源和媒体类型的对象
      */
     @Override
-    public ResponseEntity<Resource> getImageFile(String imagesFileName) {
+    public ResponseEntity<Resource> getImageFile(String imagesFileName, String ifRange) {
         Path uploadPath = Paths.get(iHubUploadFileProperties.getPath() +
                 File.separator + KNOWLEDGE_BASES_DIR + File.separator + KNOWLEDGE_BASES_IMAGES_DIR + File.separator + imagesFileName);
         File file = uploadPath.toFile();
-        if (!FileUtil.exist(file)) {
-            throw new BusinessException(ErrorCode.NOT_FOUND, "文件不存在");
+        String eTag;
+        if (FileUtil.exist(file)) {
+            eTag = weakETag(file);
+        } else {
+            FileInfo fileInfo = lambdaQuery()
+                    .eq(FileInfo::getImageName, FileUtil.getName(imagesFileName))
+                    .list().stream()
+                    .filter(info -> StrUtil.isNotBlank(info.getBlobHash()))
+                    .filter(info -> FileUtil.exist(info.getFilePath()))
+                    .findFirst()
+                    .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND, "文件不存在"));
+            file = new File(fileInfo.getFilePath());
+            eTag = "\"" + fileInfo.getBlobHash() + "\"";
         }
 
-        Resource resource = new FileSystemResource(file);
-
         // 获取文件信息以确定内容类型
         String fileType = FileUtil.extName(imagesFileName);
 
         // 根据文件类型设置内容类型
         MediaType mediaType = getMediaType(fileType);
 
+        return fileResponse(file, imagesFileName, mediaType, eTag, file.lastModified(), false, ifRange);
+    }
+
+
+    /**
+     * 构建文件响应
+     * <p>
+     * 响应携带ETag和Last-Modified，条件请求(If-None-Match/If-Modified-Since)命中时由Spring MVC返回304，
+     * 带Range的请求由Spring MVC返回206及对应的分段内容。
+     * If-Range与当前文件不一致时说明客户端已有的部分内容已过期，返回不支持分段的资源，使其获取完整内容。
+     *
+     * @param file         文件
+     * @param fileName     下载文件名
+     * @param mediaType    媒体类型
+     * @param eTag         ETag
+     * @param lastModified 最后修改时间
+     * @param immutable    内容是否不会再变化
+     * @param ifRange      If-Range请求头
+     * @return 文件响应
+     */
+    private ResponseEntity<Resource> fileResponse(File file, String fileName, MediaType mediaType, String eTag,
+                                                  long lastModified, boolean immutable, String ifRange) {
+        CacheControl cacheControl = immutable
+                ? CacheControl.maxAge(iHubUploadFileProperties.getImmutableMaxAge()).cachePublic().immutable()
+                : CacheControl.noCache();
+        Resource resource = new FileSystemResource(file);
+        if (StrUtil.isNotBlank(ifRange) && !ifRangeMatches(ifRange, eTag, lastModified)) {
+            // InputStreamResource不做分段处理，打开流延迟到写入响应时
+            resource = new InputStreamResource(() -> Files.newInputStream(file.toPath()));
+        }
         return ResponseEntity.ok()
                 .contentType(mediaType)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + URLUtil.encode(imagesFileName) + "\"")
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .cacheControl(cacheControl)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + URLUtil.encode(fileName) + "\"")
                 .body(resource);
     }
 
+
+    /**
+     * If-Range为强ETag时需与当前ETag完全一致，为日期时需与最后修改时间(精确到秒)一致
+     */
+    private boolean ifRangeMatches(String ifRange, String eTag, long lastModified) {
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(eTag);
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.IF_MODIFIED_SINCE, ifRange);
+            return headers.getIfModifiedSince() / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * 没有md5的文件以大小和修改时间生成弱ETag
+     */
+    private String weakETag(File file) {
+        return "W/\"" + Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified()) + "\"";
+    }
+
     /**
      * 根据文件扩展名获取对应的MediaType
      *
@@ -397,6 +994,7 @@ public class FileInfoServiceImpl extends ServiceImpl<FileInfo> implements IFileI
         return switch (fileType) {
             case "jpg", "jpeg" -> MediaType.IMAGE_JPEG;
             case "png" -> MediaType.IMAGE_PNG;
+            case "webp" -> MediaType.valueOf("image/webp");
             case "gif" -> MediaType.valueOf("image/gif");
             case "bmp" -> MediaType.valueOf("image/bmp");
             case "json" -> MediaType.APPLICATION_JSON;
@@ -406,98 +1004,91 @@ public class FileInfoServiceImpl extends ServiceImpl<FileInfo> implements IFileI
         };
     }
 
-    /**
-     * 复制文件 返回新的文件id
-     *
-     * @param fileId 文件id
-     * @return 新的文件id
-     */
-    @Override
-    public String copyFile(String fileId) {
-        // 获取原始文件信息
-        FileInfo originalFileInfo = getFileInfoById(fileId);
-        File originalFile = new File(originalFileInfo.getFilePath());
-        try {
-            // 生成新的文件ID和文件名
-            String newFileId = IdUtil.getSnowflakeNextIdStr();
-            String extName = originalFileInfo.getFileType();
-            String newFileName = newFileId + (StrUtil.isNotBlank(extName) ? "." + extName : "");
-            
-            // 确定子目录
-            String subDirectory = "";
-            switch (originalFileInfo.getType()) {
-                case TOOLS -> subDirectory = TOOLS_DIR;
-                case KNOWLEDGE -> subDirectory = KNOWLEDGE_BASES_DIR;
-                case AVATARS -> subDirectory = AVATAR_DIR;
-                default -> {
-                }
-            }
-            
-            // 构建新的文件路径
-            Path uploadPath = Paths.get(iHubUploadFileProperties.getPath() + File.separator + subDirectory).toAbsolutePath().normalize();
-            String newFilePath = uploadPath + File.separator + newFileName;
-            
-            // 确保上传目录存在
-            File uploadDir = uploadPath.toFile();
-            if (!uploadDir.exists()) {
-                uploadDir.mkdirs();
-            }
-            
-            // 复制文件到新位置
-            FileUtil.copy(originalFile, new File(newFilePath), true);
-            
-            // 创建新的文件信息记录
-            FileInfo newFileInfo = new FileInfo();
-            newFileInfo.setId(newFileId);
-            newFileInfo.setFileName(originalFileInfo.getFileName());
-            newFileInfo.setFileSize(originalFileInfo.getFileSize());
-            newFileInfo.setFileType(originalFileInfo.getFileType());
-            newFileInfo.setFilePath(newFilePath);
-            newFileInfo.setMd5(originalFileInfo.getMd5());
-            newFileInfo.setType(originalFileInfo.getType());
-            newFileInfo.setMetadata(originalFileInfo.getMetadata());
-            newFileInfo.setImagesFileIds(originalFileInfo.getImagesFileIds());
-            newFileInfo.setUserId(LoginHelper.getCurrentUserId());
-            newFileInfo.setUploadTime(LocalDateTime.now());
-            
-            // 保存新的文件信息到数据库
-            save(newFileInfo);
-            
-            return newFileId;
-        } catch (Exception e) {
-            log.error("文件复制失败", e);
-            throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "文件复制失败: " + e.getMessage());
-        }
-    }
-    
     /**
      * 修改文件内容
+     * 文件内容可能被其他文件信息引用，修改时按新内容重新保存，再释放原内容。
+     * 文件被其他用户的agent共享时(如fork)，为当前用户的agent生成独立的文件，不影响其他agent
      *
-     * @param fileId 文件ID
+     * @param fileId  文件ID
      * @param content 新的文件内容
+     * @param agentId 修改的文件所属agent，为空时为当前用户所有引用该文件的agent
      * @return 是否修改成功
      */
     @Override
-    public boolean updateFileContent(String fileId, String content) {
+    public boolean updateFileContent(String fileId, String content, String agentId) {
         // 获取文件信息
         FileInfo fileInfo = getFileInfoById(fileId);
-
-        // 检查文件是否存在
-        File file = new File(fileInfo.getFilePath());
+        FileInfo originalFileInfo = BeanUtil.copyProperties(fileInfo, FileInfo.class);
+        List<String> copyOnWriteAgentIds = getCopyOnWriteAgentIds(fileId, agentId);
 
         try {
-            // 写入新内容到文件
-            FileUtil.writeString(content, file, StandardCharsets.UTF_8);
-            
-            // 更新文件大小
-            fileInfo.setFileSize((long) content.getBytes(StandardCharsets.UTF_8).length);
-            fileInfo.setMd5(SecureUtil.md5(content));
-            updateById(fileInfo);
-            
+            // 写入新内容
+            FileInfo written = writeFile(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                    fileInfo.getFileName(), fileInfo.getType(), List.of(StrUtil.nullToEmpty(fileInfo.getFileType())));
+
+            if (CollUtil.isNotEmpty(copyOnWriteAgentIds)) {
+                // 生成独立的文件，并将当前用户agent的引用指向新文件
+                written.setMetadata(fileInfo.getMetadata());
+                written.setImagesFileIds(fileInfo.getImagesFileIds());
+                written.setUserId(LoginHelper.getCurrentUserId());
+                try {
+                    save(written);
+                } catch (RuntimeException e) {
+                    discardFile(written);
+                    throw e;
+                }
+                fileReferenceService.replaceReference(copyOnWriteAgentIds, fileId, written.getId());
+                return true;
+            }
+
+            // 更新文件内容引用、大小和md5
+            fileInfo.setFilePath(written.getFilePath());
+            fileInfo.setBlobHash(written.getBlobHash());
+            fileInfo.setFileSize(written.getFileSize());
+            fileInfo.setMd5(written.getMd5());
+            try {
+                updateById(fileInfo);
+            } catch (RuntimeException e) {
+                discardFile(written);
+                throw e;
+            }
+            discardFile(originalFileInfo);
+
             return true;
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
             log.error("文件内容更新失败", e);
             throw new BusinessException(ErrorCode.FILE_UPLOAD_ERROR, "文件内容更新失败: " + e.getMessage());
         }
     }
+
+
+    /**
+     * 获取修改文件时需要改为引用独立文件的agent
+     * 文件未被其他用户的agent引用时返回空列表，直接修改原文件
+     *
+     * @param fileId  文件ID
+     * @param agentId 修改的文件所属agent，为空时为当前用户所有引用该文件的agent
+     * @return agent id
+     */
+    private List<String> getCopyOnWriteAgentIds(String fileId, String agentId) {
+        String userId = LoginHelper.getCurrentUserId();
+        Map<String, String> references = fileReferenceService.getReferences(fileId);
+        if (StrUtil.isNotBlank(agentId) && !userId.equals(references.get(agentId))) {
+            throw new BusinessException(ErrorCode.FORBIDDEN, "agent未引用该文件");
+        }
+        List<String> editingAgentIds = StrUtil.isNotBlank(agentId) ? List.of(agentId) : references.entrySet().stream()
+                .filter(reference -> userId.equals(reference.getValue()))
+                .map(Map.Entry::getKey)
+                .toList();
+        boolean shared = references.keySet().stream().anyMatch(id -> !editingAgentIds.contains(id));
+        if (!shared) {
+            return List.of();
+        }
+        if (editingAgentIds.isEmpty()) {
+            throw new BusinessException(ErrorCode.FORBIDDEN, "文件被其他用户的agent引用，无法修改");
+        }
+        return editingAgentIds;
+    }
 }
\ No newline at end of file
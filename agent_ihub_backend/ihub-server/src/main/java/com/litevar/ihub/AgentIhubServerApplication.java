@@ -3,8 +3,10 @@ package com.litevar.ihub;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 //@ComponentScan(basePackages = {"com.litevar.ihub.*"})
 public class AgentIhubServerApplication {
 
@@ -0,0 +1,189 @@
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.RandomUtil;
+import com.litevar.ihub.AgentIhubServerApplication;
+import com.litevar.ihub.core.entity.Agent;
+import com.litevar.ihub.core.entity.User;
+import com.litevar.ihub.core.enums.PlatformType;
+import com.litevar.ihub.core.service.IAgentsService;
+import com.litevar.ihub.core.service.IUserService;
+import com.litevar.ihub.file.dto.MdAgentInfoDTO;
+import com.litevar.ihub.file.entity.FileInfo;
+import com.litevar.ihub.file.enums.AgentType;
+import com.litevar.ihub.file.enums.ExecutionMode;
+import com.litevar.ihub.file.enums.FileUploadType;
+import com.litevar.ihub.file.enums.ModelType;
+import com.litevar.ihub.file.markdown.AgentMarkdownGenerator;
+import com.litevar.ihub.file.service.IFileInfoService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * agent导出流式写出测试
+ * 导出200MB的agent时，压缩包应边生成边写入输出流，而不是在内存中生成完整压缩包后再写出
+ * <p>
+ * 最后一个文档放在单独的知识库中，排在其他文档之后写入压缩包，该文档的文件在输出流收到100MB后才生成。
+ * 流式导出时写到该文档前输出流已收到前面文档的内容，文件已生成；先缓存整个压缩包的实现在写出前就要读取该文档，导出失败。
+ *
+ * @author Teoan
+ * @since 2025/11/26 10:15
+ */
+@SpringBootTest(classes = AgentIhubServerApplication.class, properties = "agent-ihub.export.cache-enabled=false")
+@Slf4j
+public class AgentExportStreamingTest {
+
+    private static final int DOC_COUNT = 20;
+
+    private static final long DOC_SIZE = 10L * 1024 * 1024;
+
+    /**
+     * 输出流收到该大小的内容后才生成最后一个文档的文件
+     */
+    private static final long LATE_DOC_THRESHOLD = 100L * 1024 * 1024;
+
+    @Resource
+    private IAgentsService agentsService;
+
+    @Resource
+    private IFileInfoService fileInfoService;
+
+    @Resource
+    private IUserService userService;
+
+    private File tempDir;
+
+    private File lateDoc;
+
+    private User user;
+
+    private Agent agent;
+
+    private final List<String> fileInfoIds = new ArrayList<>();
+
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = FileUtil.mkdir(FileUtil.file(FileUtil.getTmpDir(), "export-streaming-" + IdUtil.fastSimpleUUID()));
+        user = new User();
+        user.setUserName("export-streaming-" + IdUtil.fastSimpleUUID());
+        userService.save(user);
+
+        List<String> documents = new ArrayList<>();
+        for (int i = 0; i < DOC_COUNT; i++) {
+            String fileName = "doc-" + i + ".md";
+            File file = FileUtil.file(tempDir, fileName);
+            if (i < DOC_COUNT - 1) {
+                writeSyntheticMarkdown(file);
+            } else {
+                lateDoc = file;
+            }
+            FileInfo fileInfo = new FileInfo();
+            fileInfo.setFileName(fileName);
+            fileInfo.setFilePath(file.getAbsolutePath());
+            fileInfo.setFileSize(DOC_SIZE);
+            fileInfo.setType(FileUploadType.KNOWLEDGE);
+            fileInfo.setUserId(user.getId());
+            fileInfoService.save(fileInfo);
+            fileInfoIds.add(fileInfo.getId());
+            documents.add(fileName);
+        }
+
+        MdAgentInfoDTO.Model embeddingModel = new MdAgentInfoDTO.Model();
+        embeddingModel.setName("export-streaming-embedding");
+        embeddingModel.setAlias("export-streaming-embedding");
+        embeddingModel.setType(ModelType.EMBEDDING);
+        MdAgentInfoDTO.KnowledgeBase knowledgeBase = new MdAgentInfoDTO.KnowledgeBase();
+        knowledgeBase.setName("export-streaming-knowledge");
+        knowledgeBase.setModel(embeddingModel);
+        knowledgeBase.setDocuments(documents.subList(0, DOC_COUNT - 1));
+        MdAgentInfoDTO.KnowledgeBase lateKnowledgeBase = new MdAgentInfoDTO.KnowledgeBase();
+        lateKnowledgeBase.setName("export-streaming-knowledge-late");
+        lateKnowledgeBase.setModel(embeddingModel);
+        lateKnowledgeBase.setDocuments(documents.subList(DOC_COUNT - 1, DOC_COUNT));
+        MdAgentInfoDTO mdAgentInfoDTO = new MdAgentInfoDTO();
+        mdAgentInfoDTO.setName("export-streaming-agent");
+        mdAgentInfoDTO.setType(AgentType.GENERAL);
+        mdAgentInfoDTO.setMode(ExecutionMode.PARALLEL);
+        mdAgentInfoDTO.setKnowledgeBases(List.of(knowledgeBase, lateKnowledgeBase));
+
+        agent = new Agent();
+        agent.setName(mdAgentInfoDTO.getName());
+        agent.setAuthorId(user.getId());
+        agent.setIsPublic(true);
+        agent.setPlatform(PlatformType.LITE_AGENT);
+        agent.setMdContent(AgentMarkdownGenerator.generate(mdAgentInfoDTO));
+        agent.setDocsFileIdList(new ArrayList<>(fileInfoIds));
+        agent.setToolFileIdList(new ArrayList<>());
+        agentsService.save(agent);
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        agentsService.removeById(agent.getId());
+        fileInfoService.removeByIds(fileInfoIds);
+        userService.removeById(user.getId());
+        FileUtil.del(tempDir);
+    }
+
+
+    /**
+     * 输出流收到100MB前最后一个文档的文件不存在，只有边生成边写出的导出才能完成
+     */
+    @Test
+    void testExportStreamsToOutput() throws Exception {
+        AtomicLong written = new AtomicLong();
+        ResponseEntity<StreamingResponseBody> response = agentsService.exportAgent(agent.getId(), null);
+        response.getBody().writeTo(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (written.addAndGet(len) >= LATE_DOC_THRESHOLD && !lateDoc.exists()) {
+                    writeSyntheticMarkdown(lateDoc);
+                }
+            }
+        });
+
+        log.info("导出完成, 源文件大小:{}MB, 压缩包大小:{}MB", DOC_COUNT * DOC_SIZE >> 20, written.get() >> 20);
+        assertTrue(lateDoc.exists(), "输出流收到的内容不足" + (LATE_DOC_THRESHOLD >> 20) + "MB");
+        assertTrue(written.get() > DOC_COUNT * DOC_SIZE / 2, "压缩包大小异常");
+    }
+
+
+    /**
+     * 生成随机内容的md文件，随机内容不易压缩，使压缩包接近源文件大小
+     */
+    private void writeSyntheticMarkdown(File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            out.write("# synthetic document\n\n".getBytes(StandardCharsets.UTF_8));
+            long remaining = DOC_SIZE;
+            while (remaining > 0) {
+                byte[] line = (RandomUtil.randomString(1023) + "\n").getBytes(StandardCharsets.UTF_8);
+                out.write(line);
+                remaining -= line.length;
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import cn.dev33.satoken.context.mock.SaTokenContextMockUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.RandomUtil;
+import com.litevar.ihub.AgentIhubServerApplication;
+import com.litevar.ihub.common.satoken.entity.LoginUser;
+import com.litevar.ihub.common.satoken.utils.LoginHelper;
+import com.litevar.ihub.core.dto.AgentDTO;
+import com.litevar.ihub.core.entity.Agent;
+import com.litevar.ihub.core.entity.Star;
+import com.litevar.ihub.core.enums.PlatformType;
+import com.litevar.ihub.core.service.IAgentsService;
+import com.litevar.ihub.core.service.IStarService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 收藏计数并发测试
+ * 大量并发的收藏/取消收藏请求下，Agent的收藏数必须与收藏记录数保持一致
+ *
+ * @author Teoan
+ * @since 2025/11/20 15:12
+ */
+@SpringBootTest(classes = AgentIhubServerApplication.class)
+@Slf4j
+public class AgentStarConcurrencyTest {
+
+    private static final int USER_COUNT = 50;
+
+    private static final int CALLS_PER_USER = 8;
+
+    private static final int THREAD_COUNT = 64;
+
+    @Resource
+    private IAgentsService agentsService;
+
+    @Resource
+    private IStarService starService;
+
+    private Agent agent;
+
+
+    @BeforeEach
+    void setUp() {
+        agent = new Agent();
+        agent.setName("star-concurrency-" + IdUtil.fastSimpleUUID());
+        agent.setAuthorId("star-concurrency-author");
+        agent.setIsPublic(true);
+        agent.setPlatform(PlatformType.LITE_AGENT);
+        agentsService.save(agent);
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        starService.remove(starService.lambdaUpdate().eq(Star::getAgentId, agent.getId()));
+        agentsService.removeById(agent.getId());
+    }
+
+
+    /**
+     * 每个用户并发重复收藏，收藏数应等于用户数；再并发重复取消收藏，收藏数应归零
+     */
+    @Test
+    void testRepeatedStarAndUnStar() throws Exception {
+        List<Callable<Boolean>> starCalls = new ArrayList<>();
+        List<Callable<Boolean>> unStarCalls = new ArrayList<>();
+        for (int i = 0; i < USER_COUNT; i++) {
+            String userId = "star-concurrency-user-" + i;
+            for (int j = 0; j < CALLS_PER_USER; j++) {
+                starCalls.add(() -> asUser(userId, () -> agentsService.starAgent(agentDTO())));
+                unStarCalls.add(() -> asUser(userId, () -> agentsService.unStarAgent(agentDTO())));
+            }
+        }
+
+        runConcurrently(starCalls);
+        assertEquals(USER_COUNT, currentStars());
+        assertEquals(USER_COUNT, starRecordCount());
+
+        runConcurrently(unStarCalls);
+        assertEquals(0, currentStars());
+        assertEquals(0, starRecordCount());
+    }
+
+
+    /**
+     * 随机交错的收藏/取消收藏，最终收藏数应与收藏记录数一致
+     */
+    @Test
+    void testInterleavedStarAndUnStar() throws Exception {
+        List<Callable<Boolean>> calls = new ArrayList<>();
+        for (int i = 0; i < USER_COUNT; i++) {
+            String userId = "star-concurrency-user-" + i;
+            for (int j = 0; j < CALLS_PER_USER; j++) {
+                calls.add(RandomUtil.randomBoolean()
+                        ? () -> asUser(userId, () -> agentsService.starAgent(agentDTO()))
+                        : () -> asUser(userId, () -> agentsService.unStarAgent(agentDTO())));
+            }
+        }
+
+        runConcurrently(calls);
+        long records = starRecordCount();
+        log.info("并发收藏测试完成, 收藏记录数:{}, 收藏数:{}", records, currentStars());
+        assertEquals(records, currentStars());
+    }
+
+
+    private AgentDTO agentDTO() {
+        AgentDTO agentDTO = new AgentDTO();
+        agentDTO.setId(agent.getId());
+        return agentDTO;
+    }
+
+
+    private long currentStars() {
+        return agentsService.getById(agent.getId()).getStars();
+    }
+
+
+    private long starRecordCount() {
+        return starService.count(starService.lambdaQuery().eq(Star::getAgentId, agent.getId()));
+    }
+
+
+    /**
+     * 在模拟的登录上下文中执行
+     */
+    private Boolean asUser(String userId, Callable<Boolean> call) throws Exception {
+        Boolean[] result = new Boolean[1];
+        Exception[] error = new Exception[1];
+        SaTokenContextMockUtil.setMockContext(() -> {
+            try {
+                LoginHelper.login(LoginUser.builder().id(userId).userName(userId).build());
+                result[0] = call.call();
+            } catch (Exception e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return result[0];
+    }
+
+
+    private void runConcurrently(List<Callable<Boolean>> calls) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            for (Future<Boolean> future : executor.invokeAll(calls)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}